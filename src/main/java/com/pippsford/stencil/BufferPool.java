@@ -0,0 +1,26 @@
+package com.pippsford.stencil;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A pool of byte buffers which stencils can be rendered into.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public interface BufferPool {
+
+  /**
+   * Get a buffer from the pool. The buffer must be cleared, ready to be filled. The buffers need not all be the same size, but each must have some capacity.
+   *
+   * @return the buffer
+   */
+  ByteBuffer acquire();
+
+  /**
+   * Return a buffer to the pool. The buffer must not be used after it is released.
+   *
+   * @param buffer the buffer
+   */
+  void release(ByteBuffer buffer);
+
+}
@@ -0,0 +1,102 @@
+package com.pippsford.stencil;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of direct byte buffers, all the same size. Buffers are allocated when the pool is empty, and released buffers are kept until the pool is full.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public class DirectBufferPool implements BufferPool {
+
+  /** Default size of each buffer. */
+  public static final int DEFAULT_BUFFER_SIZE = 16384;
+
+  /** Default maximum number of buffers kept in the pool. */
+  public static final int DEFAULT_MAX_POOLED = 256;
+
+
+  /** The size of each buffer. */
+  private final int bufferSize;
+
+  /** The buffers available for use. */
+  private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+  /** The maximum number of buffers kept in the pool. */
+  private final int maxPooled;
+
+  /** The number of buffers in the pool. */
+  private final AtomicInteger pooled = new AtomicInteger();
+
+
+  /**
+   * New instance with the default buffer size and pool size.
+   */
+  public DirectBufferPool() {
+    this(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOLED);
+  }
+
+
+  /**
+   * New instance.
+   *
+   * @param bufferSize the size of each buffer
+   * @param maxPooled  the maximum number of buffers kept in the pool
+   */
+  public DirectBufferPool(int bufferSize, int maxPooled) {
+    if (bufferSize < 1) {
+      throw new IllegalArgumentException("Buffer size must be positive, not " + bufferSize);
+    }
+    this.bufferSize = bufferSize;
+    this.maxPooled = Math.max(0, maxPooled);
+  }
+
+
+  @Override
+  public ByteBuffer acquire() {
+    ByteBuffer buffer = buffers.poll();
+    if (buffer == null) {
+      return ByteBuffer.allocateDirect(bufferSize);
+    }
+    pooled.decrementAndGet();
+    return buffer.clear();
+  }
+
+
+  /**
+   * Get the size of each buffer.
+   *
+   * @return the buffer size
+   */
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+
+  /**
+   * Get the number of buffers currently in the pool.
+   *
+   * @return the number of buffers available for use
+   */
+  public int getPooled() {
+    return pooled.get();
+  }
+
+
+  @Override
+  public void release(ByteBuffer buffer) {
+    if (buffer.capacity() != bufferSize || !buffer.isDirect() || buffer.isReadOnly()) {
+      // not one of ours
+      return;
+    }
+    if (pooled.incrementAndGet() <= maxPooled) {
+      buffers.offer(buffer);
+    } else {
+      pooled.decrementAndGet();
+    }
+  }
+
+}
@@ -0,0 +1,145 @@
+package com.pippsford.stencil;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Publisher of the UTF-8 encoded output of a single render. Rendering starts when the publisher is subscribed to, and the output is published in chunks as
+ * each one is filled. Only one subscriber is allowed.
+ *
+ * <p>This bridges a blocking render to a reactive subscriber. Chunks are buffered for the subscriber, but if it falls behind by more than the buffer, the
+ * rendering thread blocks until it catches up. If the subscriber cancels its subscription, the render is abandoned.</p>
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+final class RenderPublisher implements Flow.Publisher<ByteBuffer> {
+
+  /** Size of each published chunk. */
+  static final int CHUNK_SIZE = 8192;
+
+
+
+  /**
+   * Output stream which publishes its content in chunks.
+   */
+  private static final class ChunkStream extends OutputStream {
+
+    /** The publisher to the subscriber. */
+    private final SubmissionPublisher<ByteBuffer> publisher;
+
+    /** The chunk being filled. */
+    private byte[] chunk = new byte[CHUNK_SIZE];
+
+    /** The number of bytes in the chunk. */
+    private int count = 0;
+
+
+    ChunkStream(SubmissionPublisher<ByteBuffer> publisher) {
+      this.publisher = publisher;
+    }
+
+
+    /**
+     * Publish any pending output. This blocks whilst the subscriber's buffer is full.
+     *
+     * @throws IOException if the subscriber has cancelled
+     */
+    @Override
+    public void flush() throws IOException {
+      if (count == 0) {
+        return;
+      }
+      if (publisher.isClosed() || !publisher.hasSubscribers()) {
+        throw new IOException("Render abandoned as the subscriber has cancelled");
+      }
+      publisher.submit(ByteBuffer.wrap(chunk, 0, count));
+      chunk = new byte[CHUNK_SIZE];
+      count = 0;
+    }
+
+
+    @Override
+    public void write(int b) throws IOException {
+      if (count == CHUNK_SIZE) {
+        flush();
+      }
+      chunk[count++] = (byte) b;
+    }
+
+
+    @Override
+    public void write(byte[] bytes, int off, int len) throws IOException {
+      Objects.checkFromIndexSize(off, len, bytes.length);
+      while (len > 0) {
+        if (count == CHUNK_SIZE) {
+          flush();
+        }
+        int copy = Math.min(len, CHUNK_SIZE - count);
+        System.arraycopy(bytes, off, chunk, count, copy);
+        count += copy;
+        off += copy;
+        len -= copy;
+      }
+    }
+
+  }
+
+
+
+  /** Has this been subscribed to?. */
+  private final AtomicBoolean isSubscribed = new AtomicBoolean(false);
+
+  /** Starts the render to the output stream. The render must flush the stream when it is complete. */
+  private final Function<OutputStream, CompletableFuture<Void>> render;
+
+
+  /**
+   * New instance.
+   *
+   * @param render starts the render to an output stream, which must be flushed when the render completes
+   */
+  RenderPublisher(Function<OutputStream, CompletableFuture<Void>> render) {
+    this.render = render;
+  }
+
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+    Objects.requireNonNull(subscriber);
+    if (!isSubscribed.compareAndSet(false, true)) {
+      subscriber.onSubscribe(new Flow.Subscription() {
+        @Override
+        public void cancel() {
+          // do nothing
+        }
+
+
+        @Override
+        public void request(long n) {
+          // do nothing
+        }
+      });
+      subscriber.onError(new IllegalStateException("The output of a render can only be subscribed to once"));
+      return;
+    }
+
+    SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<>();
+    publisher.subscribe(subscriber);
+    render.apply(new ChunkStream(publisher)).whenComplete((ignored, failure) -> {
+      if (failure == null) {
+        publisher.close();
+      } else {
+        publisher.closeExceptionally((failure instanceof CompletionException && failure.getCause() != null) ? failure.getCause() : failure);
+      }
+    });
+  }
+
+}
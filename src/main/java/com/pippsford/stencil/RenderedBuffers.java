@@ -0,0 +1,177 @@
+package com.pippsford.stencil;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The UTF-8 encoded output of a stencil, held in a chain of buffers taken from a {@link BufferPool}. The buffers can be written to a channel in a single
+ * gathering write. They must be returned to the pool by closing this when they are no longer needed.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public final class RenderedBuffers implements AutoCloseable {
+
+  /** An output stream which fills buffers from the pool. */
+  final class Sink extends OutputStream {
+
+    /** The buffer currently being filled. */
+    private ByteBuffer current = null;
+
+
+    /**
+     * Prepare the buffers for reading.
+     */
+    void finish() {
+      for (ByteBuffer buffer : buffers) {
+        buffer.flip();
+      }
+      current = null;
+    }
+
+
+    private ByteBuffer next() {
+      ByteBuffer buffer = pool.acquire();
+      buffers.add(buffer);
+      current = buffer;
+      return buffer;
+    }
+
+
+    @Override
+    public void write(int b) {
+      ByteBuffer buffer = current;
+      if (buffer == null || !buffer.hasRemaining()) {
+        buffer = next();
+      }
+      buffer.put((byte) b);
+    }
+
+
+    @Override
+    public void write(byte[] bytes, int off, int len) {
+      Objects.checkFromIndexSize(off, len, bytes.length);
+      while (len > 0) {
+        ByteBuffer buffer = current;
+        if (buffer == null || !buffer.hasRemaining()) {
+          buffer = next();
+        }
+        int count = Math.min(len, buffer.remaining());
+        buffer.put(bytes, off, count);
+        off += count;
+        len -= count;
+      }
+    }
+
+  }
+
+
+
+  /** The buffers holding the output. */
+  private final List<ByteBuffer> buffers = new ArrayList<>();
+
+  /** The pool the buffers came from. */
+  private final BufferPool pool;
+
+  /** Have the buffers been returned to the pool?. */
+  private boolean isClosed = false;
+
+
+  /**
+   * New instance.
+   *
+   * @param pool the pool to take buffers from
+   */
+  RenderedBuffers(BufferPool pool) {
+    this.pool = Objects.requireNonNull(pool);
+  }
+
+
+  /**
+   * Return the buffers to the pool. The buffers must not be used afterwards.
+   */
+  @Override
+  public void close() {
+    if (isClosed) {
+      return;
+    }
+    isClosed = true;
+    for (ByteBuffer buffer : buffers) {
+      pool.release(buffer);
+    }
+    buffers.clear();
+  }
+
+
+  /**
+   * Get the buffers holding the output. Each buffer's position and limit delimit its part of the output. Writing to a channel advances the positions.
+   *
+   * @return the buffers
+   */
+  public ByteBuffer[] getBuffers() {
+    return buffers.toArray(new ByteBuffer[0]);
+  }
+
+
+  /**
+   * Get the number of bytes of output which have not yet been written.
+   *
+   * @return the number of bytes remaining
+   */
+  public long getRemaining() {
+    long remaining = 0;
+    for (ByteBuffer buffer : buffers) {
+      remaining += buffer.remaining();
+    }
+    return remaining;
+  }
+
+
+  /**
+   * Create the stream which fills the buffers.
+   *
+   * @return the stream
+   */
+  Sink sink() {
+    return new Sink();
+  }
+
+
+  /**
+   * Write the remaining output to a channel using gathering writes. A blocking channel is written to until all the output has been written. A non-blocking
+   * channel may accept only part of the output, in which case this should be called again when the channel is ready.
+   *
+   * @param channel the channel
+   *
+   * @return the number of bytes written
+   *
+   * @throws IOException if the channel fails
+   */
+  public long writeTo(GatheringByteChannel channel) throws IOException {
+    if (isClosed) {
+      throw new IllegalStateException("Buffers have been returned to the pool");
+    }
+    ByteBuffer[] array = getBuffers();
+    long total = 0;
+    int first = 0;
+    while (true) {
+      while (first < array.length && !array[first].hasRemaining()) {
+        first++;
+      }
+      if (first == array.length) {
+        return total;
+      }
+      long written = channel.write(array, first, array.length - first);
+      if (written <= 0) {
+        // channel cannot accept more at the moment
+        return total;
+      }
+      total += written;
+    }
+  }
+
+}
@@ -95,6 +95,18 @@ public class Source {
   }
 
 
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Source that)) {
+      return false;
+    }
+    return path.equals(that.path) && suffix.equals(that.suffix);
+  }
+
+
   /**
    * Get the path for this source.
    *
@@ -115,6 +127,12 @@ public class Source {
   }
 
 
+  @Override
+  public int hashCode() {
+    return 31 * path.hashCode() + suffix.hashCode();
+  }
+
+
   @Override
   public String toString() {
     return path + suffix;
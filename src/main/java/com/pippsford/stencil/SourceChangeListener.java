@@ -0,0 +1,20 @@
+package com.pippsford.stencil;
+
+import jakarta.annotation.Nullable;
+
+/**
+ * A listener for changes to the sources held by a source provider.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public interface SourceChangeListener {
+
+  /**
+   * Notification that a source has been created, modified, or deleted.
+   *
+   * @param path the provider's localised path of the source that changed, such as "/folder/name_fr.txt". If null, the change could not be attributed to a
+   *             specific source and any source may have changed.
+   */
+  void sourceChanged(@Nullable String path);
+
+}
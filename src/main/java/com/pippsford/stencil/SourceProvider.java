@@ -12,6 +12,15 @@ import com.pippsford.stencil.source.StencilStorageException;
  */
 public interface SourceProvider {
 
+  /**
+   * Add a listener which will be notified when a source changes. Providers whose sources cannot change, or which cannot detect changes, ignore listeners.
+   *
+   * @param listener the listener
+   */
+  default void addChangeListener(SourceChangeListener listener) {
+    // do nothing
+  }
+
   /**
    * Get the named source file appropriate for the specified locale.
    *
@@ -32,4 +41,22 @@ public interface SourceProvider {
    */
   String getSourceRoot();
 
+  /**
+   * Forget any source text or other state this provider holds, so that sources are read again when next requested. This is called when every template is
+   * invalidated.
+   */
+  default void refresh() {
+    // do nothing
+  }
+
+
+  /**
+   * Remove a listener previously added with {@link #addChangeListener(SourceChangeListener)}. Does nothing if the listener was not added.
+   *
+   * @param listener the listener
+   */
+  default void removeChangeListener(SourceChangeListener listener) {
+    // do nothing
+  }
+
 }
@@ -1,12 +1,34 @@
 package com.pippsford.stencil;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.io.UncheckedIOException;
 import java.io.Writer;
+import java.lang.ref.Cleaner;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
 import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import jakarta.annotation.Nullable;
 
 import com.pippsford.stencil.apply.AugmentedIndex;
 import com.pippsford.stencil.apply.EntriesFunction;
@@ -15,12 +37,16 @@ import com.pippsford.stencil.apply.IsFunction;
 import com.pippsford.stencil.apply.JsonFunction;
 import com.pippsford.stencil.apply.StackTraceFunction;
 import com.pippsford.stencil.apply.ValueProcessor;
+import com.pippsford.stencil.blocks.ParallelLoops;
 import com.pippsford.stencil.blocks.Template;
+import com.pippsford.stencil.cache.TemplateCache;
+import com.pippsford.stencil.cache.UnboundedTemplateCache;
 import com.pippsford.stencil.escape.Escape;
 import com.pippsford.stencil.escape.EscapeResolver;
 import com.pippsford.stencil.escape.StandardEscape;
 import com.pippsford.stencil.parser.StencilParseFailedException;
 import com.pippsford.stencil.parser.TemplateParser;
+import com.pippsford.stencil.parser.TemplateSnapshot;
 import com.pippsford.stencil.source.SourceStencilId;
 import com.pippsford.stencil.source.StencilId;
 import com.pippsford.stencil.source.StencilNotFoundException;
@@ -33,7 +59,10 @@ import com.pippsford.util.CopyOnWriteMap;
  *
  * @author Simon Greatrix on 22/12/2020.
  */
-public class Stencils {
+public class Stencils implements AutoCloseable {
+
+  /** Removes the change listeners of instances which are no longer referenced. */
+  private static final Cleaner CLEANER = Cleaner.create();
 
   private static final Map<String, ValueProcessor> STANDARD_FUNCTIONS = Map.of(
       "index", AugmentedIndex.INSTANCE,
@@ -44,24 +73,153 @@ public class Stencils {
       "entries", EntriesFunction.INSTANCE
   );
 
+
+
+  /**
+   * The listener registered with the source provider. It only holds its instance weakly, so a long-lived provider does not keep an unused instance and its
+   * cached templates alive. When the instance is no longer referenced, the listener is removed from the provider by the cleaner.
+   */
+  private static final class WeakChangeListener implements SourceChangeListener, Runnable {
+
+    /** The provider the listener is registered with. */
+    private final SourceProvider sourceProvider;
+
+    /** The instance to notify. */
+    private final WeakReference<Stencils> stencils;
+
+
+    WeakChangeListener(Stencils stencils) {
+      this.stencils = new WeakReference<>(stencils);
+      sourceProvider = stencils.sourceProvider;
+    }
+
+
+    @Override
+    public void run() {
+      sourceProvider.removeChangeListener(this);
+    }
+
+
+    @Override
+    public void sourceChanged(@Nullable String path) {
+      Stencils instance = stencils.get();
+      if (instance != null) {
+        instance.sourceChanged(path);
+      }
+    }
+
+  }
+
+
+
+  /**
+   * Wait for another thread to load a template.
+   *
+   * @param load the other thread's load
+   *
+   * @return the template
+   *
+   * @throws StencilException if the other thread failed to load the template
+   */
+  private static Template awaitLoad(CompletableFuture<Template> load) throws StencilException {
+    try {
+      return load.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof StencilException stencilException) {
+        throw stencilException;
+      }
+      if (cause instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      if (cause instanceof Error error) {
+        throw error;
+      }
+      throw e;
+    }
+  }
+
+
+  /**
+   * Wait, without blocking, for the values of the input which are still being computed and which the templates read. If the input is a map, its values
+   * which are completion stages and whose names are read by any of the templates are waited for. They are then resolved without blocking when the templates
+   * are rendered. A failure is not reported here, but when the value is accessed.
+   *
+   * <p>Only the map's own values are waited for. A completion stage nested within another value, such as a future "price" within the value "order" read by
+   * "{order.price}", is not known until the template reads it, so the thread rendering the template blocks until it completes.</p>
+   *
+   * @param params    the input to a stencil
+   * @param templates the templates which will be rendered
+   *
+   * @return a future which completes when the values are ready
+   */
+  private static CompletableFuture<Void> prefetch(Object params, Collection<Template> templates) {
+    if (!(params instanceof Map<?, ?> map)) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    Set<String> names = new HashSet<>();
+    for (Template template : templates) {
+      template.addReferencedNames(names);
+    }
+    List<CompletableFuture<?>> pending = new ArrayList<>();
+    for (String name : names) {
+      if (map.get(name) instanceof CompletionStage<?> stage) {
+        pending.add(stage.toCompletableFuture());
+      }
+    }
+    if (pending.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).handle((ignored, failure) -> null);
+  }
+
+
   private final Map<String, Object> defaultValues = new CopyOnWriteMap<>();
 
   /** Handle for resolving named escape styles. */
   private final EscapeResolver escapeResolver = new EscapeResolver();
 
+  /** Incremented whenever cached templates are invalidated, so that a load which overlaps an invalidation does not cache a stale template. */
+  private final AtomicLong generation = new AtomicLong();
+
+  /** For each parsed stencil, the stencils which directly include it. */
+  private final ConcurrentHashMap<StencilId, Set<StencilId>> includedBy = new ConcurrentHashMap<>();
+
+  /** Templates currently being loaded, so that concurrent requests for the same template share a single load. */
+  private final ConcurrentHashMap<StencilId, CompletableFuture<Template>> loading = new ConcurrentHashMap<>();
+
+  /** Settings for rendering large loops in parallel. */
+  private final ParallelLoops parallelLoops = new ParallelLoops();
+
   /** Provider of stencil sources. */
   private final SourceProvider sourceProvider;
 
-  /** Map of resources to stencils. */
-  private final CopyOnWriteMap<StencilId, Template> stencilMap = new CopyOnWriteMap<>();
+  /** Removes the change listener from the source provider. Null until the first template is loaded. */
+  private volatile Cleaner.Cleanable changeListener = null;
+
+  /** Set when this instance has been closed, so it will not start listening for changes. */
+  private boolean closed = false;
+
+  /** Number of renders after which a template is compiled. Zero means templates are never compiled. */
+  private int compileThreshold = 0;
 
   /** The default escape style for values. */
   private Escape defaultEscape = StandardEscape.HTML_SAFE;
 
   private String defaultResourceBundle;
 
+  /** The maximum number of escaped values memoised in each render. Zero means escaped values are not memoised. */
+  private int escapeMemoSize = 0;
+
   private String standardFunctionScope = null;
 
+  /** Cache of parsed templates. */
+  private volatile TemplateCache templateCache = new UnboundedTemplateCache();
+
+  /** Snapshot of parsed templates, if one is in use. */
+  private volatile TemplateSnapshot templateSnapshot = null;
+
 
   /**
    * Create a stencil map.
@@ -71,6 +229,30 @@ public class Stencils {
   public Stencils(SourceProvider sourceProvider) {
     this.sourceProvider = sourceProvider;
     setStandardFunctions("F");
+    templateCache.setEvictionListener(this::templateEvicted);
+  }
+
+
+  /**
+   * Stop listening for changes to the source provider. Templates already cached are kept, but will not be invalidated when their sources change. Closing is
+   * optional, as the listener is also removed once this instance is no longer referenced.
+   */
+  @Override
+  public synchronized void close() {
+    closed = true;
+    if (changeListener != null) {
+      changeListener.clean();
+    }
+  }
+
+
+  /**
+   * Get the number of renders after which a template is compiled into generated code.
+   *
+   * @return the compile threshold, or zero if templates are never compiled
+   */
+  public int getCompileThreshold() {
+    return compileThreshold;
   }
 
 
@@ -106,6 +288,16 @@ public class Stencils {
   }
 
 
+  /**
+   * Get the maximum number of escaped values memoised in each render.
+   *
+   * @return the maximum number of memoised values, or zero if escaped values are not memoised
+   */
+  public int getEscapeMemoSize() {
+    return escapeMemoSize;
+  }
+
+
   /**
    * Get the escape style resolver.
    *
@@ -116,6 +308,17 @@ public class Stencils {
   }
 
 
+  /**
+   * Get the settings for rendering the rows of large loops in parallel. Changes to the settings apply to every template, including those already parsed.
+   * By default, loops are rendered sequentially.
+   *
+   * @return the settings
+   */
+  public ParallelLoops getParallelLoops() {
+    return parallelLoops;
+  }
+
+
   /**
    * Get the source provider.
    *
@@ -138,22 +341,231 @@ public class Stencils {
    * @throws StencilNotFoundException    if the stencil does not exist.
    */
   public Template getTemplate(StencilId stencilId) throws StencilException {
-    Template template = stencilMap.get(stencilId);
+    TemplateCache cache = templateCache;
+    Template template = cache.get(stencilId);
     if (template != null) {
       return template;
     }
 
-    synchronized (stencilMap.getLock()) {
-      template = stencilMap.get(stencilId);
-      if (template != null) {
-        return template;
+    // Only one thread loads any given template. Other threads wanting the same template wait for it, but different templates load in parallel.
+    CompletableFuture<Template> myLoad = new CompletableFuture<>();
+    CompletableFuture<Template> otherLoad = loading.putIfAbsent(stencilId, myLoad);
+    if (otherLoad != null) {
+      return awaitLoad(otherLoad);
+    }
+
+    try {
+      // The template may have been loaded between our cache check and becoming the loader. That check has already been counted.
+      template = cache.peek(stencilId);
+      if (template == null) {
+        listenForChanges();
+        long version = generation.get();
+        template = TemplateParser.parse(this, stencilId);
+        recordIncludes(stencilId, template);
+        cache.put(stencilId, template);
+        if (generation.get() != version) {
+          // A source may have changed whilst it was being parsed. The template is good enough for this request, but must not be kept.
+          cache.invalidate(stencilId::equals);
+        }
       }
+      myLoad.complete(template);
+      return template;
+    } catch (StencilException | RuntimeException | Error e) {
+      myLoad.completeExceptionally(e);
+      throw e;
+    } finally {
+      loading.remove(stencilId, myLoad);
+    }
+  }
+
+
+  /**
+   * Get the cache of parsed templates.
+   *
+   * @return the template cache
+   */
+  public TemplateCache getTemplateCache() {
+    return templateCache;
+  }
+
+
+  /**
+   * Get the snapshot used to recreate templates without parsing their sources, if one is in use.
+   *
+   * @return the snapshot, or null
+   */
+  @Nullable
+  public TemplateSnapshot getTemplateSnapshot() {
+    return templateSnapshot;
+  }
+
+
+  /**
+   * Remove all the cached templates for the stencil at the specified path, for every locale, bundle and escape style. Templates which include the stencil,
+   * directly or indirectly, are also removed, as they hold on to the template they included.
+   *
+   * @param stencilName the stencil's name
+   */
+  public void invalidate(String stencilName) {
+    Source source;
+    try {
+      source = Source.of(stencilName);
+    } catch (StencilNotFoundException e) {
+      // An invalid name cannot have been cached
+      return;
+    }
+    invalidateAffected(id -> id instanceof SourceStencilId sourceId && sourceId.getSource().equals(source));
+  }
+
+
+  /**
+   * Remove the cached templates for the stencils which match a test, and for every stencil which includes them directly or indirectly.
+   *
+   * @param changed test for the stencils which have changed
+   */
+  private void invalidateAffected(Predicate<StencilId> changed) {
+    // Loads in progress cannot be checked against the predicate, so they are all told that something changed.
+    generation.incrementAndGet();
+    ArrayDeque<StencilId> pending = new ArrayDeque<>();
+    for (StencilId id : includedBy.keySet()) {
+      if (changed.test(id)) {
+        pending.add(id);
+      }
+    }
+
+    Set<StencilId> affected = new HashSet<>();
+    while (!pending.isEmpty()) {
+      StencilId id = pending.pop();
+      if (affected.add(id)) {
+        pending.addAll(includedBy.getOrDefault(id, Set.of()));
+      }
+    }
+    if (affected.isEmpty()) {
+      return;
+    }
+
+    // The invalidated stencils will record their includes again when they are re-parsed.
+    includedBy.keySet().removeAll(affected);
+    templateCache.invalidate(affected::contains);
+  }
+
+
+  /**
+   * Remove all cached templates. The source provider is also told to forget anything it holds, so that sources are read again.
+   */
+  public void invalidateAll() {
+    sourceProvider.refresh();
+    generation.incrementAndGet();
+    includedBy.clear();
+    templateCache.invalidateAll();
+  }
+
+
+  /**
+   * Register for change notifications from the source provider, if not already registered. This is done when the first template is loaded, as until then
+   * there is nothing to invalidate.
+   */
+  private void listenForChanges() {
+    if (changeListener != null) {
+      return;
+    }
+    synchronized (this) {
+      if (changeListener == null && !closed) {
+        WeakChangeListener listener = new WeakChangeListener(this);
+        sourceProvider.addChangeListener(listener);
+        changeListener = CLEANER.register(this, listener);
+      }
+    }
+  }
+
+
+  /**
+   * Load a stencil and every template it includes or references as a resource, directly or indirectly.
+   *
+   * @param stencilId the stencil's ID
+   * @param seen      the templates which have been loaded
+   * @param isStrict  if true, fail if any template cannot be loaded. If false, only fail if the stencil itself cannot be loaded, and skip the references which
+   *                  cannot be loaded, as they may never be rendered.
+   *
+   * @return the stencil's template
+   *
+   * @throws StencilException if the stencil, or when strict any of the templates, cannot be loaded
+   */
+  private Template loadWithReferences(StencilId stencilId, Set<Template> seen, boolean isStrict) throws StencilException {
+    Template root = getTemplate(stencilId);
+    ArrayDeque<Template> pending = new ArrayDeque<>();
+    pending.add(root);
+    while (!pending.isEmpty()) {
+      Template template = pending.pop();
+      if (seen.add(template)) {
+        pending.addAll(isStrict ? template.loadReferences() : template.loadAvailableReferences());
+      }
+    }
+    return root;
+  }
 
-      template = TemplateParser.parse(this, stencilId);
 
-      stencilMap.put(stencilId, template);
+  /**
+   * Process the named stencil asynchronously, publishing its output as chunks of UTF-8. The stencil is loaded and rendered on the executor when the
+   * publisher is subscribed to, as for {@link #writeAsync(String, OutputStream, Locale, ZoneId, Object, Executor)}. Only one subscriber is allowed. If the
+   * subscriber cancels, the render is abandoned.
+   *
+   * <p>This is a blocking bridge to a reactive subscriber. The render writes to a stream, so when the subscriber falls more than a buffer's worth of chunks
+   * behind, the executor thread rendering the stencil blocks until the subscriber requests more. An executor whose threads must not block, such as an event
+   * loop, should not be used.</p>
+   *
+   * @param stencilName the stencil's name
+   * @param locale      the localization (if null, uses system default)
+   * @param zoneId      the time zone (if null, uses system default)
+   * @param params      the input to the stencil
+   * @param executor    the executor to load and render the stencil on
+   *
+   * @return a publisher of the output
+   */
+  public Flow.Publisher<ByteBuffer> publish(String stencilName, Locale locale, ZoneId zoneId, Object params, Executor executor) {
+    return new RenderPublisher(output -> writeAsync(stencilName, output, locale, zoneId, params, executor));
+  }
+
+
+  private void render(Template template, Writer writer, Locale locale, ZoneId zoneId, Object params) throws IOException, StencilException {
+    template.countRender(compileThreshold);
+
+    Data data = Data.create(params);
+    if (escapeMemoSize > 0) {
+      data.setEscapeMemoSize(escapeMemoSize);
     }
-    return template;
+    defaultValues.forEach(data::putIfMissing);
+    template.process(writer, locale, zoneId, data);
+  }
+
+
+  /**
+   * Record which stencils a newly parsed template includes, so that it can be invalidated when they change.
+   *
+   * @param stencilId the ID of the parsed stencil
+   * @param template  the parsed template
+   */
+  private void recordIncludes(StencilId stencilId, Template template) {
+    includedBy.computeIfAbsent(stencilId, k -> ConcurrentHashMap.newKeySet());
+    for (StencilId included : template.getIncludedStencilIds()) {
+      // Updated atomically, as an eviction may be removing the entry
+      includedBy.compute(included, (k, v) -> {
+        Set<StencilId> includers = (v != null) ? v : ConcurrentHashMap.<StencilId>newKeySet();
+        includers.add(stencilId);
+        return includers;
+      });
+    }
+  }
+
+
+  /**
+   * Set the number of renders after which a template is compiled into generated code. Compiled templates produce exactly the same output as interpreted
+   * ones, but avoid the per-block dispatch of the interpreter. By default, templates are never compiled.
+   *
+   * @param compileThreshold the number of renders before compilation. Zero or negative to disable compilation.
+   */
+  public void setCompileThreshold(int compileThreshold) {
+    this.compileThreshold = Math.max(0, compileThreshold);
   }
 
 
@@ -192,6 +604,21 @@ public class Stencils {
   }
 
 
+  /**
+   * Set the maximum number of escaped values memoised in each render. When the same short value is output many times in a render, such as a product name in
+   * every row of a table, it is then only escaped once. The memo only lasts for the render, so nothing is held between renders. Memoising is disabled by
+   * default.
+   *
+   * @param escapeMemoSize the maximum number of memoised values. Zero disables memoising.
+   */
+  public void setEscapeMemoSize(int escapeMemoSize) {
+    if (escapeMemoSize < 0) {
+      throw new IllegalArgumentException("Maximum entries must not be negative, not " + escapeMemoSize);
+    }
+    this.escapeMemoSize = escapeMemoSize;
+  }
+
+
   /**
    * Load the standard functions by default into the specified scope. If scope is null, the standard functions are not loaded.
    *
@@ -208,6 +635,128 @@ public class Stencils {
   }
 
 
+  /**
+   * Set the cache used to hold parsed templates. The new cache starts empty. By default, an unbounded cache is used.
+   *
+   * @param templateCache the new cache
+   */
+  public void setTemplateCache(TemplateCache templateCache) {
+    templateCache.setEvictionListener(this::templateEvicted);
+    TemplateCache old = this.templateCache;
+    this.templateCache = templateCache;
+    old.setEvictionListener(null);
+    generation.incrementAndGet();
+    includedBy.clear();
+  }
+
+
+  /**
+   * Set the snapshot used to recreate templates without parsing their sources. Templates which are not in the snapshot, or whose sources have changed, are
+   * parsed and added to it, so the snapshot can be written out for use by a later process. By default, no snapshot is used.
+   *
+   * @param templateSnapshot the snapshot, or null to always parse sources
+   */
+  public void setTemplateSnapshot(@Nullable TemplateSnapshot templateSnapshot) {
+    this.templateSnapshot = templateSnapshot;
+  }
+
+
+  /**
+   * Handle a change notification from the source provider. Only the templates whose source may have changed, and the templates that include them, are
+   * removed from the cache.
+   *
+   * @param path the localised path that changed, or null if any source may have changed
+   */
+  private void sourceChanged(@Nullable String path) {
+    if (path == null) {
+      invalidateAll();
+      return;
+    }
+    invalidateAffected(id -> id instanceof SourceStencilId sourceId && sourceId.isCandidatePath(path));
+  }
+
+
+  /**
+   * Forget the includes of a template which has left the cache without being invalidated. A stencil's own entry is kept whilst templates which include it may
+   * still be cached, as they must be invalidated if it changes.
+   *
+   * @param stencilId the ID of the template which left the cache
+   * @param template  the template
+   */
+  private void templateEvicted(StencilId stencilId, Template template) {
+    for (StencilId included : template.getIncludedStencilIds()) {
+      includedBy.computeIfPresent(included, (k, v) -> {
+        v.remove(stencilId);
+        return (v.isEmpty() && templateCache.peek(k) == null) ? null : v;
+      });
+    }
+    includedBy.computeIfPresent(stencilId, (k, v) -> v.isEmpty() ? null : v);
+  }
+
+
+  /**
+   * Load, parse and resolve the specified stencils ahead of their first use, so that the first render does not pay for loading them. Every combination of
+   * stencil name and locale is warmed up as a separate task on the executor. For each one, the stencil and every template it includes or references as a
+   * resource is loaded into the template cache. If a compile threshold is set, the templates are also compiled.
+   *
+   * <p>Failures do not stop the warm-up. Each failure is recorded against the stencil and locale in which it occurred.</p>
+   *
+   * @param stencilNames the names of the root stencils
+   * @param locales      the locales to warm up each stencil for
+   * @param executor     the executor to run the warm-up tasks on
+   *
+   * @return a report of the time taken and any failures
+   */
+  public WarmUpReport warmUp(Collection<String> stencilNames, Collection<Locale> locales, Executor executor) {
+    long start = System.nanoTime();
+    List<CompletableFuture<WarmUpReport.Result>> tasks = new ArrayList<>();
+    for (String stencilName : stencilNames) {
+      for (Locale locale : locales) {
+        tasks.add(CompletableFuture.supplyAsync(() -> warmUp(stencilName, locale), executor));
+      }
+    }
+
+    List<WarmUpReport.Result> results = new ArrayList<>(tasks.size());
+    for (CompletableFuture<WarmUpReport.Result> task : tasks) {
+      results.add(task.join());
+    }
+    return new WarmUpReport(results, System.nanoTime() - start);
+  }
+
+
+  /**
+   * Load, parse and resolve the specified stencils ahead of their first use, using the common fork-join pool.
+   *
+   * @param stencilNames the names of the root stencils
+   * @param locales      the locales to warm up each stencil for
+   *
+   * @return a report of the time taken and any failures
+   *
+   * @see #warmUp(Collection, Collection, Executor)
+   */
+  public WarmUpReport warmUp(Collection<String> stencilNames, Collection<Locale> locales) {
+    return warmUp(stencilNames, locales, ForkJoinPool.commonPool());
+  }
+
+
+  private WarmUpReport.Result warmUp(String stencilName, Locale locale) {
+    long start = System.nanoTime();
+    Set<Template> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+    try {
+      StencilId stencilId = new SourceStencilId(sourceProvider, stencilName, locale, defaultResourceBundle, defaultEscape);
+      loadWithReferences(stencilId, seen, true);
+      if (compileThreshold > 0) {
+        for (Template template : seen) {
+          template.compile();
+        }
+      }
+    } catch (StencilException | RuntimeException e) {
+      return new WarmUpReport.Result(stencilName, locale, seen.size(), System.nanoTime() - start, e);
+    }
+    return new WarmUpReport.Result(stencilName, locale, seen.size(), System.nanoTime() - start, null);
+  }
+
+
   /**
    * Process the named stencil.
    *
@@ -244,11 +793,60 @@ public class Stencils {
     }
 
     StencilId stencilId = new SourceStencilId(sourceProvider, stencilName, locale, defaultResourceBundle, defaultEscape);
-    Template myStencil = getTemplate(stencilId);
+    render(getTemplate(stencilId), writer, locale, zoneId, params);
+  }
 
-    Data data = Data.create(params);
-    defaultValues.forEach(data::putIfMissing);
-    myStencil.process(writer, locale, zoneId, data);
+
+  /**
+   * Process the named stencil, rendering it as UTF-8 into buffers taken from a pool. The result can be written to a channel with a gathering write, and must
+   * be closed to return the buffers to the pool.
+   *
+   * @param stencilName the stencil's name
+   * @param pool        the pool to take buffers from
+   * @param locale      the localization (if null, uses system default)
+   * @param zoneId      the time zone (if null, uses system default)
+   * @param params      the input to the stencil
+   *
+   * @return the buffers holding the output
+   *
+   * @throws StencilException if the processing of a stencil fails
+   */
+  public RenderedBuffers write(String stencilName, BufferPool pool, Locale locale, ZoneId zoneId, Object params) throws StencilException {
+    RenderedBuffers buffers = new RenderedBuffers(pool);
+    boolean isComplete = false;
+    try {
+      RenderedBuffers.Sink sink = buffers.sink();
+      write(stencilName, sink, locale, zoneId, params);
+      sink.finish();
+      isComplete = true;
+      return buffers;
+    } catch (IOException e) {
+      throw new UncheckedIOException("I/O Exception without I/O", e);
+    } finally {
+      if (!isComplete) {
+        buffers.close();
+      }
+    }
+  }
+
+
+  /**
+   * Process the named stencil, writing it to a stream encoded as UTF-8. Static text is copied to the stream without being encoded again. The stream is
+   * flushed, but not closed.
+   *
+   * @param stencilName the stencil's name
+   * @param output      where to write the stencil to
+   * @param locale      the localization (if null, uses system default)
+   * @param zoneId      the time zone (if null, uses system default)
+   * @param params      the input to the stencil
+   *
+   * @throws IOException      if the output of the stencil cannot be written
+   * @throws StencilException if the processing of a stencil fails
+   */
+  public void write(String stencilName, OutputStream output, Locale locale, ZoneId zoneId, Object params) throws IOException, StencilException {
+    Utf8Output utf8Output = new Utf8Output(output);
+    write(stencilName, utf8Output, locale, zoneId, params);
+    utf8Output.flush();
   }
 
 
@@ -291,4 +889,73 @@ public class Stencils {
   }
 
 
+  /**
+   * Process the named stencil asynchronously, writing it to a stream encoded as UTF-8. The stream is flushed, but not closed.
+   *
+   * @param stencilName the stencil's name
+   * @param output      where to write the stencil to
+   * @param locale      the localization (if null, uses system default)
+   * @param zoneId      the time zone (if null, uses system default)
+   * @param params      the input to the stencil
+   * @param executor    the executor to load and render the stencil on
+   *
+   * @return a future which completes when the stencil has been written
+   *
+   * @see #writeAsync(String, Writer, Locale, ZoneId, Object, Executor)
+   */
+  public CompletableFuture<Void> writeAsync(String stencilName, OutputStream output, Locale locale, ZoneId zoneId, Object params, Executor executor) {
+    Utf8Output utf8Output = new Utf8Output(output);
+    return writeAsync(stencilName, utf8Output, locale, zoneId, params, executor).thenRun(() -> {
+      try {
+        utf8Output.flush();
+      } catch (IOException e) {
+        throw new CompletionException(e);
+      }
+    });
+  }
+
+
+  /**
+   * Process the named stencil asynchronously. The calling thread is never blocked. The stencil, and every template it includes or references as a resource,
+   * is loaded on the executor. Only a failure to load the stencil itself fails the render before it starts. A template which it refers to but which cannot be
+   * loaded is reported when, and if, it is rendered, exactly as when writing synchronously. If the input is a map, any of its values which are completion
+   * stages and which the templates read are waited for without blocking. When everything is ready, the stencil is rendered on the executor.
+   *
+   * <p>Only the map's own values are waited for in advance. Suppliers, futures which are not yet complete, and completion stages nested within other values
+   * are resolved when they are first read, which blocks the executor thread rendering the stencil until they are available.</p>
+   *
+   * <p>If the stencil cannot be loaded or processed, the returned future completes exceptionally with the {@link StencilException} or {@link IOException}
+   * as the cause.</p>
+   *
+   * @param stencilName the stencil's name
+   * @param writer      where to write the stencil to
+   * @param locale      the localization (if null, uses system default)
+   * @param zoneId      the time zone (if null, uses system default)
+   * @param params      the input to the stencil
+   * @param executor    the executor to load and render the stencil on
+   *
+   * @return a future which completes when the stencil has been written
+   */
+  public CompletableFuture<Void> writeAsync(String stencilName, Writer writer, Locale locale, ZoneId zoneId, Object params, Executor executor) {
+    final Locale actualLocale = (locale != null) ? locale : Locale.getDefault();
+    final ZoneId actualZoneId = (zoneId != null) ? zoneId : ZoneId.systemDefault();
+    Set<Template> templates = Collections.newSetFromMap(new IdentityHashMap<>());
+    CompletableFuture<Template> load = CompletableFuture.supplyAsync(() -> {
+      try {
+        StencilId stencilId = new SourceStencilId(sourceProvider, stencilName, actualLocale, defaultResourceBundle, defaultEscape);
+        return loadWithReferences(stencilId, templates, false);
+      } catch (StencilException e) {
+        throw new CompletionException(e);
+      }
+    }, executor);
+
+    return load.thenCompose(template -> prefetch(params, templates).thenApply(ignored -> template)).thenAcceptAsync(template -> {
+      try {
+        render(template, writer, actualLocale, actualZoneId, params);
+      } catch (IOException | StencilException e) {
+        throw new CompletionException(e);
+      }
+    }, executor);
+  }
+
 }
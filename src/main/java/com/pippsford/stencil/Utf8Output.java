@@ -0,0 +1,256 @@
+package com.pippsford.stencil;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Objects;
+
+/**
+ * A writer which encodes directly to UTF-8 bytes. Text which has already been encoded, such as the static text of a template, can be written as bytes
+ * without being encoded again.
+ *
+ * <p>Characters are encoded into an internal buffer, which is written to the output stream when it is full, or when this writer is flushed. Unpaired
+ * surrogates are replaced with '?', as {@link String#getBytes(java.nio.charset.Charset)} does. A surrogate pair may be split across calls to write, but not
+ * across a flush.</p>
+ *
+ * <p>This class is not thread safe.</p>
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public class Utf8Output extends Writer {
+
+  /** Default size of the internal buffer. */
+  private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+  /** The buffer of encoded bytes. */
+  private final byte[] buffer;
+
+  /** The stream the encoded bytes are written to. */
+  private final OutputStream output;
+
+  /** The number of bytes in the buffer. */
+  private int count = 0;
+
+  /** A high surrogate which has been written, but not yet paired with a low surrogate. Zero if there is none. */
+  private char highSurrogate = 0;
+
+
+  /**
+   * New instance with the default buffer size.
+   *
+   * @param output the stream to write to
+   */
+  public Utf8Output(OutputStream output) {
+    this(output, DEFAULT_BUFFER_SIZE);
+  }
+
+
+  /**
+   * New instance.
+   *
+   * @param output     the stream to write to
+   * @param bufferSize the size of the internal buffer, which must be at least 4
+   */
+  public Utf8Output(OutputStream output, int bufferSize) {
+    if (bufferSize < 4) {
+      throw new IllegalArgumentException("Buffer size must be at least 4, not " + bufferSize);
+    }
+    this.output = Objects.requireNonNull(output);
+    buffer = new byte[bufferSize];
+  }
+
+
+  @Override
+  public Utf8Output append(CharSequence csq) throws IOException {
+    if (csq == null) {
+      csq = "null";
+    }
+    return append(csq, 0, csq.length());
+  }
+
+
+  /**
+   * Append part of a character sequence. Unlike the default implementation, this does not create an intermediate string.
+   *
+   * @param csq   the characters to append. If null, "null" is appended.
+   * @param start the index of the first character to append
+   * @param end   the index after the last character to append
+   *
+   * @return this
+   *
+   * @throws IOException if the output stream fails
+   */
+  @Override
+  public Utf8Output append(CharSequence csq, int start, int end) throws IOException {
+    if (csq == null) {
+      csq = "null";
+    }
+    Objects.checkFromToIndex(start, end, csq.length());
+    if (csq instanceof String string) {
+      write(string, start, end - start);
+    } else {
+      for (int i = start; i < end; i++) {
+        encode(csq.charAt(i));
+      }
+    }
+    return this;
+  }
+
+
+  /**
+   * Write any pending encoded bytes to the output stream, and close it.
+   *
+   * @throws IOException if the output stream fails
+   */
+  @Override
+  public void close() throws IOException {
+    flush();
+    output.close();
+  }
+
+
+  private void encode(char ch) throws IOException {
+    if (highSurrogate != 0) {
+      char high = highSurrogate;
+      highSurrogate = 0;
+      if (Character.isLowSurrogate(ch)) {
+        int cp = Character.toCodePoint(high, ch);
+        ensure(4);
+        buffer[count++] = (byte) (0xf0 | (cp >> 18));
+        buffer[count++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+        buffer[count++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+        buffer[count++] = (byte) (0x80 | (cp & 0x3f));
+        return;
+      }
+      ensure(1);
+      buffer[count++] = '?';
+    }
+
+    if (ch < 0x80) {
+      ensure(1);
+      buffer[count++] = (byte) ch;
+    } else if (ch < 0x800) {
+      ensure(2);
+      buffer[count++] = (byte) (0xc0 | (ch >> 6));
+      buffer[count++] = (byte) (0x80 | (ch & 0x3f));
+    } else if (Character.isHighSurrogate(ch)) {
+      highSurrogate = ch;
+    } else if (Character.isLowSurrogate(ch)) {
+      ensure(1);
+      buffer[count++] = '?';
+    } else {
+      ensure(3);
+      buffer[count++] = (byte) (0xe0 | (ch >> 12));
+      buffer[count++] = (byte) (0x80 | ((ch >> 6) & 0x3f));
+      buffer[count++] = (byte) (0x80 | (ch & 0x3f));
+    }
+  }
+
+
+  private void ensure(int space) throws IOException {
+    if (count + space > buffer.length) {
+      flushBuffer();
+    }
+  }
+
+
+  /**
+   * Write any pending encoded bytes to the output stream, and flush it. A high surrogate which has not yet been paired is treated as unpaired.
+   *
+   * @throws IOException if the output stream fails
+   */
+  @Override
+  public void flush() throws IOException {
+    resolveSurrogate();
+    flushBuffer();
+    output.flush();
+  }
+
+
+  private void flushBuffer() throws IOException {
+    if (count > 0) {
+      output.write(buffer, 0, count);
+      count = 0;
+    }
+  }
+
+
+  private void resolveSurrogate() throws IOException {
+    if (highSurrogate != 0) {
+      highSurrogate = 0;
+      ensure(1);
+      buffer[count++] = '?';
+    }
+  }
+
+
+  @Override
+  public void write(int c) throws IOException {
+    encode((char) c);
+  }
+
+
+  @Override
+  public void write(char[] cbuf, int off, int len) throws IOException {
+    Objects.checkFromIndexSize(off, len, cbuf.length);
+    int end = off + len;
+    int i = off;
+    while (i < end) {
+      // Fast path for runs of ASCII, which need no encoding
+      if (highSurrogate == 0) {
+        int limit = Math.min(end, i + buffer.length - count);
+        while (i < limit && cbuf[i] < 0x80) {
+          buffer[count++] = (byte) cbuf[i++];
+        }
+        if (i == end) {
+          return;
+        }
+      }
+      encode(cbuf[i++]);
+    }
+  }
+
+
+  @Override
+  public void write(String str, int off, int len) throws IOException {
+    Objects.checkFromIndexSize(off, len, str.length());
+    int end = off + len;
+    int i = off;
+    while (i < end) {
+      // Fast path for runs of ASCII, which need no encoding
+      if (highSurrogate == 0) {
+        int limit = Math.min(end, i + buffer.length - count);
+        while (i < limit && str.charAt(i) < 0x80) {
+          buffer[count++] = (byte) str.charAt(i++);
+        }
+        if (i == end) {
+          return;
+        }
+      }
+      encode(str.charAt(i++));
+    }
+  }
+
+
+  /**
+   * Write text which has already been encoded as UTF-8.
+   *
+   * @param bytes the encoded text
+   *
+   * @throws IOException if the output stream fails
+   */
+  public void writeUtf8(byte[] bytes) throws IOException {
+    resolveSurrogate();
+    int length = bytes.length;
+    if (length > buffer.length - count) {
+      flushBuffer();
+      if (length >= buffer.length) {
+        output.write(bytes, 0, length);
+        return;
+      }
+    }
+    System.arraycopy(bytes, 0, buffer, count, length);
+    count += length;
+  }
+
+}
@@ -0,0 +1,72 @@
+package com.pippsford.stencil;
+
+import java.util.List;
+import java.util.Locale;
+
+import jakarta.annotation.Nullable;
+
+/**
+ * The outcome of warming up a set of stencils.
+ *
+ * @param results      the outcome for each stencil and locale
+ * @param elapsedNanos the total time taken, in nanoseconds
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public record WarmUpReport(List<Result> results, long elapsedNanos) {
+
+  /**
+   * The outcome of warming up one stencil in one locale.
+   *
+   * @param stencilName   the stencil's name
+   * @param locale        the locale
+   * @param templateCount the number of distinct templates loaded, including the stencil itself and everything it includes
+   * @param elapsedNanos  the time taken, in nanoseconds
+   * @param failure       the reason the stencil, or something it includes, could not be loaded. Null if the warm-up succeeded.
+   */
+  public record Result(String stencilName, Locale locale, int templateCount, long elapsedNanos, @Nullable Exception failure) {
+
+    /**
+     * Did this warm-up succeed?.
+     *
+     * @return true if the stencil and everything it includes were loaded
+     */
+    public boolean isSuccessful() {
+      return failure == null;
+    }
+
+  }
+
+
+
+  /**
+   * New instance.
+   *
+   * @param results      the outcome for each stencil and locale
+   * @param elapsedNanos the total time taken, in nanoseconds
+   */
+  public WarmUpReport {
+    results = List.copyOf(results);
+  }
+
+
+  /**
+   * Get the results for the stencils which could not be warmed up.
+   *
+   * @return the failed results
+   */
+  public List<Result> getFailures() {
+    return results.stream().filter(r -> !r.isSuccessful()).toList();
+  }
+
+
+  /**
+   * Did every stencil warm up successfully?.
+   *
+   * @return true if there were no failures
+   */
+  public boolean isSuccessful() {
+    return results.stream().allMatch(Result::isSuccessful);
+  }
+
+}
@@ -4,6 +4,7 @@ import java.math.BigDecimal;
 
 import com.pippsford.common.TypeSafeMap;
 import com.pippsford.stencil.value.Data;
+import com.pippsford.stencil.value.OptionalValue;
 
 /**
  * This value processor provides additional fields to assist in processing of collections with the <code>[with]</code> directive.
@@ -57,7 +58,7 @@ public class AugmentedIndex implements ValueProcessor {
    *   <dd>Integer. The current page number (one based)</dd>
    *
    *   <dt>pageCount</dt>
-   *   <dd>Integer. The number of pages.</dd>
+   *   <dd>Integer. The number of pages. Not set when the loop is streaming and the size is not yet known.</dd>
    * </dl>
    *
    * <p>Note: a prefix may be specified to prevent the added fields masking another field.</p>
@@ -80,15 +81,19 @@ public class AugmentedIndex implements ValueProcessor {
   @Override
   public Object apply(Data valueProvider, Parameter[] arguments) {
     Integer index = TypeSafeMap.asInt(valueProvider.get("index").value());
-    Integer size = TypeSafeMap.asInt(valueProvider.get("size").value());
+    OptionalValue optSize = valueProvider.get("size");
+    Integer size = TypeSafeMap.asInt(optSize.value());
 
     if (index == null) {
       throw new IllegalArgumentException("No 'index' property in provided data");
     }
-    if (size == null) {
+    if (optSize.isMissing() || (size == null && optSize.value() != null)) {
       throw new IllegalArgumentException("No 'size' property in provided data");
     }
 
+    // A streaming loop does not know its size until it reaches the last entry, so a null size means "not the last entry".
+    boolean isLast = size != null && index == size - 1;
+
     String prefix = arguments.length > 0 ? arguments[0].asString() : "";
     Integer pageSize = null;
     if (arguments.length > 1) {
@@ -106,17 +111,19 @@ public class AugmentedIndex implements ValueProcessor {
     }
 
     valueProvider.put(prefix + "isFirst", index == 0);
-    valueProvider.put(prefix + "isLast", index == size - 1);
+    valueProvider.put(prefix + "isLast", isLast);
     valueProvider.put(prefix + "index1", index + 1);
     valueProvider.put(prefix + "isEven", (index & 1) == 0);
     valueProvider.put(prefix + "isOdd", (index & 1) == 1);
 
     if (pageSize != null) {
       valueProvider.put(prefix + "isFirstOnPage", (index % pageSize) == 0);
-      valueProvider.put(prefix + "isLastOnPage", (index % pageSize) == (pageSize - 1) || (index == size - 1));
+      valueProvider.put(prefix + "isLastOnPage", (index % pageSize) == (pageSize - 1) || isLast);
       valueProvider.put(prefix + "pageRow", 1 + (index % pageSize));
       valueProvider.put(prefix + "pageNumber", 1 + (index / pageSize));
-      valueProvider.put(prefix + "pageCount", (size / pageSize) + (((size % pageSize) != 0) ? 1 : 0));
+      if (size != null) {
+        valueProvider.put(prefix + "pageCount", (size / pageSize) + (((size % pageSize) != 0) ? 1 : 0));
+      }
     }
 
     return null;
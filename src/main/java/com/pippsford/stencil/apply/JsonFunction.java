@@ -42,7 +42,7 @@ public class JsonFunction implements ValueProcessor {
         return JsonValue.NULL;
       }
 
-      data = new Data(ValueAccessor.makeProvider(valueProvider.getProvider(), input));
+      data = new Data(valueProvider, ValueAccessor.makeProvider(valueProvider.getProvider(), input));
     } else {
       data = valueProvider;
     }
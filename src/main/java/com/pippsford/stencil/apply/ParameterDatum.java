@@ -1,5 +1,6 @@
 package com.pippsford.stencil.apply;
 
+import com.pippsford.stencil.value.CompiledPath;
 import com.pippsford.stencil.value.Data;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
@@ -12,6 +13,9 @@ public class ParameterDatum extends Parameter {
 
   private final Data myData;
 
+  /** The compiled path to the value. */
+  private final CompiledPath path;
+
 
   /**
    * New instance.
@@ -21,14 +25,20 @@ public class ParameterDatum extends Parameter {
    */
   @SuppressFBWarnings("EI_EXPOSE_REP")
   public ParameterDatum(Data data, String rawValue) {
+    this(data, rawValue, CompiledPath.of(rawValue));
+  }
+
+
+  private ParameterDatum(Data data, String rawValue, CompiledPath path) {
     super(rawValue);
     myData = data;
+    this.path = path;
   }
 
 
   @Override
   public Object getValue() {
-    return myData.get(rawValue).value();
+    return myData.get(path).value();
   }
 
 
@@ -45,7 +55,7 @@ public class ParameterDatum extends Parameter {
 
   @Override
   public Parameter withData(Data newData) {
-    return new ParameterDatum(newData, getRaw());
+    return new ParameterDatum(newData, getRaw(), path);
   }
 
 }
@@ -4,6 +4,7 @@ import java.io.Writer;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Locale;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -13,6 +14,7 @@ import com.pippsford.stencil.apply.ParameterDatum;
 import com.pippsford.stencil.apply.ParameterLiteral;
 import com.pippsford.stencil.apply.ParameterNull;
 import com.pippsford.stencil.apply.ValueProcessor;
+import com.pippsford.stencil.value.CompiledPath;
 import com.pippsford.stencil.value.Data;
 import com.pippsford.stencil.value.ValueAccessor;
 
@@ -38,7 +40,7 @@ public class Apply implements Block {
   /**
    * The parameter to output.
    */
-  protected final String[] functionName;
+  protected final CompiledPath functionName;
 
   /**
    * The output value key.
@@ -54,7 +56,7 @@ public class Apply implements Block {
    * @param arguments    the arguments to the function as comma separated list of IDs.
    */
   public Apply(String function, String outParameter, String arguments) {
-    functionName = ValueAccessor.toKey(function);
+    functionName = CompiledPath.of(function);
 
     if (outParameter != null) {
       this.outParameter = ValueAccessor.toKey(outParameter);
@@ -100,6 +102,17 @@ public class Apply implements Block {
   }
 
 
+  @Override
+  public void addReferencedNames(Set<String> names) {
+    names.add(functionName.getFirst());
+    for (Parameter argument : arguments) {
+      if (argument instanceof ParameterDatum) {
+        names.add(ValueAccessor.toKey(argument.getRaw())[0]);
+      }
+    }
+  }
+
+
   @Override
   public BlockTypes getType() {
     return BlockTypes.APPLY;
@@ -133,7 +146,7 @@ public class Apply implements Block {
     }
 
     throw new IllegalStateException(
-        "Expected a value processor at \"" + String.join(".", functionName) + "\" but got " + (function == null ? "null" : function.getClass()));
+        "Expected a value processor at \"" + functionName + "\" but got " + (function == null ? "null" : function.getClass()));
   }
 
 }
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.io.Writer;
 import java.time.ZoneId;
 import java.util.Locale;
+import java.util.Set;
 
 import com.pippsford.stencil.StencilException;
 import com.pippsford.stencil.value.Data;
@@ -13,6 +14,17 @@ import com.pippsford.stencil.value.Data;
  */
 public interface Block {
 
+  /**
+   * Add the names of the values this block reads to a set. Only the first element of each path is added, as that names the value the path starts from. Blocks
+   * which read no values add nothing.
+   *
+   * @param names the set of names
+   */
+  default void addReferencedNames(Set<String> names) {
+    // do nothing
+  }
+
+
   /**
    * Get the type of this block.
    *
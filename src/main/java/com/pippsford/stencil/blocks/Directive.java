@@ -1,5 +1,9 @@
 package com.pippsford.stencil.blocks;
 
+import java.util.Set;
+
+import com.pippsford.stencil.value.CompiledPath;
+
 /**
  * A directive for control of processing flow within a page.
  */
@@ -18,7 +22,7 @@ abstract class Directive implements Block {
   /**
    * A parameter that determines what will be rendered.
    */
-  final String[] param;
+  final CompiledPath param;
 
 
   /**
@@ -29,9 +33,17 @@ abstract class Directive implements Block {
    * @param other the alternative template
    */
   Directive(String param, Template main, Template other) {
-    this.param = param.split("\\.");
+    this.param = CompiledPath.of(param);
     this.main = main;
     this.other = other;
   }
 
+
+  @Override
+  public void addReferencedNames(Set<String> names) {
+    names.add(param.getFirst());
+    main.addReferencedNames(names);
+    other.addReferencedNames(names);
+  }
+
 }
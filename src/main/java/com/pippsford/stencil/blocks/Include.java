@@ -4,8 +4,10 @@ import java.io.IOException;
 import java.io.Writer;
 import java.time.ZoneId;
 import java.util.Locale;
+import jakarta.annotation.Nullable;
 
 import com.pippsford.stencil.StencilException;
+import com.pippsford.stencil.source.StencilId;
 import com.pippsford.stencil.value.Data;
 
 /**
@@ -34,6 +36,9 @@ public class Include implements Block {
   /** Loader for template. */
   private final TemplateProvider loader;
 
+  /** The ID of the included stencil, if known. */
+  private final StencilId stencilId;
+
   /** The lazily-loaded included template. */
   private Template template;
 
@@ -44,17 +49,57 @@ public class Include implements Block {
    * @param loader provider of templates
    */
   public Include(TemplateProvider loader) {
+    this(null, loader);
+  }
+
+
+  /**
+   * New instance.
+   *
+   * @param stencilId the ID of the included stencil
+   * @param loader    provider of templates
+   */
+  public Include(@Nullable StencilId stencilId, TemplateProvider loader) {
+    this.stencilId = stencilId;
     this.loader = loader;
   }
 
 
+  /**
+   * Get the included template if it has already been loaded.
+   *
+   * @return the template, or null if it has not been loaded
+   */
+  synchronized Template getLoadedTemplate() {
+    return template;
+  }
+
+
+  /**
+   * Get the ID of the included stencil.
+   *
+   * @return the ID, or null if it is not known
+   */
+  @Nullable
+  public StencilId getStencilId() {
+    return stencilId;
+  }
+
+
   @Override
   public BlockTypes getType() {
     return BlockTypes.INCLUDE;
   }
 
 
-  private synchronized Template loadTemplate() throws StencilException {
+  /**
+   * Load the included template, if it has not already been loaded.
+   *
+   * @return the template
+   *
+   * @throws StencilException if the template cannot be loaded
+   */
+  synchronized Template loadTemplate() throws StencilException {
     if (template == null) {
       template = loader.get();
     }
@@ -1,31 +1,192 @@
 package com.pippsford.stencil.blocks;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.io.Writer;
+import java.lang.reflect.Array;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntFunction;
+import java.util.stream.BaseStream;
+
+import jakarta.annotation.Nullable;
 
 import com.pippsford.stencil.StencilException;
 import com.pippsford.stencil.value.Data;
-import com.pippsford.stencil.value.IndexedValueProvider;
+import com.pippsford.stencil.value.Indexable;
 import com.pippsford.stencil.value.ListEntryValueProvider;
-import com.pippsford.stencil.value.OptionalValue;
 import com.pippsford.stencil.value.ValueProvider;
 
+
 /**
  * Directive for loops or sub-contexts.
  */
 public class LoopDirective extends Directive {
 
+  /** Set whilst a thread is rendering a loop in parallel, so that loops nested within it are not also split. */
+  private static final ThreadLocal<Boolean> IN_PARALLEL_LOOP = new ThreadLocal<>();
+
+
+
   /**
-   * Create new directive.
+   * A chunk of rows rendered in parallel. A chunk is rendered by whichever of the executor and the thread which started the loop claims it first, so that
+   * thread never waits for a chunk the executor has not started.
+   */
+  private static final class Chunk {
+
+    /** The first row of the chunk. */
+    final int from;
+
+    /** The rendered chunk, if the executor rendered it. */
+    final CompletableFuture<String> result = new CompletableFuture<>();
+
+    /** The row after the last row of the chunk. */
+    final int to;
+
+    /** Has a thread claimed this chunk?. */
+    private final AtomicBoolean claimed = new AtomicBoolean();
+
+
+    Chunk(int from, int to) {
+      this.from = from;
+      this.to = to;
+    }
+
+
+    /**
+     * Claim this chunk for rendering.
+     *
+     * @return true if the caller must render the chunk, false if it was already claimed
+     */
+    boolean claim() {
+      return claimed.compareAndSet(false, true);
+    }
+
+  }
+
+
+
+  /**
+   * The data for the rows of a single invocation of a loop. A single row provider and data instance is re-used for every row, unless the row's data is
+   * modified while it is processed, in which case a fresh pair is created for the next row.
+   */
+  private static final class Rows {
+
+    /** The provider that rows inherit from. */
+    private final ValueProvider parent;
+
+    /** The data of the scope containing the loop. */
+    private final Data scope;
+
+    /** The number of rows, or -1 if not known. */
+    private final int size;
+
+    /** The current row's data. */
+    private Data data;
+
+    /** The current row's provider. */
+    private ListEntryValueProvider provider;
+
+
+    Rows(Data scope, int size) {
+      this.scope = scope;
+      parent = scope.getProvider();
+      this.size = size;
+    }
+
+
+    Data get(int index, Object value) {
+      return get(index, value, index == size - 1);
+    }
+
+
+    Data get(int index, Object value, boolean isLast) {
+      if (data != null && data.getProvider() == provider) {
+        provider.setEntry(index, value, isLast);
+      } else {
+        provider = new ListEntryValueProvider(parent, index, size, value);
+        provider.setEntry(index, value, isLast);
+        data = new Data(scope, provider);
+      }
+      return data;
+    }
+
+  }
+
+
+
+  /**
+   * Convert the failure of a chunk rendered in parallel back to the exception the rendering threw.
+   *
+   * @param failure the failure
+   *
+   * @return the exception to throw
+   *
+   * @throws IOException      if the output could not be written
+   * @throws StencilException if the processing of a block failed
+   */
+  private static RuntimeException rethrow(CompletionException failure) throws IOException, StencilException {
+    Throwable cause = failure.getCause();
+    if (cause instanceof IOException ioException) {
+      throw ioException;
+    }
+    if (cause instanceof StencilException stencilException) {
+      throw stencilException;
+    }
+    if (cause instanceof RuntimeException runtimeException) {
+      return runtimeException;
+    }
+    if (cause instanceof Error error) {
+      throw error;
+    }
+    return failure;
+  }
+
+
+  /** Can the rows of this loop be rendered in parallel?. */
+  private final boolean isParallelSafe;
+
+  /** Settings for parallel rendering, or null if this loop is always rendered sequentially. */
+  private final ParallelLoops parallelLoops;
+
+
+  /**
+   * Create new directive which is always rendered sequentially.
    *
    * @param param the parameter to be tested
    * @param main  the primary template, rendered for each TypeSafeMap of the parameter
    * @param other the alternative template
    */
   public LoopDirective(String param, Template main, Template other) {
+    this(param, main, other, null);
+  }
+
+
+  /**
+   * Create new directive.
+   *
+   * @param param         the parameter to be tested
+   * @param main          the primary template, rendered for each TypeSafeMap of the parameter
+   * @param other         the alternative template
+   * @param parallelLoops settings for rendering the rows in parallel, or null to always render sequentially
+   */
+  public LoopDirective(String param, Template main, Template other, @Nullable ParallelLoops parallelLoops) {
     super(param, main, other);
+    isParallelSafe = main.isSelfContained();
+    this.parallelLoops = parallelLoops;
   }
 
 
@@ -35,6 +196,11 @@ public class LoopDirective extends Directive {
   }
 
 
+  private boolean isParallel(int size) {
+    return isParallelSafe && parallelLoops != null && IN_PARALLEL_LOOP.get() == null && parallelLoops.isParallel(size);
+  }
+
+
   @Override
   public void process(Writer writer, Locale locale, ZoneId zoneId, Data data) throws IOException, StencilException {
     // If no data, go to the alternative template
@@ -44,20 +210,226 @@ public class LoopDirective extends Directive {
       return;
     }
 
-    // There is some data. Create an IndexedValueProvider to loop over it
-    ValueProvider parentProvider = data.getProvider();
-    IndexedValueProvider indexed = new IndexedValueProvider(parentProvider, value);
-    int size = indexed.size();
-    if (size > 0) {
+    // Iterate directly over the common indexed types.
+    if (value instanceof Indexable<?> indexable) {
+      int size = indexable.size();
+      if (size == 0) {
+        other.process(writer, locale, zoneId, data);
+        return;
+      }
+      if (isParallel(size)) {
+        processParallel(writer, locale, zoneId, data, size, indexable::apply);
+        return;
+      }
+      Rows rows = new Rows(data, size);
       for (int i = 0; i < size; i++) {
-        OptionalValue datum = indexed.get(i);
-        if (datum.isPresent()) {
-          main.process(writer, locale, zoneId, new Data(new ListEntryValueProvider(parentProvider, i, size, datum.value())));
+        main.process(writer, locale, zoneId, rows.get(i, indexable.apply(i)));
+      }
+      return;
+    }
+
+    if (value instanceof List<?> list) {
+      int size = list.size();
+      if (size == 0) {
+        other.process(writer, locale, zoneId, data);
+        return;
+      }
+      if (list instanceof RandomAccess && isParallel(size)) {
+        processParallel(writer, locale, zoneId, data, size, list::get);
+        return;
+      }
+      Rows rows = new Rows(data, size);
+      if (list instanceof RandomAccess) {
+        for (int i = 0; i < size; i++) {
+          main.process(writer, locale, zoneId, rows.get(i, list.get(i)));
+        }
+      } else {
+        Iterator<?> iterator = list.iterator();
+        for (int i = 0; i < size && iterator.hasNext(); i++) {
+          main.process(writer, locale, zoneId, rows.get(i, iterator.next()));
+        }
+      }
+      return;
+    }
+
+    if (value.getClass().isArray()) {
+      int size = Array.getLength(value);
+      if (size == 0) {
+        other.process(writer, locale, zoneId, data);
+        return;
+      }
+      if (isParallel(size)) {
+        IntFunction<?> values = (value instanceof Object[] array) ? i -> array[i] : i -> Array.get(value, i);
+        processParallel(writer, locale, zoneId, data, size, values);
+        return;
+      }
+      Rows rows = new Rows(data, size);
+      if (value instanceof Object[] array) {
+        for (int i = 0; i < size; i++) {
+          main.process(writer, locale, zoneId, rows.get(i, array[i]));
+        }
+      } else {
+        for (int i = 0; i < size; i++) {
+          main.process(writer, locale, zoneId, rows.get(i, Array.get(value, i)));
         }
       }
+      return;
+    }
+
+    Iterator<?> iterator;
+    int size = -1;
+    if (value instanceof Collection<?> collection) {
+      iterator = collection.iterator();
+      size = collection.size();
+    } else if (value instanceof Iterable<?> iterable) {
+      iterator = iterable.iterator();
+    } else if (value instanceof Iterator<?> iterator1) {
+      iterator = iterator1;
+    } else if (value instanceof Enumeration<?> enumeration) {
+      iterator = enumeration.asIterator();
+    } else if (value instanceof BaseStream<?, ?> || value instanceof Spliterator<?>) {
+      Spliterator<?> spliterator = (value instanceof BaseStream<?, ?> stream) ? stream.spliterator() : (Spliterator<?>) value;
+      size = (int) Math.min(Integer.MAX_VALUE, spliterator.getExactSizeIfKnown());
+      iterator = Spliterators.iterator(spliterator);
     } else {
+      // Final fallback - no idea how to loop over this, so treat it as a single entry
+      main.process(writer, locale, zoneId, new Rows(data, 1).get(0, value));
+      return;
+    }
+
+    stream(writer, locale, zoneId, data, iterator, size);
+  }
+
+
+  /**
+   * Render the rows of a loop in parallel. The rows are split into chunks. The first chunk is written directly by this thread, whilst the others are rendered
+   * into buffers by the executor. The buffers are then written in order. A chunk which the executor has not started when it is needed is rendered directly by
+   * this thread instead.
+   *
+   * @param writer the output
+   * @param locale the output locale
+   * @param zoneId the time zone
+   * @param scope  the data of the scope containing the loop
+   * @param size   the number of rows
+   * @param values the value for each row
+   *
+   * @throws IOException      if the output cannot be written
+   * @throws StencilException if the processing of a block fails
+   */
+  private void processParallel(Writer writer, Locale locale, ZoneId zoneId, Data scope, int size, IntFunction<?> values)
+      throws IOException, StencilException {
+    final int chunkSize = parallelLoops.getChunkSize();
+    Executor executor = parallelLoops.getExecutor();
+    List<Chunk> chunks = new ArrayList<>();
+    IN_PARALLEL_LOOP.set(Boolean.TRUE);
+    try {
+      for (int start = chunkSize; start < size; start += chunkSize) {
+        Chunk chunk = new Chunk(start, (int) Math.min(size, (long) start + chunkSize));
+        chunks.add(chunk);
+        try {
+          executor.execute(() -> renderChunk(chunk, locale, zoneId, scope, size, values));
+        } catch (RejectedExecutionException e) {
+          // This thread will render the chunk
+        }
+      }
+
+      renderRows(writer, locale, zoneId, new Rows(scope, size), values, 0, Math.min(size, chunkSize));
+      for (Chunk chunk : chunks) {
+        if (chunk.claim()) {
+          renderRows(writer, locale, zoneId, new Rows(scope, size), values, chunk.from, chunk.to);
+        } else {
+          writer.write(chunk.result.join());
+        }
+      }
+    } catch (CompletionException e) {
+      throw rethrow(e);
+    } finally {
+      IN_PARALLEL_LOOP.remove();
+
+      // Abandon any chunks which are no longer needed because of a failure
+      for (Chunk chunk : chunks) {
+        chunk.claim();
+      }
+    }
+  }
+
+
+  /**
+   * Render a chunk of rows into a buffer, unless the chunk has already been claimed.
+   *
+   * @param chunk  the chunk
+   * @param locale the output locale
+   * @param zoneId the time zone
+   * @param scope  the data of the scope containing the loop
+   * @param size   the number of rows in the whole loop
+   * @param values the value for each row
+   */
+  private void renderChunk(Chunk chunk, Locale locale, ZoneId zoneId, Data scope, int size, IntFunction<?> values) {
+    if (!chunk.claim()) {
+      return;
+    }
+
+    // An executor may run the task on the thread which started the loop, which must remain marked.
+    boolean isMarked = IN_PARALLEL_LOOP.get() != null;
+    if (!isMarked) {
+      IN_PARALLEL_LOOP.set(Boolean.TRUE);
+    }
+    try {
+      StringWriter buffer = new StringWriter();
+      renderRows(buffer, locale, zoneId, new Rows(scope, size), values, chunk.from, chunk.to);
+      chunk.result.complete(buffer.toString());
+    } catch (IOException | StencilException e) {
+      chunk.result.completeExceptionally(new CompletionException(e));
+    } catch (RuntimeException | Error e) {
+      chunk.result.completeExceptionally(e);
+    } finally {
+      if (!isMarked) {
+        IN_PARALLEL_LOOP.remove();
+      }
+    }
+  }
+
+
+  private void renderRows(Writer writer, Locale locale, ZoneId zoneId, Rows rows, IntFunction<?> values, int from, int to)
+      throws IOException, StencilException {
+    for (int i = from; i < to; i++) {
+      main.process(writer, locale, zoneId, rows.get(i, values.apply(i)));
+    }
+  }
+
+
+  /**
+   * Loop over the values provided by an iterator, pulling one value at a time. Whether each entry is the last is determined by looking ahead one entry.
+   *
+   * @param writer   the output
+   * @param locale   the output locale
+   * @param zoneId   the time zone
+   * @param data     the data for the loop
+   * @param iterator the iterator
+   * @param size     the number of entries, or -1 if not known
+   *
+   * @throws IOException      if the output cannot be written
+   * @throws StencilException if the processing of a block fails
+   */
+  private void stream(Writer writer, Locale locale, ZoneId zoneId, Data data, Iterator<?> iterator, int size) throws IOException, StencilException {
+    if (!iterator.hasNext()) {
       // No actual data
       other.process(writer, locale, zoneId, data);
+      return;
+    }
+
+    Rows rows = new Rows(data, size);
+    int index = 0;
+    Object next = iterator.next();
+    while (true) {
+      Object current = next;
+      boolean hasMore = iterator.hasNext();
+      main.process(writer, locale, zoneId, rows.get(index, current, !hasMore));
+      if (!hasMore) {
+        return;
+      }
+      next = iterator.next();
+      index++;
     }
   }
 
@@ -0,0 +1,116 @@
+package com.pippsford.stencil.blocks;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Settings for rendering the rows of large loops in parallel. The rows are split into chunks, each chunk is rendered into its own buffer by the executor, and
+ * the buffers are written out in order, so the output is identical to sequential rendering. Each {@link com.pippsford.stencil.Stencils} instance has its own
+ * settings, which apply to every template it has parsed.
+ *
+ * <p>Parallel rendering is disabled by default, and is enabled by setting a threshold. Only loops over lists, arrays, and indexable values are rendered in
+ * parallel. A loop is only eligible if its body cannot modify the data it is rendered with, which is decided when the template is parsed. A body which
+ * contains an apply block with an output parameter, an include, or a resource is always rendered sequentially. Values accessed by an eligible loop body may be
+ * read concurrently by several threads, so they must be safe to read concurrently.</p>
+ *
+ * <p>Only the outermost eligible loop is split. Loops nested inside it are rendered sequentially by whichever thread renders their chunk. The thread which
+ * started the loop renders any chunk the executor has not yet started, rather than waiting for it, so a busy or bounded executor cannot deadlock a
+ * render.</p>
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public final class ParallelLoops {
+
+  /** Default number of rows in each chunk. */
+  public static final int DEFAULT_CHUNK_SIZE = 256;
+
+  /** The number of rows in each chunk. */
+  private volatile int chunkSize = DEFAULT_CHUNK_SIZE;
+
+  /** The executor which renders the chunks. */
+  private volatile Executor executor = ForkJoinPool.commonPool();
+
+  /** The minimum number of rows in a loop for it to be rendered in parallel. Zero disables parallel rendering. */
+  private volatile int threshold = 0;
+
+
+  /**
+   * Get the number of rows rendered in each chunk.
+   *
+   * @return the number of rows
+   */
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+
+  /**
+   * Get the executor which renders the chunks.
+   *
+   * @return the executor
+   */
+  public Executor getExecutor() {
+    return executor;
+  }
+
+
+  /**
+   * Get the minimum number of rows in a loop for it to be rendered in parallel. Zero means parallel rendering is disabled.
+   *
+   * @return the threshold
+   */
+  public int getThreshold() {
+    return threshold;
+  }
+
+
+  /**
+   * Should a loop with the specified number of rows be rendered in parallel?.
+   *
+   * @param size the number of rows
+   *
+   * @return true if the rows should be rendered in parallel
+   */
+  boolean isParallel(int size) {
+    int limit = threshold;
+    return limit > 0 && size >= limit && size > chunkSize;
+  }
+
+
+  /**
+   * Set the number of rows rendered in each chunk.
+   *
+   * @param chunkSize the number of rows
+   */
+  public void setChunkSize(int chunkSize) {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("Chunk size must be positive, not " + chunkSize);
+    }
+    this.chunkSize = chunkSize;
+  }
+
+
+  /**
+   * Set the executor which renders the chunks.
+   *
+   * @param executor the executor
+   */
+  public void setExecutor(Executor executor) {
+    this.executor = Objects.requireNonNull(executor);
+  }
+
+
+  /**
+   * Set the minimum number of rows in a loop for it to be rendered in parallel. Setting zero disables parallel rendering.
+   *
+   * @param threshold the threshold
+   */
+  public void setThreshold(int threshold) {
+    if (threshold < 0) {
+      throw new IllegalArgumentException("Threshold must not be negative, not " + threshold);
+    }
+    this.threshold = threshold;
+  }
+
+}
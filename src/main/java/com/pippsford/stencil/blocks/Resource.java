@@ -48,9 +48,21 @@ public class Resource implements Block {
   }
 
 
+  /**
+   * Load the template for the resource.
+   *
+   * @return the template
+   *
+   * @throws StencilException if the template cannot be loaded
+   */
+  Template loadTemplate() throws StencilException {
+    return context.getStencils().getTemplate(stencilId);
+  }
+
+
   @Override
   public void process(Writer out, Locale locale, ZoneId zoneId, Data data) throws StencilException, IOException {
-    Template temp = context.getStencils().getTemplate(stencilId);
+    Template temp = loadTemplate();
     temp.process(out, locale, zoneId, data);
   }
 
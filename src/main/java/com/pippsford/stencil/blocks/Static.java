@@ -2,14 +2,16 @@ package com.pippsford.stencil.blocks;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.ZoneId;
 import java.util.Locale;
 
+import com.pippsford.stencil.Utf8Output;
 import com.pippsford.stencil.value.Data;
 
 
 /**
- * A simple block of static text.
+ * A simple block of static text. The text is also held encoded as UTF-8, so it can be copied directly to a {@link Utf8Output}.
  */
 public class Static implements Block {
 
@@ -20,6 +22,11 @@ public class Static implements Block {
    */
   private final String text;
 
+  /**
+   * Text to output, encoded as UTF-8.
+   */
+  private final byte[] utf8;
+
 
   /**
    * New static block of text.
@@ -30,6 +37,7 @@ public class Static implements Block {
   public Static(String text, boolean isRequired) {
     this.text = text;
     this.isRequired = isRequired;
+    utf8 = text.getBytes(StandardCharsets.UTF_8);
   }
 
 
@@ -61,6 +69,10 @@ public class Static implements Block {
 
   @Override
   public void process(Writer out, Locale locale, ZoneId zoneId, Data data) throws IOException {
+    if (out instanceof Utf8Output) {
+      ((Utf8Output) out).writeUtf8(utf8);
+      return;
+    }
     out.write(text);
   }
 
@@ -3,9 +3,15 @@ package com.pippsford.stencil.blocks;
 import java.io.IOException;
 import java.io.Writer;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.pippsford.stencil.StencilException;
+import com.pippsford.stencil.source.StencilId;
 import com.pippsford.stencil.value.Data;
 
 
@@ -19,6 +25,21 @@ public class Template implements Block {
    */
   private final Block[] blocks;
 
+  /** Does rendering this template leave its data unchanged, and not depend on any other template?. */
+  private final boolean isSelfContained;
+
+  /** Number of renders recorded against this template. */
+  private final AtomicInteger renderCount = new AtomicInteger();
+
+  /** The number of blocks in this template, including those in nested templates. */
+  private final int weight;
+
+  /** Has compilation of this template been attempted?. */
+  private volatile boolean compileAttempted = false;
+
+  /** The compiled form of this template, if it has been compiled. */
+  private volatile TemplateCompiler.Renderer compiled;
+
 
   /**
    * New template consisting of specified blocks.
@@ -27,6 +48,121 @@ public class Template implements Block {
    */
   public Template(Block[] blocks) {
     this.blocks = blocks.clone();
+
+    int w = 0;
+    boolean selfContained = true;
+    for (Block b : this.blocks) {
+      w++;
+      if (b instanceof Directive) {
+        Directive directive = (Directive) b;
+        w += directive.main.getWeight() + directive.other.getWeight();
+        selfContained &= directive.main.isSelfContained() && directive.other.isSelfContained();
+      } else if (b instanceof Template) {
+        w += ((Template) b).getWeight();
+        selfContained &= ((Template) b).isSelfContained();
+      } else if (b instanceof Apply) {
+        selfContained &= ((Apply) b).outParameter == null;
+      } else if (b instanceof Include || b instanceof Resource) {
+        selfContained = false;
+      }
+    }
+    weight = w;
+    isSelfContained = selfContained;
+  }
+
+
+  @Override
+  public void addReferencedNames(Set<String> names) {
+    for (Block b : blocks) {
+      b.addReferencedNames(names);
+    }
+  }
+
+
+  /**
+   * Compile this template, and the templates nested within it, into generated code. A template that cannot be compiled continues to be interpreted. The
+   * compiled and interpreted forms produce identical output.
+   */
+  public void compile() {
+    synchronized (this) {
+      if (compileAttempted) {
+        return;
+      }
+      compileAttempted = true;
+    }
+
+    for (Block b : blocks) {
+      if (b instanceof Directive) {
+        Directive directive = (Directive) b;
+        directive.main.compile();
+        directive.other.compile();
+      } else if (b instanceof Include) {
+        Template included = ((Include) b).getLoadedTemplate();
+        if (included != null) {
+          included.compile();
+        }
+      } else if (b instanceof Template) {
+        ((Template) b).compile();
+      }
+    }
+
+    compiled = TemplateCompiler.compile(blocks);
+  }
+
+
+  /**
+   * Record that this template is about to be rendered, compiling it when it has been rendered the specified number of times.
+   *
+   * @param threshold the number of renders after which the template is compiled. If zero or negative, the template is never compiled.
+   */
+  public void countRender(int threshold) {
+    // Once compilation has been attempted, whether it succeeded or not, there is nothing more to count
+    if (threshold > 0 && !compileAttempted && renderCount.incrementAndGet() >= threshold) {
+      compile();
+    }
+  }
+
+
+  /**
+   * Get the IDs of the stencils this template includes directly, including those included within nested directives.
+   *
+   * @return the IDs of the included stencils
+   */
+  public Set<StencilId> getIncludedStencilIds() {
+    Set<StencilId> ids = new HashSet<>();
+    getIncludedStencilIds(ids);
+    return ids;
+  }
+
+
+  private void getIncludedStencilIds(Set<StencilId> ids) {
+    for (Block b : blocks) {
+      if (b instanceof Directive) {
+        Directive directive = (Directive) b;
+        directive.main.getIncludedStencilIds(ids);
+        directive.other.getIncludedStencilIds(ids);
+      } else if (b instanceof Include) {
+        StencilId id = ((Include) b).getStencilId();
+        if (id != null) {
+          ids.add(id);
+        }
+      } else if (b instanceof Template) {
+        ((Template) b).getIncludedStencilIds(ids);
+      }
+    }
+  }
+
+
+  /**
+   * Get the names of the values this template reads directly, including those read within nested directives. Only the first element of each path is
+   * included. Included templates are not examined.
+   *
+   * @return the names
+   */
+  public Set<String> getReferencedNames() {
+    Set<String> names = new HashSet<>();
+    addReferencedNames(names);
+    return names;
   }
 
 
@@ -37,8 +173,99 @@ public class Template implements Block {
   }
 
 
+  /**
+   * Get the weight of this template, which is the number of blocks it contains including those in nested directives. Included templates are shared, so
+   * they do not contribute to the weight.
+   *
+   * @return the weight
+   */
+  public int getWeight() {
+    return weight;
+  }
+
+
+  /**
+   * Has this template been compiled?.
+   *
+   * @return true if this template will be rendered by generated code
+   */
+  public boolean isCompiled() {
+    return compiled != null;
+  }
+
+
+  /**
+   * Is this template self-contained? A self-contained template does not modify the data it is rendered with, and does not include any other template, so it
+   * may be rendered concurrently with different data.
+   *
+   * @return true if this template is self-contained
+   */
+  public boolean isSelfContained() {
+    return isSelfContained;
+  }
+
+
+  /**
+   * Load every template this template refers to via include directives and resource references which can be loaded. Templates which cannot be loaded are
+   * skipped, as they may be in a part of this template which is never rendered. If such a part is rendered, the failure is reported then.
+   *
+   * @return the directly referenced templates which could be loaded
+   */
+  public List<Template> loadAvailableReferences() {
+    List<Template> references = new ArrayList<>();
+    try {
+      loadReferences(references, false);
+    } catch (StencilException e) {
+      // Not possible, as failures are ignored
+      throw new IllegalStateException("Unexpected failure to load reference", e);
+    }
+    return references;
+  }
+
+
+  /**
+   * Load every template this template refers to via include directives and resource references, including those within nested directives. The referenced
+   * templates are returned, but the templates they refer to are not loaded.
+   *
+   * @return the directly referenced templates
+   *
+   * @throws StencilException if a referenced template cannot be loaded
+   */
+  public List<Template> loadReferences() throws StencilException {
+    List<Template> references = new ArrayList<>();
+    loadReferences(references, true);
+    return references;
+  }
+
+
+  private void loadReferences(List<Template> references, boolean isStrict) throws StencilException {
+    for (Block b : blocks) {
+      if (b instanceof Directive) {
+        Directive directive = (Directive) b;
+        directive.main.loadReferences(references, isStrict);
+        directive.other.loadReferences(references, isStrict);
+      } else if (b instanceof Include || b instanceof Resource) {
+        try {
+          references.add((b instanceof Include include) ? include.loadTemplate() : ((Resource) b).loadTemplate());
+        } catch (StencilException e) {
+          if (isStrict) {
+            throw e;
+          }
+        }
+      } else if (b instanceof Template) {
+        ((Template) b).loadReferences(references, isStrict);
+      }
+    }
+  }
+
+
   @Override
   public void process(Writer writer, Locale locale, ZoneId zoneId, Data data) throws IOException, StencilException {
+    TemplateCompiler.Renderer renderer = compiled;
+    if (renderer != null) {
+      renderer.process(writer, locale, zoneId, data);
+      return;
+    }
     for (Block b : blocks) {
       b.process(writer, locale, zoneId, data);
     }
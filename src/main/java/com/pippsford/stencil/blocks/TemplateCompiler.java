@@ -0,0 +1,352 @@
+package com.pippsford.stencil.blocks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.pippsford.stencil.StencilException;
+import com.pippsford.stencil.value.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiles the block sequence of a template into a hidden class in which the blocks are invoked in straight-line code. Each block invocation is a direct
+ * call on the block's concrete class, so the JIT sees a monomorphic call site for every block instead of a single megamorphic loop over the block array.
+ * Adjacent static text is merged into a single block, which keeps its pre-encoded form for byte output.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+final class TemplateCompiler {
+
+  /** Minimal constant pool for the generated class. */
+  private static class ConstantPool {
+
+    private final Map<String, Integer> entries = new HashMap<>();
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+
+    private final DataOutputStream output = new DataOutputStream(pool);
+
+    private int count = 1;
+
+
+    int classRef(String internalName) throws IOException {
+      int name = utf8(internalName);
+      return entry("C" + internalName, 7, name, -1);
+    }
+
+
+    private int entry(String key, int tag, int first, int second) throws IOException {
+      Integer index = entries.get(key);
+      if (index != null) {
+        return index;
+      }
+      output.writeByte(tag);
+      output.writeShort(first);
+      if (second >= 0) {
+        output.writeShort(second);
+      }
+      entries.put(key, count);
+      return count++;
+    }
+
+
+    int fieldRef(String owner, String name, String descriptor) throws IOException {
+      int cls = classRef(owner);
+      int nat = nameAndType(name, descriptor);
+      return entry("F" + owner + "." + name + ":" + descriptor, 9, cls, nat);
+    }
+
+
+    int methodRef(String owner, String name, String descriptor, boolean isInterface) throws IOException {
+      int cls = classRef(owner);
+      int nat = nameAndType(name, descriptor);
+      return entry((isInterface ? "I" : "M") + owner + "." + name + ":" + descriptor, isInterface ? 11 : 10, cls, nat);
+    }
+
+
+    private int nameAndType(String name, String descriptor) throws IOException {
+      return entry("N" + name + ":" + descriptor, 12, utf8(name), utf8(descriptor));
+    }
+
+
+    int utf8(String value) throws IOException {
+      String key = "U" + value;
+      Integer index = entries.get(key);
+      if (index != null) {
+        return index;
+      }
+      output.writeByte(1);
+      output.writeUTF(value);
+      entries.put(key, count);
+      return count++;
+    }
+
+
+    void writeTo(DataOutputStream out) throws IOException {
+      out.writeShort(count);
+      pool.writeTo(out);
+    }
+
+  }
+
+
+
+  /** A compiled template body. */
+  interface Renderer {
+
+    /**
+     * Render the compiled blocks.
+     *
+     * @param out    the output
+     * @param locale the output locale
+     * @param zoneId the time zone for dates and times
+     * @param data   this page's data
+     *
+     * @throws StencilException if the processing of a block fails
+     * @throws IOException      if the output cannot be written
+     */
+    void process(Writer out, Locale locale, ZoneId zoneId, Data data) throws StencilException, IOException;
+
+  }
+
+
+
+  private static final String BLOCK_NAME = "com/pippsford/stencil/blocks/Block";
+
+  /** Internal name of the generated class. The JVM will append a unique suffix when it is defined as a hidden class. */
+  private static final String CLASS_NAME = "com/pippsford/stencil/blocks/CompiledTemplate";
+
+  /** Maximum number of steps in a single generated method. Each step is at most 19 bytes, keeping the method well inside the 64K code limit. */
+  private static final int MAX_STEPS = 2048;
+
+  /** Descriptor of Block.process and Renderer.process. */
+  private static final String PROCESS_DESCRIPTOR = "(Ljava/io/Writer;Ljava/util/Locale;Ljava/time/ZoneId;Lcom/pippsford/stencil/value/Data;)V";
+
+  private static final Logger logger = LoggerFactory.getLogger(TemplateCompiler.class);
+
+
+  private static void addText(List<Block> steps, StringBuilder text) {
+    if (text.length() > 0) {
+      steps.add(new Static(text.toString(), true));
+      text.setLength(0);
+    }
+  }
+
+
+  /**
+   * Can the generated class invoke the specified block class directly? The class must be resolvable from this class loader and publicly accessible.
+   *
+   * @param type the block's class
+   *
+   * @return true if the class can be called directly
+   */
+  private static boolean canCallDirectly(Class<?> type) {
+    if (type.isHidden() || type.isArray() || type.getClassLoader() != TemplateCompiler.class.getClassLoader()) {
+      return false;
+    }
+    if (type.getPackage() == TemplateCompiler.class.getPackage()) {
+      return true;
+    }
+    for (Class<?> c = type; c != null; c = c.getEnclosingClass()) {
+      if (!Modifier.isPublic(c.getModifiers())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  /**
+   * Compile a sequence of blocks.
+   *
+   * @param blocks the blocks
+   *
+   * @return the compiled form, or null if the blocks cannot be compiled
+   */
+  static Renderer compile(Block[] blocks) {
+    List<Block> steps = plan(blocks);
+    if (steps.size() > MAX_STEPS) {
+      return null;
+    }
+
+    List<Block> callable = new ArrayList<>();
+    byte[] classFile;
+    try {
+      classFile = generate(steps, callable);
+    } catch (IOException e) {
+      // Cannot happen writing to a byte array
+      throw new UncheckedIOException(e);
+    }
+
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+      MethodHandle constructor = lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class, Block[].class));
+      return (Renderer) constructor.invoke(callable.toArray(new Block[0]));
+    } catch (LinkageError e) {
+      logger.warn("Generated template class could not be defined. Template will be interpreted.", e);
+      return null;
+    } catch (Error e) {
+      throw e;
+    } catch (Throwable t) {
+      logger.warn("Generated template class could not be instantiated. Template will be interpreted.", t);
+      return null;
+    }
+  }
+
+
+  private static byte[] generate(List<Block> steps, List<Block> callable) throws IOException {
+    ConstantPool pool = new ConstantPool();
+    int thisClass = pool.classRef(CLASS_NAME);
+    int superClass = pool.classRef("java/lang/Object");
+    int rendererClass = pool.classRef("com/pippsford/stencil/blocks/TemplateCompiler$Renderer");
+    int blocksField = pool.fieldRef(CLASS_NAME, "blocks", "[L" + BLOCK_NAME + ";");
+    int objectInit = pool.methodRef("java/lang/Object", "<init>", "()V", false);
+    int codeName = pool.utf8("Code");
+
+    // Constructor: store the block array.
+    ByteArrayOutputStream initBytes = new ByteArrayOutputStream();
+    DataOutputStream init = new DataOutputStream(initBytes);
+    init.writeByte(0x2a); // aload_0
+    init.writeByte(0xb7); // invokespecial
+    init.writeShort(objectInit);
+    init.writeByte(0x2a); // aload_0
+    init.writeByte(0x2b); // aload_1
+    init.writeByte(0xb5); // putfield
+    init.writeShort(blocksField);
+    init.writeByte(0xb1); // return
+
+    // Process method: one straight-line step per block.
+    ByteArrayOutputStream codeBytes = new ByteArrayOutputStream();
+    DataOutputStream code = new DataOutputStream(codeBytes);
+    for (Block block : steps) {
+      Class<?> type = block.getClass();
+      code.writeByte(0x2a); // aload_0
+      code.writeByte(0xb4); // getfield
+      code.writeShort(blocksField);
+      code.writeByte(0x11); // sipush
+      code.writeShort(callable.size());
+      code.writeByte(0x32); // aaload
+      if (canCallDirectly(type)) {
+        String owner = type.getName().replace('.', '/');
+        code.writeByte(0xc0); // checkcast
+        code.writeShort(pool.classRef(owner));
+        code.writeByte(0x2b); // aload_1
+        code.writeByte(0x2c); // aload_2
+        code.writeByte(0x2d); // aload_3
+        code.writeByte(0x19); // aload
+        code.writeByte(4);
+        code.writeByte(0xb6); // invokevirtual
+        code.writeShort(pool.methodRef(owner, "process", PROCESS_DESCRIPTOR, false));
+      } else {
+        code.writeByte(0x2b); // aload_1
+        code.writeByte(0x2c); // aload_2
+        code.writeByte(0x2d); // aload_3
+        code.writeByte(0x19); // aload
+        code.writeByte(4);
+        code.writeByte(0xb9); // invokeinterface
+        code.writeShort(pool.methodRef(BLOCK_NAME, "process", PROCESS_DESCRIPTOR, true));
+        code.writeByte(5);
+        code.writeByte(0);
+      }
+      callable.add(block);
+    }
+    code.writeByte(0xb1); // return
+
+    int blocksName = pool.utf8("blocks");
+    int blocksType = pool.utf8("[L" + BLOCK_NAME + ";");
+    int initName = pool.utf8("<init>");
+    int initType = pool.utf8("([L" + BLOCK_NAME + ";)V");
+    int processName = pool.utf8("process");
+    int processType = pool.utf8(PROCESS_DESCRIPTOR);
+
+    ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(classBytes);
+    out.writeInt(0xCAFEBABE);
+    out.writeShort(0);
+    out.writeShort(61); // Java 17
+    pool.writeTo(out);
+    out.writeShort(0x1030); // ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC
+    out.writeShort(thisClass);
+    out.writeShort(superClass);
+    out.writeShort(1);
+    out.writeShort(rendererClass);
+
+    // fields
+    out.writeShort(1);
+    out.writeShort(0x0012); // ACC_PRIVATE | ACC_FINAL
+    out.writeShort(blocksName);
+    out.writeShort(blocksType);
+    out.writeShort(0);
+
+    // methods
+    out.writeShort(2);
+    writeMethod(out, 0x0001, initName, initType, codeName, 2, 2, initBytes.toByteArray());
+    writeMethod(out, 0x0001, processName, processType, codeName, 6, 5, codeBytes.toByteArray());
+
+    // class attributes
+    out.writeShort(0);
+    return classBytes.toByteArray();
+  }
+
+
+  /**
+   * Convert the blocks into a list of steps. Blocks which produce no output are dropped, and adjacent static blocks are merged into a single block.
+   *
+   * @param blocks the blocks
+   *
+   * @return the steps
+   */
+  private static List<Block> plan(Block[] blocks) {
+    List<Block> steps = new ArrayList<>(blocks.length);
+    StringBuilder text = new StringBuilder();
+    for (Block block : blocks) {
+      if (block instanceof Comment || block instanceof SetBlock) {
+        continue;
+      }
+      if (block instanceof Static) {
+        text.append(((Static) block).getText());
+        continue;
+      }
+      addText(steps, text);
+      steps.add(block);
+    }
+    addText(steps, text);
+    return steps;
+  }
+
+
+  private static void writeMethod(DataOutputStream out, int access, int name, int type, int codeName, int maxStack, int maxLocals, byte[] code)
+      throws IOException {
+    out.writeShort(access);
+    out.writeShort(name);
+    out.writeShort(type);
+    out.writeShort(1);
+    out.writeShort(codeName);
+    out.writeInt(12 + code.length);
+    out.writeShort(maxStack);
+    out.writeShort(maxLocals);
+    out.writeInt(code.length);
+    out.write(code);
+    out.writeShort(0); // exception table
+    out.writeShort(0); // attributes
+  }
+
+
+  private TemplateCompiler() {
+    // utility class
+  }
+
+}
@@ -44,7 +44,7 @@ public class UseDirective extends Directive {
       return;
     }
 
-    Data nextData = new Data(ValueAccessor.makeProvider(data.getProvider(), value.value()));
+    Data nextData = new Data(data, ValueAccessor.makeProvider(data.getProvider(), value.value()));
     main.process(writer, locale, zoneId, nextData);
   }
 
@@ -20,7 +20,6 @@ import java.util.function.Function;
 import com.pippsford.stencil.blocks.BlockTypes;
 import com.pippsford.stencil.escape.Escape;
 import com.pippsford.stencil.value.Data;
-import com.pippsford.util.CopyOnWriteMap;
 import jakarta.annotation.Nonnull;
 
 /**
@@ -96,13 +95,11 @@ class BaseDateTimeValue extends BaseValue {
   }
 
 
-  /** Function to generate a locale-appropriate formatter. */
-  private final Function<Locale, DateTimeFormatter> formatterFunction;
+  /** Fast formatting for instants, if the format supports it. */
+  private final EpochFormat epochFormat;
 
-  /**
-   * The formatter to use.
-   */
-  private final CopyOnWriteMap<Locale, DateTimeFormatter> formatters = new CopyOnWriteMap<>();
+  /** The format specification used to get formatters from the shared registry. */
+  private final Object format;
 
 
   /**
@@ -116,30 +113,33 @@ class BaseDateTimeValue extends BaseValue {
       Escape escapeStyle,
       String param,
       String style,
-      Function<FormatStyle, DateTimeFormatter> standardLocale
+      Function<FormatStyle, DateTimeFormats.Localized> standardLocale
   ) {
     super(type, template, escapeStyle, param);
     if (style == null) {
-      formatterFunction = standardLocale.apply(FormatStyle.MEDIUM)::withLocale;
+      format = standardLocale.apply(FormatStyle.MEDIUM);
+      epochFormat = null;
       return;
     }
 
     DateTimeFormatter formatter = matchNamed(style);
     if (formatter != null) {
-      formatterFunction = formatter::withLocale;
+      format = formatter;
+      epochFormat = EpochFormat.forFormatter(formatter);
       return;
     }
 
     FormatStyle formatStyle = matchStyle(style);
     if (formatStyle != null) {
-      formatter = standardLocale.apply(formatStyle);
-      formatterFunction = formatter::withLocale;
+      format = standardLocale.apply(formatStyle);
+      epochFormat = null;
       return;
     }
 
-    formatter = DateTimeFormatter.ofPattern(style);
-    formatterFunction = formatter::withLocale;
-
+    // Test the pattern to catch errors at compile time.
+    DateTimeFormatter.ofPattern(style);
+    format = style;
+    epochFormat = null;
   }
 
 
@@ -150,7 +150,14 @@ class BaseDateTimeValue extends BaseValue {
       return template;
     }
 
-    DateTimeFormatter formatter = formatters.computeIfAbsent(locale, formatterFunction);
+    if (epochFormat != null) {
+      String text = epochFormat.format(msg, zoneId);
+      if (text != null) {
+        return text;
+      }
+    }
+
+    DateTimeFormatter formatter = DateTimeFormats.get(format, locale);
     return formatter.format(convert(msg, zoneId));
   }
 
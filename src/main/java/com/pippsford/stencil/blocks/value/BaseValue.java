@@ -4,12 +4,13 @@ import java.io.IOException;
 import java.io.Writer;
 import java.time.ZoneId;
 import java.util.Locale;
+import java.util.Set;
 
 import com.pippsford.stencil.blocks.Block;
 import com.pippsford.stencil.blocks.BlockTypes;
 import com.pippsford.stencil.escape.Escape;
 import com.pippsford.stencil.value.Data;
-import com.pippsford.stencil.value.ValueAccessor;
+import com.pippsford.stencil.value.CompiledPath;
 
 /**
  * Base value that ensures the escaping and processing rules are applied to the resulting value.
@@ -24,7 +25,7 @@ public abstract class BaseValue implements Block {
   /**
    * The parameter to output.
    */
-  protected final String[] param;
+  protected final CompiledPath param;
 
   /** The template. */
   protected final String template;
@@ -44,11 +45,17 @@ public abstract class BaseValue implements Block {
   protected BaseValue(BlockTypes type, String template, Escape escapeStyle, String param) {
     this.template = template;
     this.escapeStyle = escapeStyle;
-    this.param = ValueAccessor.toKey(param);
+    this.param = CompiledPath.of(param);
     this.type = type;
   }
 
 
+  @Override
+  public void addReferencedNames(Set<String> names) {
+    names.add(param.getFirst());
+  }
+
+
   /**
    * Get the unescaped text for this block.
    *
@@ -70,7 +77,7 @@ public abstract class BaseValue implements Block {
   @Override
   public void process(Writer out, Locale locale, ZoneId zoneId, Data data) throws IOException {
     String text = getText(locale, zoneId, data);
-    out.write(escapeStyle.escape(text));
+    data.escape(escapeStyle, text, out);
   }
 
 }
@@ -0,0 +1,77 @@
+package com.pippsford.stencil.blocks.value;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A memo of values derived from keys, which holds at most a fixed number of entries. Lookups take no lock. When the memo is full, one existing entry is
+ * evicted for each new one, so a working set larger than the memo only loses some of its entries on each miss rather than the whole memo.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+final class BoundedMemo<K, V> {
+
+  /** The function which creates the value for a key. */
+  private final Function<? super K, ? extends V> factory;
+
+  /** The maximum number of entries. */
+  private final int maxEntries;
+
+  /** The memoised values. */
+  private final Map<K, V> values = new ConcurrentHashMap<>();
+
+
+  /**
+   * New instance.
+   *
+   * @param maxEntries the maximum number of entries
+   * @param factory    the function which creates the value for a key
+   */
+  BoundedMemo(int maxEntries, Function<? super K, ? extends V> factory) {
+    this.maxEntries = maxEntries;
+    this.factory = factory;
+  }
+
+
+  /**
+   * Get the value for a key, creating it if it is not held.
+   *
+   * @param key the key
+   *
+   * @return the value
+   */
+  V get(K key) {
+    V value = values.get(key);
+    if (value != null) {
+      return value;
+    }
+
+    value = factory.apply(key);
+    if (values.size() >= maxEntries) {
+      // Make room by evicting whichever entry comes first
+      Iterator<K> iterator = values.keySet().iterator();
+      if (iterator.hasNext()) {
+        iterator.next();
+        iterator.remove();
+      }
+    }
+    V existing = values.putIfAbsent(key, value);
+    return existing != null ? existing : value;
+  }
+
+
+  /**
+   * Get the number of entries held.
+   *
+   * @return the number of entries
+   */
+  int size() {
+    return values.size();
+  }
+
+}
@@ -0,0 +1,348 @@
+package com.pippsford.stencil.blocks.value;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.text.DecimalFormatSymbols;
+import java.util.Formattable;
+import java.util.Locale;
+
+/**
+ * A {@code String.format} style format which has been parsed in advance. Formats with a single {@code %s}, {@code %d}, {@code %x}, {@code %X} or {@code %f}
+ * conversion, optionally with a width, a precision, and the '-' or '0' flag, are formatted directly. Any other format, or any value the direct formatting does
+ * not handle, is passed to {@link String#format(Locale, String, Object...)}, so the output is always the same as that would produce.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+final class CompiledFormat {
+
+  /** Doubles with more significant digits than this are left to the formatter, whose rounding of such values may differ. */
+  private static final int MAX_DOUBLE_DIGITS = 15;
+
+  /** The symbols used for each locale. */
+  private static final BoundedMemo<Locale, Symbols> SYMBOLS = new BoundedMemo<>(1_000, locale -> {
+    DecimalFormatSymbols formatSymbols = DecimalFormatSymbols.getInstance(locale);
+    return new Symbols(formatSymbols.getZeroDigit(), formatSymbols.getDecimalSeparator());
+  });
+
+
+
+  /**
+   * The locale specific symbols used when formatting.
+   *
+   * @param zeroDigit        the zero digit
+   * @param decimalSeparator the decimal separator
+   */
+  private record Symbols(char zeroDigit, char decimalSeparator) {
+
+  }
+
+
+
+  /**
+   * Compile a format.
+   *
+   * @param format the format
+   *
+   * @return the compiled format
+   */
+  static CompiledFormat compile(String format) {
+    // A format which is not handled directly has no conversion
+    CompiledFormat fallback = new CompiledFormat(format);
+    CompiledFormat compiled = new CompiledFormat(format);
+    StringBuilder prefix = new StringBuilder();
+    StringBuilder suffix = new StringBuilder();
+    StringBuilder literal = prefix;
+    final int length = format.length();
+    int index = 0;
+    while (index < length) {
+      char ch = format.charAt(index++);
+      if (ch != '%') {
+        literal.append(ch);
+        continue;
+      }
+      if (index == length) {
+        return fallback;
+      }
+      char next = format.charAt(index);
+      if (next == '%') {
+        literal.append('%');
+        index++;
+        continue;
+      }
+      if (next == 'n') {
+        literal.append(System.lineSeparator());
+        index++;
+        continue;
+      }
+      if (literal == suffix) {
+        // Only a single conversion is handled directly
+        return fallback;
+      }
+      index = compiled.parseSpecifier(index);
+      if (index < 0) {
+        return fallback;
+      }
+      literal = suffix;
+    }
+
+    if (literal == prefix) {
+      // No conversion
+      return fallback;
+    }
+    compiled.prefix = prefix.toString();
+    compiled.suffix = suffix.toString();
+    return compiled;
+  }
+
+
+  private static boolean isDigit(char ch) {
+    return '0' <= ch && ch <= '9';
+  }
+
+
+  private static void pad(StringBuilder builder, char ch, int count) {
+    for (int i = 0; i < count; i++) {
+      builder.append(ch);
+    }
+  }
+
+
+  /** The original format. */
+  private final String format;
+
+  /** The conversion character, or zero if the format is not handled directly. */
+  private char conversion = 0;
+
+  /** Is the '-' flag set?. */
+  private boolean isLeftJustified = false;
+
+  /** Is the '0' flag set?. */
+  private boolean isZeroPadded = false;
+
+  /** The precision, or -1 if not specified. */
+  private int precision = -1;
+
+  /** The text before the conversion. */
+  private String prefix = "";
+
+  /** The text after the conversion. */
+  private String suffix = "";
+
+  /** The width, or -1 if not specified. */
+  private int width = -1;
+
+
+  private CompiledFormat(String format) {
+    this.format = format;
+  }
+
+
+  /**
+   * Convert the value according to the conversion, without padding.
+   *
+   * @param locale the locale
+   * @param value  the value
+   *
+   * @return the converted value, or null if it must be left to the formatter
+   */
+  private String convert(Locale locale, Object value) {
+    switch (conversion) {
+      case 's':
+        if (value == null || value instanceof Formattable) {
+          return null;
+        }
+        String text = value.toString();
+        return (precision != -1 && precision < text.length()) ? text.substring(0, precision) : text;
+      case 'd':
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte || value instanceof BigInteger) {
+          return SYMBOLS.get(locale).zeroDigit() == '0' ? value.toString() : null;
+        }
+        return null;
+      case 'x':
+        return toHex(value);
+      case 'X':
+        String hex = toHex(value);
+        return hex != null ? hex.toUpperCase(Locale.ROOT) : null;
+      case 'f':
+        return toDecimal(locale, value);
+      default:
+        return null;
+    }
+  }
+
+
+  /**
+   * Format a value.
+   *
+   * @param locale the locale
+   * @param value  the value
+   *
+   * @return the formatted value
+   */
+  String format(Locale locale, Object value) {
+    String text = (conversion != 0) ? convert(locale, value) : null;
+    if (text == null) {
+      return String.format(locale, format, value);
+    }
+
+    int padding = width - text.length();
+    if (padding <= 0) {
+      return prefix.isEmpty() && suffix.isEmpty() ? text : prefix + text + suffix;
+    }
+
+    StringBuilder builder = new StringBuilder(prefix.length() + width + suffix.length());
+    builder.append(prefix);
+    if (isLeftJustified) {
+      builder.append(text);
+      pad(builder, ' ', padding);
+    } else if (isZeroPadded) {
+      // Zeros go after any sign
+      int start = text.startsWith("-") ? 1 : 0;
+      builder.append(text, 0, start);
+      pad(builder, '0', padding);
+      builder.append(text, start, text.length());
+    } else {
+      pad(builder, ' ', padding);
+      builder.append(text);
+    }
+    return builder.append(suffix).toString();
+  }
+
+
+  /**
+   * Parse a format specifier, which is "%[1$][flags][width][.precision]conversion".
+   *
+   * @param start the index after the '%'
+   *
+   * @return the index after the specifier, or -1 if it is not handled directly
+   */
+  private int parseSpecifier(int start) {
+    final int length = format.length();
+    int index = start;
+    while (index < length && isDigit(format.charAt(index))) {
+      index++;
+    }
+    if (index < length && format.charAt(index) == '$') {
+      if (!"1".equals(format.substring(start, index))) {
+        return -1;
+      }
+      start = index + 1;
+    }
+
+    // Flags
+    index = start;
+    while (index < length && "-#+ 0,(<".indexOf(format.charAt(index)) != -1) {
+      char flag = format.charAt(index++);
+      if (flag == '-' && !isLeftJustified) {
+        isLeftJustified = true;
+      } else if (flag == '0' && !isZeroPadded) {
+        isZeroPadded = true;
+      } else {
+        return -1;
+      }
+    }
+
+    // Width
+    start = index;
+    while (index < length && isDigit(format.charAt(index))) {
+      index++;
+    }
+    if (index - start > 9) {
+      return -1;
+    }
+    if (index > start) {
+      width = Integer.parseInt(format.substring(start, index));
+    }
+
+    // Precision
+    if (index < length && format.charAt(index) == '.') {
+      start = ++index;
+      while (index < length && isDigit(format.charAt(index))) {
+        index++;
+      }
+      if (index == start || index - start > 9) {
+        return -1;
+      }
+      precision = Integer.parseInt(format.substring(start, index));
+    }
+
+    if (index == length) {
+      return -1;
+    }
+    conversion = format.charAt(index++);
+
+    // Check for combinations the formatter would reject
+    if ((isLeftJustified || isZeroPadded) && width == -1) {
+      return -1;
+    }
+    if (isLeftJustified && isZeroPadded) {
+      return -1;
+    }
+    switch (conversion) {
+      case 's':
+        return isZeroPadded ? -1 : index;
+      case 'd':
+      case 'x':
+      case 'X':
+        return precision == -1 ? index : -1;
+      case 'f':
+        if (precision == -1) {
+          precision = 6;
+        }
+        return index;
+      default:
+        return -1;
+    }
+  }
+
+
+  private String toDecimal(Locale locale, Object value) {
+    BigDecimal decimal;
+    boolean isNegative;
+    if (value instanceof Double || value instanceof Float) {
+      double d = ((Number) value).doubleValue();
+      if (!Double.isFinite(d)) {
+        return null;
+      }
+      isNegative = Double.compare(d, 0.0) < 0;
+      decimal = new BigDecimal(Double.toString(Math.abs(d)));
+      if (decimal.precision() > MAX_DOUBLE_DIGITS) {
+        return null;
+      }
+    } else if (value instanceof BigDecimal bigDecimal) {
+      isNegative = bigDecimal.signum() < 0;
+      decimal = bigDecimal.abs();
+    } else {
+      return null;
+    }
+
+    Symbols symbols = SYMBOLS.get(locale);
+    if (symbols.zeroDigit() != '0') {
+      return null;
+    }
+    String text = decimal.setScale(precision, RoundingMode.HALF_UP).toPlainString();
+    if (symbols.decimalSeparator() != '.') {
+      text = text.replace('.', symbols.decimalSeparator());
+    }
+    return isNegative ? "-" + text : text;
+  }
+
+
+  private String toHex(Object value) {
+    if (value instanceof Integer i) {
+      return Integer.toHexString(i);
+    }
+    if (value instanceof Long l) {
+      return Long.toHexString(l);
+    }
+    if (value instanceof Short s) {
+      return Integer.toHexString(s & 0xffff);
+    }
+    if (value instanceof Byte b) {
+      return Integer.toHexString(b & 0xff);
+    }
+    return null;
+  }
+
+}
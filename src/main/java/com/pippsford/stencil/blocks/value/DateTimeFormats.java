@@ -0,0 +1,124 @@
+package com.pippsford.stencil.blocks.value;
+
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.Locale;
+import jakarta.annotation.Nullable;
+
+/**
+ * A shared registry of localised date and time formatters. Date-time blocks with the same format share the same formatter for each locale, no matter which
+ * template they are in. DateTimeFormatter instances are immutable, so they are safe to share between threads.
+ *
+ * <p>A format is specified either by a named ISO formatter, a pattern, or a {@link Localized} combination of styles. The locale's chronology and other
+ * extensions are part of the locale, so are also part of the key.</p>
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+final class DateTimeFormats {
+
+  /** The formatters which have been created. */
+  private static final BoundedMemo<Key, DateTimeFormatter> FORMATTERS = new BoundedMemo<>(1_000, key -> create(key.format(), key.locale()));
+
+
+
+  /**
+   * Cache key.
+   *
+   * @param format the format specification
+   * @param locale the locale
+   */
+  private record Key(Object format, Locale locale) {
+
+  }
+
+
+
+  /**
+   * A locale-specific format built from date and time styles.
+   *
+   * @param dateStyle the style for the date, or null if no date is output
+   * @param timeStyle the style for the time, or null if no time is output
+   */
+  record Localized(@Nullable FormatStyle dateStyle, @Nullable FormatStyle timeStyle) {
+
+    /**
+     * A localised date format.
+     *
+     * @param style the style
+     *
+     * @return the format
+     */
+    static Localized date(FormatStyle style) {
+      return new Localized(style, null);
+    }
+
+
+    /**
+     * A localised date and time format, using the same style for both.
+     *
+     * @param style the style
+     *
+     * @return the format
+     */
+    static Localized dateTime(FormatStyle style) {
+      return new Localized(style, style);
+    }
+
+
+    /**
+     * A localised time format.
+     *
+     * @param style the style
+     *
+     * @return the format
+     */
+    static Localized time(FormatStyle style) {
+      return new Localized(null, style);
+    }
+
+
+    DateTimeFormatter create() {
+      if (timeStyle == null) {
+        return DateTimeFormatter.ofLocalizedDate(dateStyle);
+      }
+      if (dateStyle == null) {
+        return DateTimeFormatter.ofLocalizedTime(timeStyle);
+      }
+      return DateTimeFormatter.ofLocalizedDateTime(dateStyle, timeStyle);
+    }
+
+  }
+
+
+
+  private static DateTimeFormatter create(Object format, Locale locale) {
+    DateTimeFormatter formatter;
+    if (format instanceof DateTimeFormatter named) {
+      formatter = named;
+    } else if (format instanceof Localized localized) {
+      formatter = localized.create();
+    } else {
+      formatter = DateTimeFormatter.ofPattern((String) format);
+    }
+    return formatter.withLocale(locale);
+  }
+
+
+  /**
+   * Get the formatter for a format and locale.
+   *
+   * @param format a named formatter, a pattern, or a localised style
+   * @param locale the locale
+   *
+   * @return the formatter
+   */
+  static DateTimeFormatter get(Object format, Locale locale) {
+    return FORMATTERS.get(new Key(format, locale));
+  }
+
+
+  private DateTimeFormats() {
+    // do nothing
+  }
+
+}
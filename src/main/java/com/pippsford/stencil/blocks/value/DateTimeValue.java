@@ -1,7 +1,5 @@
 package com.pippsford.stencil.blocks.value;
 
-import java.time.format.DateTimeFormatter;
-
 import com.pippsford.stencil.blocks.BlockTypes;
 import com.pippsford.stencil.escape.Escape;
 
@@ -19,7 +17,7 @@ public class DateTimeValue extends BaseDateTimeValue {
    * @param escapeStyle escaping style to use
    */
   public DateTimeValue(String template, Escape escapeStyle, String param, String dateStyle) {
-    super(BlockTypes.VALUE_DATE_TIME, template, escapeStyle, param, dateStyle, DateTimeFormatter::ofLocalizedDateTime);
+    super(BlockTypes.VALUE_DATE_TIME, template, escapeStyle, param, dateStyle, DateTimeFormats.Localized::dateTime);
   }
 
 }
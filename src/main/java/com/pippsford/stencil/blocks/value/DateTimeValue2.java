@@ -8,7 +8,6 @@ import java.util.Locale;
 import com.pippsford.stencil.blocks.BlockTypes;
 import com.pippsford.stencil.escape.Escape;
 import com.pippsford.stencil.value.Data;
-import com.pippsford.util.CopyOnWriteMap;
 
 /**
  * A date-time value with a specific date and time format.
@@ -16,16 +15,8 @@ import com.pippsford.util.CopyOnWriteMap;
 public class DateTimeValue2 extends BaseValue {
 
 
-  /** Format for the date part. */
-  private final FormatStyle dateStyle;
-
-  /**
-   * The formatter to use.
-   */
-  private final CopyOnWriteMap<Locale, DateTimeFormatter> formatters = new CopyOnWriteMap<>();
-
-  /** Format for the time part. */
-  private final FormatStyle timeStyle;
+  /** The date and time styles. */
+  private final DateTimeFormats.Localized format;
 
 
   /**
@@ -39,13 +30,15 @@ public class DateTimeValue2 extends BaseValue {
    */
   public DateTimeValue2(String template, Escape escapeStyle, String param, String dateStyle, String timeStyle) {
     super(BlockTypes.VALUE_DATE_TIME_2, template, escapeStyle, param);
-    this.dateStyle = FormatStyle.valueOf(dateStyle.toUpperCase(Locale.ENGLISH));
-    this.timeStyle = FormatStyle.valueOf(timeStyle.toUpperCase(Locale.ENGLISH));
+    format = new DateTimeFormats.Localized(
+        FormatStyle.valueOf(dateStyle.toUpperCase(Locale.ENGLISH)),
+        FormatStyle.valueOf(timeStyle.toUpperCase(Locale.ENGLISH))
+    );
   }
 
 
   DateTimeFormatter getFormatter(Locale locale) {
-    return DateTimeFormatter.ofLocalizedDateTime(dateStyle, timeStyle).withLocale(locale);
+    return DateTimeFormats.get(format, locale);
   }
 
 
@@ -56,7 +49,7 @@ public class DateTimeValue2 extends BaseValue {
       return template;
     }
 
-    DateTimeFormatter formatter = formatters.computeIfAbsent(locale, this::getFormatter);
+    DateTimeFormatter formatter = getFormatter(locale);
     return formatter.format(BaseDateTimeValue.convert(msg, zoneId));
   }
 
@@ -1,7 +1,5 @@
 package com.pippsford.stencil.blocks.value;
 
-import java.time.format.DateTimeFormatter;
-
 import com.pippsford.stencil.blocks.BlockTypes;
 import com.pippsford.stencil.escape.Escape;
 
@@ -19,7 +17,7 @@ public class DateValue extends BaseDateTimeValue {
    * @param dateStyle   the format selection
    */
   public DateValue(String template, Escape escapeStyle, String param, String dateStyle) {
-    super(BlockTypes.VALUE_DATE, template, escapeStyle, param, dateStyle, DateTimeFormatter::ofLocalizedDate);
+    super(BlockTypes.VALUE_DATE, template, escapeStyle, param, dateStyle, DateTimeFormats.Localized::date);
   }
 
 }
@@ -0,0 +1,204 @@
+package com.pippsford.stencil.blocks.value;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import jakarta.annotation.Nullable;
+
+/**
+ * Fast formatting of instants for the commonly used ISO-8601 instant and RFC-1123 formats. The text is built directly from the epoch seconds, without creating
+ * intermediate temporal objects. The output is identical to the corresponding {@link DateTimeFormatter}, and values outside the years 0000 to 9999 are left
+ * to the formatter.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+enum EpochFormat {
+  /** Equivalent to {@link DateTimeFormatter#ISO_INSTANT}. */
+  ISO_INSTANT {
+    @Override
+    String format(long seconds, int nanos, ZoneId zoneId) {
+      if (seconds < MIN_SECONDS || MAX_SECONDS < seconds) {
+        return null;
+      }
+
+      StringBuilder builder = new StringBuilder(30);
+      long epochDay = Math.floorDiv(seconds, SECONDS_PER_DAY);
+      appendDate(builder, epochDay, true);
+      builder.append('T');
+      appendTime(builder, (int) (seconds - epochDay * SECONDS_PER_DAY));
+
+      // Fractions are output in groups of three digits, as needed
+      if (nanos != 0) {
+        builder.append('.');
+        if (nanos % 1_000_000 == 0) {
+          appendDigits(builder, nanos / 1_000_000, 3);
+        } else if (nanos % 1000 == 0) {
+          appendDigits(builder, nanos / 1000, 6);
+        } else {
+          appendDigits(builder, nanos, 9);
+        }
+      }
+      return builder.append('Z').toString();
+    }
+  },
+
+  /** Equivalent to {@link DateTimeFormatter#RFC_1123_DATE_TIME}. */
+  RFC_1123 {
+    @Override
+    String format(long seconds, int nanos, ZoneId zoneId) {
+      int offset = (zoneId instanceof ZoneOffset zoneOffset)
+          ? zoneOffset.getTotalSeconds()
+          : zoneId.getRules().getOffset(Instant.ofEpochSecond(seconds)).getTotalSeconds();
+      long local = seconds + offset;
+      if (local < MIN_SECONDS || MAX_SECONDS < local) {
+        return null;
+      }
+
+      StringBuilder builder = new StringBuilder(31);
+      long epochDay = Math.floorDiv(local, SECONDS_PER_DAY);
+      // 1970-01-01 was a Thursday
+      builder.append(DAYS[(int) Math.floorMod(epochDay + 3, 7)]).append(", ");
+      appendDate(builder, epochDay, false);
+      builder.append(' ');
+      appendTime(builder, (int) (local - epochDay * SECONDS_PER_DAY));
+      builder.append(' ');
+
+      if (offset == 0) {
+        builder.append("GMT");
+      } else {
+        // Any seconds in the offset are ignored, as the formatter does
+        builder.append(offset < 0 ? '-' : '+');
+        int minutes = Math.abs(offset) / 60;
+        appendDigits(builder, minutes / 60, 2);
+        appendDigits(builder, minutes % 60, 2);
+      }
+      return builder.toString();
+    }
+  };
+
+  /** Day names as used by RFC-1123, starting from Monday. */
+  private static final String[] DAYS = {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
+
+  /** Seconds since the epoch of 9999-12-31T23:59:59Z. */
+  private static final long MAX_SECONDS = 253_402_300_799L;
+
+  /** Seconds since the epoch of 0000-01-01T00:00:00Z. */
+  private static final long MIN_SECONDS = -62_167_219_200L;
+
+  /** Month names as used by RFC-1123. */
+  private static final String[] MONTHS = {"Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+
+  /** Seconds in a day. */
+  private static final long SECONDS_PER_DAY = 86_400L;
+
+
+  /**
+   * Append a date. ISO dates are "yyyy-MM-dd" and RFC-1123 dates are "d MMM yyyy".
+   *
+   * @param builder  the output
+   * @param epochDay the day since the epoch
+   * @param isIso    if true, output an ISO date, otherwise an RFC-1123 date
+   */
+  private static void appendDate(StringBuilder builder, long epochDay, boolean isIso) {
+    // Convert to a civil date, using March as the first month of the year, so leap days are at the end.
+    long days = epochDay + 719_468;
+    long era = Math.floorDiv(days, 146_097);
+    int dayOfEra = (int) (days - era * 146_097);
+    int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+    int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    int marchMonth = (5 * dayOfYear + 2) / 153;
+    int day = dayOfYear - (153 * marchMonth + 2) / 5 + 1;
+    int month = marchMonth < 10 ? marchMonth + 3 : marchMonth - 9;
+    int year = (int) (yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+
+    if (isIso) {
+      appendDigits(builder, year, 4);
+      builder.append('-');
+      appendDigits(builder, month, 2);
+      builder.append('-');
+      appendDigits(builder, day, 2);
+    } else {
+      builder.append(day).append(' ').append(MONTHS[month - 1]).append(' ');
+      appendDigits(builder, year, 4);
+    }
+  }
+
+
+  private static void appendDigits(StringBuilder builder, int value, int width) {
+    int start = builder.length();
+    builder.setLength(start + width);
+    for (int i = start + width - 1; i >= start; i--) {
+      builder.setCharAt(i, (char) ('0' + value % 10));
+      value /= 10;
+    }
+  }
+
+
+  private static void appendTime(StringBuilder builder, int secondOfDay) {
+    appendDigits(builder, secondOfDay / 3600, 2);
+    builder.append(':');
+    appendDigits(builder, (secondOfDay / 60) % 60, 2);
+    builder.append(':');
+    appendDigits(builder, secondOfDay % 60, 2);
+  }
+
+
+  /**
+   * Get the fast format equivalent to a formatter, if there is one.
+   *
+   * @param formatter the formatter
+   *
+   * @return the equivalent fast format, or null
+   */
+  @Nullable
+  static EpochFormat forFormatter(DateTimeFormatter formatter) {
+    if (formatter == DateTimeFormatter.ISO_INSTANT) {
+      return ISO_INSTANT;
+    }
+    if (formatter == DateTimeFormatter.RFC_1123_DATE_TIME) {
+      return RFC_1123;
+    }
+    return null;
+  }
+
+
+  /**
+   * Format a value, if it is an instant in a form that can be formatted directly. Dates, instants, and numbers of milliseconds since the epoch can be.
+   *
+   * @param value  the value
+   * @param zoneId the time zone the value is displayed in
+   *
+   * @return the formatted value, or null if it must be left to the formatter
+   */
+  @Nullable
+  String format(Object value, ZoneId zoneId) {
+    if (value instanceof Number number) {
+      long millis = number.longValue();
+      return format(Math.floorDiv(millis, 1000), (int) Math.floorMod(millis, 1000) * 1_000_000, zoneId);
+    }
+    if (value instanceof Date date) {
+      long millis = date.getTime();
+      return format(Math.floorDiv(millis, 1000), (int) Math.floorMod(millis, 1000) * 1_000_000, zoneId);
+    }
+    if (value instanceof Instant instant) {
+      return format(instant.getEpochSecond(), instant.getNano(), zoneId);
+    }
+    return null;
+  }
+
+
+  /**
+   * Format an instant.
+   *
+   * @param seconds the seconds since the epoch
+   * @param nanos   the nanoseconds within the second
+   * @param zoneId  the time zone the instant is displayed in
+   *
+   * @return the formatted instant, or null if it must be left to the formatter
+   */
+  @Nullable
+  abstract String format(long seconds, int nanos, ZoneId zoneId);
+
+}
@@ -15,7 +15,8 @@ import com.pippsford.stencil.value.OptionalValue;
  */
 public class FormatValue extends BaseValue {
 
-  private final String format;
+  /** The format, parsed when the template is parsed. */
+  private final CompiledFormat format;
 
 
   /**
@@ -28,7 +29,7 @@ public class FormatValue extends BaseValue {
    */
   public FormatValue(String template, Escape escapeStyle, String param, String format) {
     super(BlockTypes.VALUE_FORMAT, template, escapeStyle, param);
-    this.format = format;
+    this.format = CompiledFormat.compile(format);
   }
 
 
@@ -39,7 +40,7 @@ public class FormatValue extends BaseValue {
       return template;
     }
 
-    return String.format(locale, format, datum.value());
+    return format.format(locale, datum.value());
   }
 
 }
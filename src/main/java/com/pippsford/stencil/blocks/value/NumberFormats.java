@@ -0,0 +1,162 @@
+package com.pippsford.stencil.blocks.value;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A shared pool of number formats for each format and locale. NumberFormat instances are not thread safe, so a prototype of each format is created once, and
+ * each formatting operation borrows a clone of it from a small pool and returns it afterwards. No thread holds on to a format, so the number of formats does
+ * not grow with the number of threads.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+final class NumberFormats {
+
+  /** Style name for currency formats. */
+  static final String CURRENCY = "CURRENCY";
+
+  /** Style name for integer formats. */
+  static final String INTEGER = "INTEGER";
+
+  /** Maximum number of idle formats kept in each pool. */
+  static final int MAX_IDLE = 16;
+
+  /** Style name for general number formats. */
+  static final String NUMBER = "NUMBER";
+
+  /** Style name for percentage formats. */
+  static final String PERCENT = "PERCENT";
+
+  /** The pools for each format and locale. */
+  private static final BoundedMemo<Key, Pool> POOLS = new BoundedMemo<>(1_000, key -> new Pool(create(key.format(), key.locale())));
+
+
+
+  /**
+   * Pool key.
+   *
+   * @param format the style name or decimal format pattern
+   * @param locale the locale
+   */
+  private record Key(String format, Locale locale) {
+
+  }
+
+
+
+  /**
+   * The idle formats for one format and locale.
+   */
+  static final class Pool {
+
+    /** The idle formats. */
+    private final Queue<NumberFormat> idle = new ConcurrentLinkedQueue<>();
+
+    /** The number of idle formats. */
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    /** The format which is cloned when no idle format is available. */
+    private final NumberFormat prototype;
+
+
+    Pool(NumberFormat prototype) {
+      this.prototype = prototype;
+    }
+
+
+    /**
+     * Borrow a format. It must be returned with {@link #release(NumberFormat)} when it is no longer in use.
+     *
+     * @return the format
+     */
+    NumberFormat borrow() {
+      NumberFormat numberFormat = idle.poll();
+      if (numberFormat != null) {
+        idleCount.decrementAndGet();
+        return numberFormat;
+      }
+      return (NumberFormat) prototype.clone();
+    }
+
+
+    /**
+     * Get the number of idle formats.
+     *
+     * @return the number of idle formats
+     */
+    int getIdleCount() {
+      return idleCount.get();
+    }
+
+
+    /**
+     * Return a borrowed format. If the pool already holds as many idle formats as it may, the format is discarded.
+     *
+     * @param numberFormat the format
+     */
+    void release(NumberFormat numberFormat) {
+      if (idleCount.incrementAndGet() <= MAX_IDLE) {
+        idle.offer(numberFormat);
+      } else {
+        idleCount.decrementAndGet();
+      }
+    }
+
+  }
+
+
+
+  private static NumberFormat create(String format, Locale locale) {
+    return switch (format) {
+      case CURRENCY -> NumberFormat.getCurrencyInstance(locale);
+      case INTEGER -> NumberFormat.getIntegerInstance(locale);
+      case NUMBER -> NumberFormat.getNumberInstance(locale);
+      case PERCENT -> NumberFormat.getPercentInstance(locale);
+      default -> new DecimalFormat(format, DecimalFormatSymbols.getInstance(locale));
+    };
+  }
+
+
+  /**
+   * Format a number.
+   *
+   * @param format one of the style names, or a decimal format pattern
+   * @param locale the locale
+   * @param number the number
+   *
+   * @return the formatted number
+   */
+  static String format(String format, Locale locale, Number number) {
+    Pool pool = getPool(format, locale);
+    NumberFormat numberFormat = pool.borrow();
+    try {
+      return numberFormat.format(number);
+    } finally {
+      pool.release(numberFormat);
+    }
+  }
+
+
+  /**
+   * Get the pool of formats for a format and locale.
+   *
+   * @param format one of the style names, or a decimal format pattern
+   * @param locale the locale
+   *
+   * @return the pool
+   */
+  static Pool getPool(String format, Locale locale) {
+    return POOLS.get(new Key(format, locale));
+  }
+
+
+  private NumberFormats() {
+    // do nothing
+  }
+
+}
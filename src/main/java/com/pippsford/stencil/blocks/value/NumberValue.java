@@ -2,10 +2,8 @@ package com.pippsford.stencil.blocks.value;
 
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
-import java.text.NumberFormat;
 import java.time.ZoneId;
 import java.util.Locale;
-import java.util.function.Function;
 
 import com.pippsford.common.TypeSafeMap;
 import com.pippsford.stencil.blocks.BlockTypes;
@@ -19,8 +17,8 @@ import com.pippsford.stencil.value.Data;
  */
 public class NumberValue extends BaseValue {
 
-  /** Function to generate a locale-appropriate formatter. NumberFormat instances are not thread safe, so we create a new one every time. */
-  private final Function<Locale, NumberFormat> formatterFunction;
+  /** The style name or decimal format pattern. Formatters are shared via {@link NumberFormats}, as creating them is expensive. */
+  private final String format;
 
 
   /**
@@ -34,23 +32,17 @@ public class NumberValue extends BaseValue {
   public NumberValue(String template, Escape escapeStyle, String param, String format) {
     super(BlockTypes.VALUE_NUMBER, template, escapeStyle, param);
     if (format == null) {
-      formatterFunction = NumberFormat::getNumberInstance;
+      this.format = NumberFormats.NUMBER;
       return;
     }
 
     String upper = format.toUpperCase(Locale.ENGLISH);
     switch (upper) {
-      case "CURRENCY":
-        formatterFunction = NumberFormat::getCurrencyInstance;
-        return;
-      case "PERCENT":
-        formatterFunction = NumberFormat::getPercentInstance;
-        return;
-      case "INTEGER":
-        formatterFunction = NumberFormat::getIntegerInstance;
-        return;
-      case "NUMBER":
-        formatterFunction = NumberFormat::getNumberInstance;
+      case NumberFormats.CURRENCY:
+      case NumberFormats.PERCENT:
+      case NumberFormats.INTEGER:
+      case NumberFormats.NUMBER:
+        this.format = upper;
         return;
       default:
         // falls through
@@ -59,7 +51,7 @@ public class NumberValue extends BaseValue {
     // Test the format to catch errors at compile time.
     new DecimalFormat(format, DecimalFormatSymbols.getInstance());
 
-    formatterFunction = locale -> new DecimalFormat(format, DecimalFormatSymbols.getInstance(locale));
+    this.format = format;
   }
 
 
@@ -70,8 +62,7 @@ public class NumberValue extends BaseValue {
       return "";
     }
 
-    NumberFormat format = formatterFunction.apply(locale);
-    return format.format(datum);
+    return NumberFormats.format(format, locale, datum);
   }
 
 }
@@ -1,7 +1,5 @@
 package com.pippsford.stencil.blocks.value;
 
-import java.time.format.DateTimeFormatter;
-
 import com.pippsford.stencil.blocks.BlockTypes;
 import com.pippsford.stencil.escape.Escape;
 
@@ -19,7 +17,7 @@ public class TimeValue extends BaseDateTimeValue {
    * @param timeStyle   the format selection
    */
   public TimeValue(String template, Escape escapeStyle, String param, String timeStyle) {
-    super(BlockTypes.VALUE_TIME, template, escapeStyle, param, timeStyle, DateTimeFormatter::ofLocalizedTime);
+    super(BlockTypes.VALUE_TIME, template, escapeStyle, param, timeStyle, DateTimeFormats.Localized::time);
   }
 
 }
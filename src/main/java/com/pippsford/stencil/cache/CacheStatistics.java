@@ -0,0 +1,26 @@
+package com.pippsford.stencil.cache;
+
+/**
+ * A snapshot of a template cache's statistics.
+ *
+ * @param hits      the number of lookups that found a template
+ * @param misses    the number of lookups that did not find a template
+ * @param evictions the number of templates evicted to satisfy the cache's bounds
+ * @param size      the number of templates currently held
+ * @param weight    the total weight of the templates currently held
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public record CacheStatistics(long hits, long misses, long evictions, int size, long weight) {
+
+  /**
+   * Get the proportion of lookups that found a template.
+   *
+   * @return the hit rate, or 1 if there have been no lookups
+   */
+  public double hitRate() {
+    long total = hits + misses;
+    return total == 0 ? 1.0 : (double) hits / total;
+  }
+
+}
@@ -0,0 +1,253 @@
+package com.pippsford.stencil.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+import com.pippsford.stencil.blocks.Template;
+import com.pippsford.stencil.source.StencilId;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+/**
+ * A template cache bounded by the total weight of the templates it holds, which evicts the least recently used templates first. A template's weight is its
+ * block count (see {@link Template#getWeight()}), so large templates take a proportionately larger share of the cache.
+ *
+ * <p>Lookups take no lock. Recency is approximated with the "clock" algorithm: the templates are held in a ring in the order they were added, and a lookup
+ * marks its template as used. Eviction walks the ring from the oldest template, giving each used template a second chance by clearing its mark and moving it to
+ * the back, and evicting the first unused template it finds. Each step of the walk either evicts a template or clears a mark set by a lookup, so eviction takes
+ * amortised constant time. Additions and removals are serialised.</p>
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public class LruTemplateCache implements TemplateCache {
+
+  /**
+   * A cached template and its place in the ring.
+   */
+  private static final class Entry {
+
+    /** The template's ID. */
+    final StencilId stencilId;
+
+    /** The template. */
+    final Template template;
+
+    /** The next entry in the ring. Only accessed whilst holding the cache's lock. */
+    Entry next;
+
+    /** The previous entry in the ring. Only accessed whilst holding the cache's lock. */
+    Entry previous;
+
+    /** Has the template been used since the eviction walk last passed it?. */
+    volatile boolean used = false;
+
+
+    Entry(StencilId stencilId, Template template) {
+      this.stencilId = stencilId;
+      this.template = template;
+      next = this;
+      previous = this;
+    }
+
+
+    /**
+     * Insert this entry before the specified entry.
+     *
+     * @param entry the entry which will follow this one
+     */
+    void linkBefore(Entry entry) {
+      next = entry;
+      previous = entry.previous;
+      previous.next = this;
+      entry.previous = this;
+    }
+
+
+    /**
+     * Remove this entry from the ring.
+     */
+    void unlink() {
+      previous.next = next;
+      next.previous = previous;
+      next = this;
+      previous = this;
+    }
+
+  }
+
+
+
+  /** Number of lookups which found a template. */
+  private final LongAdder hits = new LongAdder();
+
+  /** The cached templates. */
+  private final ConcurrentHashMap<StencilId, Entry> map = new ConcurrentHashMap<>();
+
+  /** The maximum total weight. */
+  private final long maxWeight;
+
+  /** Number of lookups which did not find a template. */
+  private final LongAdder misses = new LongAdder();
+
+  /** Sentinel for the ring. The entry after it is the oldest, and the entry before it is the newest. */
+  private final Entry ring = new Entry(null, null);
+
+  /** Listener told of evicted templates. */
+  private volatile BiConsumer<StencilId, Template> evictionListener = null;
+
+  private long evictions = 0;
+
+  private long weight = 0;
+
+
+  /**
+   * New instance.
+   *
+   * @param maxWeight the maximum total weight of the cached templates
+   */
+  public LruTemplateCache(long maxWeight) {
+    if (maxWeight <= 0) {
+      throw new IllegalArgumentException("Maximum weight must be positive, not " + maxWeight);
+    }
+    this.maxWeight = maxWeight;
+  }
+
+
+  /**
+   * Evict the least recently used templates until the cache is within bounds. The template just added is the newest in the ring, and fits on its own, so it is
+   * never evicted.
+   */
+  private void evict() {
+    while (weight > maxWeight) {
+      Entry entry = ring.next;
+      if (entry.used) {
+        // Second chance
+        entry.used = false;
+        entry.unlink();
+        entry.linkBefore(ring);
+        continue;
+      }
+
+      remove(entry);
+      evictions++;
+      notifyEvicted(entry.stencilId, entry.template);
+    }
+  }
+
+
+  @Nullable
+  @Override
+  public Template get(@Nonnull StencilId stencilId) {
+    Entry entry = map.get(stencilId);
+    if (entry == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+
+    // Only write when the mark is clear, so repeated lookups of a popular template do not contend on its entry
+    if (!entry.used) {
+      entry.used = true;
+    }
+    return entry.template;
+  }
+
+
+  /**
+   * Get the maximum total weight of the cached templates.
+   *
+   * @return the maximum weight
+   */
+  public long getMaxWeight() {
+    return maxWeight;
+  }
+
+
+  @Nonnull
+  @Override
+  public synchronized CacheStatistics getStatistics() {
+    return new CacheStatistics(hits.sum(), misses.sum(), evictions, map.size(), weight);
+  }
+
+
+  @Override
+  public synchronized void invalidate(@Nonnull Predicate<? super StencilId> predicate) {
+    for (Map.Entry<StencilId, Entry> e : map.entrySet()) {
+      if (predicate.test(e.getKey())) {
+        remove(e.getValue());
+      }
+    }
+  }
+
+
+  @Override
+  public synchronized void invalidateAll() {
+    map.clear();
+    ring.unlink();
+    weight = 0;
+  }
+
+
+  @Nullable
+  @Override
+  public Template peek(@Nonnull StencilId stencilId) {
+    Entry entry = map.get(stencilId);
+    return entry != null ? entry.template : null;
+  }
+
+
+  private void notifyEvicted(StencilId stencilId, Template template) {
+    BiConsumer<StencilId, Template> listener = evictionListener;
+    if (listener != null) {
+      listener.accept(stencilId, template);
+    }
+  }
+
+
+  @Override
+  public synchronized void put(@Nonnull StencilId stencilId, @Nonnull Template template) {
+    int newWeight = template.getWeight();
+    if (newWeight > maxWeight) {
+      // Can never fit, so do not hold it. Any older version is evicted in its favour.
+      Entry old = map.get(stencilId);
+      if (old != null) {
+        remove(old);
+        evictions++;
+        notifyEvicted(stencilId, old.template);
+      }
+      return;
+    }
+
+    Entry entry = new Entry(stencilId, template);
+    Entry old = map.put(stencilId, entry);
+    if (old != null) {
+      old.unlink();
+      weight -= old.template.getWeight();
+    }
+    entry.linkBefore(ring);
+    weight += newWeight;
+    evict();
+  }
+
+
+  /**
+   * Remove an entry from the map and the ring. Must be called whilst holding the cache's lock.
+   *
+   * @param entry the entry to remove
+   */
+  private void remove(Entry entry) {
+    map.remove(entry.stencilId, entry);
+    entry.unlink();
+    weight -= entry.template.getWeight();
+  }
+
+
+  @Override
+  public void setEvictionListener(@Nullable BiConsumer<StencilId, Template> listener) {
+    evictionListener = listener;
+  }
+
+}
@@ -0,0 +1,86 @@
+package com.pippsford.stencil.cache;
+
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+import com.pippsford.stencil.blocks.Template;
+import com.pippsford.stencil.source.StencilId;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+/**
+ * A cache of parsed templates. Implementations must be thread safe.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public interface TemplateCache {
+
+  /**
+   * Get a template from the cache.
+   *
+   * @param stencilId the template's ID
+   *
+   * @return the template, or null if it is not cached
+   */
+  @Nullable
+  Template get(@Nonnull StencilId stencilId);
+
+
+  /**
+   * Get the statistics for this cache.
+   *
+   * @return the current statistics
+   */
+  @Nonnull
+  CacheStatistics getStatistics();
+
+
+  /**
+   * Remove every cached template whose ID matches the predicate.
+   *
+   * @param predicate the test for removal
+   */
+  void invalidate(@Nonnull Predicate<? super StencilId> predicate);
+
+
+  /**
+   * Remove every cached template.
+   */
+  void invalidateAll();
+
+
+  /**
+   * Get a template from the cache without recording a hit or a miss, or marking the template as used. The default implementation calls {@link #get}, so
+   * implementations which keep statistics should override it.
+   *
+   * @param stencilId the template's ID
+   *
+   * @return the template, or null if it is not cached
+   */
+  @Nullable
+  default Template peek(@Nonnull StencilId stencilId) {
+    return get(stencilId);
+  }
+
+
+  /**
+   * Add a template to the cache. The cache may decline to hold the template, or may evict other templates to make room for it.
+   *
+   * @param stencilId the template's ID
+   * @param template  the template
+   */
+  void put(@Nonnull StencilId stencilId, @Nonnull Template template);
+
+
+  /**
+   * Set the listener which is told when a template leaves the cache without being invalidated, either because it was evicted to make room or because the
+   * cache declined to hold it. The listener is called whilst the cache is being updated, so it must be quick and must not use the cache. Caches which never
+   * evict templates ignore the listener.
+   *
+   * @param listener the listener, or null for none
+   */
+  default void setEvictionListener(@Nullable BiConsumer<StencilId, Template> listener) {
+    // do nothing
+  }
+
+}
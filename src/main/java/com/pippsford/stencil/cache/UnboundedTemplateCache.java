@@ -0,0 +1,74 @@
+package com.pippsford.stencil.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import com.pippsford.stencil.blocks.Template;
+import com.pippsford.stencil.source.StencilId;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+/**
+ * A template cache that holds every template until it is invalidated.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public class UnboundedTemplateCache implements TemplateCache {
+
+  private final LongAdder hits = new LongAdder();
+
+  private final ConcurrentHashMap<StencilId, Template> map = new ConcurrentHashMap<>();
+
+  private final LongAdder misses = new LongAdder();
+
+
+  @Nullable
+  @Override
+  public Template get(@Nonnull StencilId stencilId) {
+    Template template = map.get(stencilId);
+    if (template != null) {
+      hits.increment();
+    } else {
+      misses.increment();
+    }
+    return template;
+  }
+
+
+  @Nonnull
+  @Override
+  public CacheStatistics getStatistics() {
+    long weight = 0;
+    for (Template template : map.values()) {
+      weight += template.getWeight();
+    }
+    return new CacheStatistics(hits.sum(), misses.sum(), 0, map.size(), weight);
+  }
+
+
+  @Override
+  public void invalidate(@Nonnull Predicate<? super StencilId> predicate) {
+    map.keySet().removeIf(predicate);
+  }
+
+
+  @Override
+  public void invalidateAll() {
+    map.clear();
+  }
+
+
+  @Nullable
+  @Override
+  public Template peek(@Nonnull StencilId stencilId) {
+    return map.get(stencilId);
+  }
+
+
+  @Override
+  public void put(@Nonnull StencilId stencilId, @Nonnull Template template) {
+    map.put(stencilId, template);
+  }
+
+}
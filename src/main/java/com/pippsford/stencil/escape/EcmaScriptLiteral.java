@@ -1,5 +1,7 @@
 package com.pippsford.stencil.escape;
 
+import java.io.IOException;
+
 /**
  * ECMA Script (ES6+) style escaping. This includes escaping the back-quote and representing non-BMP Unicode as \ u{12345}.
  *
@@ -29,8 +31,10 @@ public class EcmaScriptLiteral extends StringLiteral {
 
 
   @Override
-  protected void handleNonBMP(StringBuilder buffer, int cp) {
-    buffer.append(String.format("\\u{%x}", cp));
+  protected void handleNonBMP(Appendable output, int cp) throws IOException {
+    output.append("\\u{");
+    appendHex(output, cp, cp < 0x10_0000 ? 5 : 6);
+    output.append('}');
   }
 
 }
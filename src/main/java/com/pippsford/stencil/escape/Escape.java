@@ -1,5 +1,7 @@
 package com.pippsford.stencil.escape;
 
+import java.io.IOException;
+
 /**
  * Handle escaping for output.
  *
@@ -16,6 +18,19 @@ public interface Escape {
    */
   String escape(String input);
 
+  /**
+   * Perform the escaping on an input and append the result to an output. If the input is null, nothing is appended. Implementations should append runs of
+   * characters which need no escaping directly, rather than creating an intermediate string.
+   *
+   * @param input  the input
+   * @param output the output
+   *
+   * @throws IOException if the output fails
+   */
+  default void escape(CharSequence input, Appendable output) throws IOException {
+    output.append(escape(input != null ? input.toString() : null));
+  }
+
   /**
    * Check if this implement can handle the named escaping style.
    *
@@ -12,6 +12,10 @@ import org.owasp.html.Encoding;
  */
 public class HTML {
 
+  /** ASCII characters which the OWASP encoder passes through unchanged and which need no fixing afterwards. */
+  private static final boolean[] SAFE_ASCII = new boolean[128];
+
+
   /**
    * Check a character for eliding. The return value indicates what was seen:
    *
@@ -72,30 +76,36 @@ public class HTML {
     if (input == null || input.isEmpty()) {
       return "";
     }
-
-    StringBuilder builder = new StringBuilder(input.length());
-    try {
-      Encoding.encodeRcdataOnto(input, builder);
-    } catch (IOException ioException) {
-      // Unreachable code
-      throw new UncheckedIOException("I/O Exception without I/O", ioException);
+    if (findUnsafe(input) == input.length()) {
+      return input;
     }
+    return escapeOnto(input).toString();
+  }
 
-    // The OWASP encoder leaves C1 escapes, deletes, and non-characters in the output. These are partially forbidden in HTML in that you cannot use a numeric
-    // entity to represent them, but can insert them directly.
-    //
-    // I also want to prevent the use of CR to trigger a carriage return when the output is viewed as source. A carriage return can lead to some data being
-    // hidden. Therefore, I canonicalize all new-line indicators ( CR, LF, CRLF ) to LF.
 
-    // Fast check.
-    int index = escapeFastCheck(builder);
-    if (index == -1) {
-      return builder.toString();
+  /**
+   * Escape and sanitize some HTML text, appending the result to an output. The longest prefix of the text which needs no escaping is appended directly. A
+   * null input appends nothing.
+   *
+   * @param input  the input text to escape
+   * @param output the output
+   *
+   * @throws IOException if the output fails
+   */
+  public static void escape(CharSequence input, Appendable output) throws IOException {
+    if (input == null) {
+      return;
+    }
+    final int length = input.length();
+    int index = findUnsafe(input);
+    if (index == length) {
+      output.append(input);
+      return;
     }
 
-    // need to fix something
-    escapeFix(builder, index);
-    return builder.toString();
+    // Neither the encoder nor the fixes look backwards, so the safe prefix can be written separately.
+    output.append(input, 0, index);
+    output.append(escapeOnto(input.subSequence(index, length).toString()));
   }
 
 
@@ -157,11 +167,104 @@ public class HTML {
     if (input == null || input.isEmpty()) {
       return "";
     }
+    int index = findUnsafe(input);
+    if (index == input.length()) {
+      return input;
+    }
+    if (input.indexOf('&', index) == -1) {
+      // No entities, so decoding would not change anything
+      return escapeOnto(input).toString();
+    }
 
     return escape(Encoding.decodeHtml(input, false));
   }
 
 
+  /**
+   * Escape HTML only if needed, appending the result to an output. The longest prefix of the text which needs no escaping is appended directly. A null
+   * input appends nothing.
+   *
+   * @param input  the HTML
+   * @param output the output
+   *
+   * @throws IOException if the output fails
+   */
+  public static void escapeOnce(CharSequence input, Appendable output) throws IOException {
+    if (input == null) {
+      return;
+    }
+    final int length = input.length();
+    int index = findUnsafe(input);
+    if (index == length) {
+      output.append(input);
+      return;
+    }
+
+    // An entity starts with '&', which is not safe, so the safe prefix contains no entities and needs no decoding.
+    output.append(input, 0, index);
+    String rest = input.subSequence(index, length).toString();
+    if (rest.indexOf('&') != -1) {
+      rest = Encoding.decodeHtml(rest, false);
+      if (rest.isEmpty()) {
+        return;
+      }
+    }
+    output.append(escapeOnto(rest));
+  }
+
+
+  /**
+   * Encode the input and fix the characters which must be elided or canonicalized.
+   *
+   * @param input the input text, which must not be empty
+   *
+   * @return the sanitized and escaped HTML
+   */
+  private static StringBuilder escapeOnto(String input) {
+    StringBuilder builder = new StringBuilder(input.length() + 16);
+    try {
+      Encoding.encodeRcdataOnto(input, builder);
+    } catch (IOException ioException) {
+      // Unreachable code
+      throw new UncheckedIOException("I/O Exception without I/O", ioException);
+    }
+
+    // The OWASP encoder leaves C1 escapes, deletes, and non-characters in the output. These are partially forbidden in HTML in that you cannot use a numeric
+    // entity to represent them, but can insert them directly.
+    //
+    // I also want to prevent the use of CR to trigger a carriage return when the output is viewed as source. A carriage return can lead to some data being
+    // hidden. Therefore, I canonicalize all new-line indicators ( CR, LF, CRLF ) to LF.
+
+    // Fast check.
+    int index = escapeFastCheck(builder);
+    if (index != -1) {
+      // need to fix something
+      escapeFix(builder, index);
+    }
+    return builder;
+  }
+
+
+  /**
+   * Find the first character which might be changed by escaping. Safe characters are the printable ASCII characters other than those the encoder replaces,
+   * tab, line feed, and the BMP characters from U+00A0 up to the surrogates.
+   *
+   * @param input the input
+   *
+   * @return the index of the first unsafe character, or the input's length if all are safe
+   */
+  private static int findUnsafe(CharSequence input) {
+    final int length = input.length();
+    for (int i = 0; i < length; i++) {
+      char ch = input.charAt(i);
+      if (ch < 0x80 ? !SAFE_ASCII[ch] : (ch < 0xa0 || ch >= 0xd800)) {
+        return i;
+      }
+    }
+    return length;
+  }
+
+
   private static boolean isBadChar(char c) {
     // C1 codes
     if (0x7f <= c && c <= 0x9f) {
@@ -176,6 +279,19 @@ public class HTML {
   }
 
 
+  static {
+    SAFE_ASCII['\t'] = true;
+    SAFE_ASCII['\n'] = true;
+    for (char ch = ' '; ch < 0x7f; ch++) {
+      SAFE_ASCII[ch] = true;
+    }
+    // The encoder replaces these, and treats braces specially.
+    for (char ch : "\"&'+<=>@`{}".toCharArray()) {
+      SAFE_ASCII[ch] = false;
+    }
+  }
+
+
   /** New instance. */
   protected HTML() {
     // do nothing
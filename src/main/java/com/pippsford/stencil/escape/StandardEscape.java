@@ -1,5 +1,6 @@
 package com.pippsford.stencil.escape;
 
+import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.Locale;
@@ -20,6 +21,14 @@ public enum StandardEscape implements Escape {
     }
 
 
+    @Override
+    public void escape(CharSequence input, Appendable output) throws IOException {
+      if (input != null) {
+        output.append(input);
+      }
+    }
+
+
     @Override
     public boolean isHandlerFor(String name) {
       return super.isHandlerFor(name) || "NO".equals(name.toUpperCase(Locale.ROOT)) || "NONE".equals(name.toUpperCase(Locale.ROOT));
@@ -34,6 +43,12 @@ public enum StandardEscape implements Escape {
     }
 
 
+    @Override
+    public void escape(CharSequence input, Appendable output) throws IOException {
+      HTML.escapeOnce(input, output);
+    }
+
+
     @Override
     public boolean isHandlerFor(String name) {
       return super.isHandlerFor(name) || "HTML".equals(name.toUpperCase(Locale.ROOT));
@@ -46,6 +61,12 @@ public enum StandardEscape implements Escape {
     public String escape(String input) {
       return HTML.escape(input);
     }
+
+
+    @Override
+    public void escape(CharSequence input, Appendable output) throws IOException {
+      HTML.escape(input, output);
+    }
   },
 
   /** Escape as a ECMA script (Javascript, JScript, ES6+) string. */
@@ -54,6 +75,12 @@ public enum StandardEscape implements Escape {
     public String escape(String input) {
       return EcmaScriptLiteral.ECMA.escape(input);
     }
+
+
+    @Override
+    public void escape(CharSequence input, Appendable output) throws IOException {
+      EcmaScriptLiteral.ECMA.escape(input, output);
+    }
   },
 
   /** Escape as a ECMA script (Javascript, JScript, ES6+) string, forcing ASCII compliance. */
@@ -62,6 +89,12 @@ public enum StandardEscape implements Escape {
     public String escape(String input) {
       return EcmaScriptLiteral.ECMA_ASCII.escape(input);
     }
+
+
+    @Override
+    public void escape(CharSequence input, Appendable output) throws IOException {
+      EcmaScriptLiteral.ECMA_ASCII.escape(input, output);
+    }
   },
 
   /** Escape as a Java string. */
@@ -70,6 +103,12 @@ public enum StandardEscape implements Escape {
     public String escape(String input) {
       return JavaScriptLiteral.JAVA.escape(input);
     }
+
+
+    @Override
+    public void escape(CharSequence input, Appendable output) throws IOException {
+      JavaScriptLiteral.JAVA.escape(input, output);
+    }
   },
 
   /** Escape as a Java string, forcing ASCII compliance. */
@@ -78,6 +117,12 @@ public enum StandardEscape implements Escape {
     public String escape(String input) {
       return JavaScriptLiteral.JAVA_ASCII.escape(input);
     }
+
+
+    @Override
+    public void escape(CharSequence input, Appendable output) throws IOException {
+      JavaScriptLiteral.JAVA_ASCII.escape(input, output);
+    }
   },
 
   /** Escape as a JSON string. */
@@ -86,6 +131,12 @@ public enum StandardEscape implements Escape {
     public String escape(String input) {
       return JsonScriptLiteral.JSON.escape(input);
     }
+
+
+    @Override
+    public void escape(CharSequence input, Appendable output) throws IOException {
+      JsonScriptLiteral.JSON.escape(input, output);
+    }
   },
 
   /** Escape as a JSON string, forcing ASCII compliance. */
@@ -94,6 +145,12 @@ public enum StandardEscape implements Escape {
     public String escape(String input) {
       return JsonScriptLiteral.JSON_ASCII.escape(input);
     }
+
+
+    @Override
+    public void escape(CharSequence input, Appendable output) throws IOException {
+      JsonScriptLiteral.JSON_ASCII.escape(input, output);
+    }
   },
 
   /** Escape using a UTF-8 URL Encoder string. */
@@ -102,6 +159,14 @@ public enum StandardEscape implements Escape {
     public String escape(String input) {
       return input != null ? URLEncoder.encode(input, StandardCharsets.UTF_8) : "";
     }
+
+
+    @Override
+    public void escape(CharSequence input, Appendable output) throws IOException {
+      if (input != null) {
+        output.append(URLEncoder.encode(input.toString(), StandardCharsets.UTF_8));
+      }
+    }
   },
 
   /** Produces a "log safe" output. */
@@ -110,6 +175,14 @@ public enum StandardEscape implements Escape {
     public String escape(String input) {
       return input != null ? StringUtils.logSafe(input) : "";
     }
+
+
+    @Override
+    public void escape(CharSequence input, Appendable output) throws IOException {
+      if (input != null) {
+        output.append(StringUtils.logSafe(input.toString()));
+      }
+    }
   };
 
 
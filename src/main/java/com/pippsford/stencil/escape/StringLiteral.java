@@ -1,5 +1,8 @@
 package com.pippsford.stencil.escape;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 /**
  * String literal escaping for Java, Javascript and JSON.
  *
@@ -7,6 +10,26 @@ package com.pippsford.stencil.escape;
  */
 public class StringLiteral {
 
+  /** Hexadecimal digits. */
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+
+  /**
+   * Append a value as lower-case hexadecimal digits.
+   *
+   * @param output the output
+   * @param value  the value
+   * @param digits the number of digits to append
+   *
+   * @throws IOException if the output fails
+   */
+  static void appendHex(Appendable output, int value, int digits) throws IOException {
+    for (int shift = 4 * (digits - 1); shift >= 0; shift -= 4) {
+      output.append(HEX[(value >> shift) & 0xf]);
+    }
+  }
+
+
   /** The codepoints that have special escape representations. */
   private final String[] specials = new String[128];
 
@@ -28,34 +51,6 @@ public class StringLiteral {
   }
 
 
-  private void doAscii(StringBuilder buffer, int cp) {
-    String special = specials[cp];
-    if (special == null) {
-      buffer.append((char) cp);
-    } else {
-      buffer.append(special);
-    }
-  }
-
-
-  private void doBMP(StringBuilder buffer, int cp) {
-    if (toAscii) {
-      handleBMP(buffer, cp);
-    } else {
-      buffer.append((char) cp);
-    }
-  }
-
-
-  private void doNonBMP(StringBuilder buffer, int cp) {
-    if (toAscii) {
-      handleNonBMP(buffer, cp);
-    } else {
-      buffer.append(Character.toChars(cp));
-    }
-  }
-
-
   /**
    * Escape the input. A null is returned as an empty string.
    *
@@ -67,49 +62,125 @@ public class StringLiteral {
     if (input == null) {
       return "";
     }
+    if (findEscape(input, 0) == input.length()) {
+      // Nothing needs escaping
+      return input;
+    }
 
     // Create an initial buffer with a small amount of extra for escaping.
     StringBuilder buffer = new StringBuilder(input.length() + 16);
-    int index = 0;
-    while (index < input.length()) {
-      int cp = input.codePointAt(index);
-      index += Character.charCount(cp);
+    try {
+      escape(input, buffer);
+    } catch (IOException ioException) {
+      // Unreachable code
+      throw new UncheckedIOException("I/O Exception without I/O", ioException);
+    }
+    return buffer.toString();
+  }
 
-      // check for a standard escape char
-      if (cp < 0x80) {
-        doAscii(buffer, cp);
 
-      } else if (cp < 0x1_0000) {
-        doBMP(buffer, cp);
+  /**
+   * Escape the input and append it to an output. Runs of characters which do not need escaping are appended directly. A null input appends nothing.
+   *
+   * @param input  the input
+   * @param output the output
+   *
+   * @throws IOException if the output fails
+   */
+  public void escape(CharSequence input, Appendable output) throws IOException {
+    if (input == null) {
+      return;
+    }
 
-      } else {
-        doNonBMP(buffer, cp);
+    final int length = input.length();
+    int start = 0;
+    while (start < length) {
+      int index = findEscape(input, start);
+      if (index > start) {
+        output.append(input, start, index);
+      }
+      if (index == length) {
+        return;
       }
+      start = escapeAt(input, index, output);
     }
+  }
 
-    return buffer.toString();
+
+  /**
+   * Escape the character at the specified index, which is known to need escaping.
+   *
+   * @param input  the input
+   * @param index  the index of the character
+   * @param output the output
+   *
+   * @return the index of the next character to process
+   *
+   * @throws IOException if the output fails
+   */
+  private int escapeAt(CharSequence input, int index, Appendable output) throws IOException {
+    char ch = input.charAt(index);
+    if (ch < 0x80) {
+      output.append(specials[ch]);
+      return index + 1;
+    }
+
+    // Non-ASCII characters only need escaping in ASCII mode. An unpaired surrogate is treated as a BMP character.
+    int next = index + 1;
+    if (Character.isHighSurrogate(ch) && next < input.length() && Character.isLowSurrogate(input.charAt(next))) {
+      handleNonBMP(output, Character.toCodePoint(ch, input.charAt(next)));
+      return next + 1;
+    }
+    handleBMP(output, ch);
+    return next;
+  }
+
+
+  /**
+   * Find the first character at or after the specified index that needs escaping.
+   *
+   * @param input the input
+   * @param from  the index to start looking from
+   *
+   * @return the index of the character, or the input's length if no character needs escaping
+   */
+  int findEscape(CharSequence input, int from) {
+    final int length = input.length();
+    for (int i = from; i < length; i++) {
+      char ch = input.charAt(i);
+      if (ch < 0x80 ? specials[ch] != null : toAscii) {
+        return i;
+      }
+    }
+    return length;
   }
 
 
   /**
    * Handle code points on the basic multilingual pane.
    *
-   * @param buffer the buffer to write to
+   * @param output the output to write to
    * @param cp     the code point to write
+   *
+   * @throws IOException if the output fails
    */
-  protected void handleBMP(StringBuilder buffer, int cp) {
-    buffer.append(String.format("\\u%04x", cp));
+  protected void handleBMP(Appendable output, int cp) throws IOException {
+    output.append("\\u");
+    appendHex(output, cp, 4);
   }
 
 
   /**
    * Handle code points outside the basic multilingual pane that require a surrogate pair.
    *
-   * @param buffer the buffer to write to
+   * @param output the output to write to
    * @param cp     the code point to write
+   *
+   * @throws IOException if the output fails
    */
-  protected void handleNonBMP(StringBuilder buffer, int cp) {
-    buffer.append(String.format("\\u%04x\\u%04x", (int) Character.highSurrogate(cp), (int) Character.lowSurrogate(cp)));
+  protected void handleNonBMP(Appendable output, int cp) throws IOException {
+    handleBMP(output, Character.highSurrogate(cp));
+    handleBMP(output, Character.lowSurrogate(cp));
   }
 
 }
@@ -173,6 +173,8 @@
  * <li><code>size</code> – the number of entries in this loop</li>
  * </ol>
  * <p>The &quot;else&quot; block is invoked if the value is missing or empty.</p>
+ * <p>Iterators, enumerations, streams and spliterators are processed one entry at a time, without copying them into memory. If the number of entries is
+ * not known in advance, <code>size</code> is null until the last entry is reached.</p>
  * <h3 id="the-include-directive">The &quot;include&quot; directive</h3>
  * <p>Code re-use is good. The &quot;include&quot; directive allows another stencil to be included in the current stencil.</p>
  * <pre><code>[include ../path/general]
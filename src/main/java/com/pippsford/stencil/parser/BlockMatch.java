@@ -29,37 +29,36 @@ class BlockMatch extends Match {
   BlockMatch(BlockTypes type, String source) {
     super(type, source);
     matcher = this.type.matcher(source);
+    matcher.useTransparentBounds(true);
     start = -1;
-    update(0);
   }
 
 
   /**
-   * Update this match to find the next match at or after the specified position.
+   * Attempt to match this block type starting exactly at the specified position. This finds the same match as searching from the position would, if that
+   * search found a match at the position.
    *
-   * @param pos the new position
+   * @param pos the position
+   *
+   * @return true if this block type matched
    */
-  void update(int pos) {
-    if (pos <= start) {
-      return;
+  boolean matchAt(int pos) {
+    matcher.region(pos, matcher.regionEnd());
+    if (!matcher.lookingAt()) {
+      return false;
     }
 
-    if (matcher.find(pos)) {
-      start = matcher.start();
-      end = matcher.end();
-      text = matcher.group();
-      int gc = matcher.groupCount() + 1;
-      if (groups == null || (groups.length != gc)) {
-        groups = new String[gc];
-      }
-      for (int i = 0; i < gc; i++) {
-        groups[i] = matcher.group(i);
-      }
-    } else {
-      start = Integer.MAX_VALUE;
-      end = Integer.MAX_VALUE;
-      text = null;
+    start = pos;
+    end = matcher.end();
+    text = matcher.group();
+    int gc = matcher.groupCount() + 1;
+    if (groups == null || (groups.length != gc)) {
+      groups = new String[gc];
+    }
+    for (int i = 0; i < gc; i++) {
+      groups[i] = matcher.group(i);
     }
+    return true;
   }
 
 }
@@ -1,14 +1,104 @@
 package com.pippsford.stencil.parser;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
 import com.pippsford.stencil.blocks.BlockTypes;
 
 /**
  * Parse and compile a page.
+ *
+ * <p>Every block starts with either a '[' or a '{'. The parser scans forward for those characters, and at each one tries only the block types whose pattern
+ * can start with the text found there. The first block type, in declaration order, to match at the earliest position is the next block. This finds exactly
+ * the same blocks as searching ahead with every block type's pattern, but examines each character of the source only once.</p>
  */
 public class BlockParser {
 
-  /** The matcher for a here-value. */
-  private final BlockMatch here;
+  /** Candidate directive types, indexed by the first non-space character after the '['. */
+  private static final BlockTypes[][] DIRECTIVES = new BlockTypes[128][];
+
+  /** All directive types, for when the first non-space character after the '[' is not ASCII. */
+  private static final BlockTypes[] DIRECTIVES_ALL;
+
+  /** The only block type recognised in inverted mode. */
+  private static final BlockTypes[] HERE = {BlockTypes.VALUE_HERE};
+
+  /** No candidate block types. */
+  private static final BlockTypes[] NONE = {};
+
+  /** Value types which cannot start with a '*' after the '{'. */
+  private static final BlockTypes[] VALUES;
+
+  /** Value types which start with a '*' after the '{'. */
+  private static final BlockTypes[] VALUE_COMMENTS = {BlockTypes.VALUE_COMMENT};
+
+
+  /**
+   * Is the character one which may be matched by the patterns' "\s"?. This errs on the side of including characters, as skipping a character which does not
+   * match "\s" will only ever lead to a block type being tried which then fails to match.
+   *
+   * @param ch the character
+   *
+   * @return true if the character may be white space
+   */
+  private static boolean isSpace(char ch) {
+    return Character.isWhitespace(ch) || Character.isSpaceChar(ch) || ch == '\u0085';
+  }
+
+
+  /**
+   * Get the character that must follow a directive's opening '[' and any white space. This must agree with the definitions in "patterns.xml".
+   *
+   * @param type the directive type
+   *
+   * @return the lower-case character, or zero if any character may follow
+   */
+  private static char keyCharacter(BlockTypes type) {
+    switch (type) {
+      case APPLY:
+        return 'a';
+      case COMMENT:
+        return '*';
+      case ELSE:
+      case END:
+        return 'e';
+      case IF:
+      case INCLUDE:
+        return 'i';
+      case LOOP:
+        return 'l';
+      case RESOURCE_1:
+      case RESOURCE_2:
+        return '{';
+      case SET:
+        return 's';
+      case USE:
+        return 'u';
+      default:
+        return 0;
+    }
+  }
+
+
+  static {
+    List<BlockTypes> directives = new ArrayList<>();
+    List<BlockTypes> values = new ArrayList<>();
+    for (BlockTypes type : BlockTypes.values()) {
+      if (!type.isValue()) {
+        directives.add(type);
+      } else if (type != BlockTypes.VALUE_COMMENT) {
+        values.add(type);
+      }
+    }
+    DIRECTIVES_ALL = directives.toArray(new BlockTypes[0]);
+    VALUES = values.toArray(new BlockTypes[0]);
+
+    for (char ch = 0; ch < DIRECTIVES.length; ch++) {
+      char lower = Character.toLowerCase(ch);
+      DIRECTIVES[ch] = directives.stream().filter(t -> keyCharacter(t) == lower || keyCharacter(t) == 0).toArray(BlockTypes[]::new);
+    }
+  }
 
   /**
    * Length of the page source in characters.
@@ -16,9 +106,19 @@ public class BlockParser {
   private final int length;
 
   /**
-   * Matchers for each block type.
+   * Matchers for each block type, indexed by ordinal. Each is created when first needed.
+   */
+  private final BlockMatch[] matches = new BlockMatch[BlockTypes.values().length];
+
+  /**
+   * If not null, every result of scanning the source is appended to this, so that the parse can be replayed.
    */
-  private final BlockMatch[] matches;
+  private final List<FixMatch> recording;
+
+  /**
+   * If not null, results are taken from this recording instead of scanning a source.
+   */
+  private final Iterator<FixMatch> replay;
 
   /**
    * Source text.
@@ -30,6 +130,16 @@ public class BlockParser {
    */
   private final Match staticContent;
 
+  /**
+   * A block found after the current position. It will be returned after the static content which precedes it.
+   */
+  private BlockMatch nextMatch = null;
+
+  /**
+   * The processing mode in which the next match was found.
+   */
+  private boolean nextMatchNormalMode;
+
   /**
    * Current position of compilation.
    */
@@ -47,14 +157,35 @@ public class BlockParser {
    * @param source the source
    */
   public BlockParser(String source) {
-    this.source = source;
-    BlockTypes[] bs = BlockTypes.values();
-    matches = new BlockMatch[bs.length];
-    for (int i = 0; i < bs.length; i++) {
-      matches[i] = new BlockMatch(bs[i], source);
-    }
-    here = matches[BlockTypes.VALUE_HERE.ordinal()];
+    this(source, null, null);
+  }
+
+
+  /**
+   * New parser which records the blocks it finds in a source page.
+   *
+   * @param source    the source
+   * @param recording the list to record the blocks in
+   */
+  BlockParser(String source, List<FixMatch> recording) {
+    this(source, recording, null);
+  }
+
 
+  /**
+   * New parser which replays a previous parse, rather than scanning a source.
+   *
+   * @param replay the previously recorded blocks
+   */
+  BlockParser(Iterator<FixMatch> replay) {
+    this("", null, replay);
+  }
+
+
+  private BlockParser(String source, List<FixMatch> recording, Iterator<FixMatch> replay) {
+    this.source = source;
+    this.recording = recording;
+    this.replay = replay;
     staticContent = new Match(null, source);
     staticContent.start = 0;
     staticContent.end = source.length() - 1;
@@ -62,6 +193,64 @@ public class BlockParser {
   }
 
 
+  /**
+   * Get the block types which could match at a position.
+   *
+   * @param index      the position
+   * @param normalMode if false, only here-values are recognised
+   *
+   * @return the candidate block types, in declaration order
+   */
+  private BlockTypes[] candidates(int index, boolean normalMode) {
+    char ch = source.charAt(index);
+    if (ch == '{') {
+      if (!normalMode) {
+        return HERE;
+      }
+      return nextNonSpace(index + 1) == '*' ? VALUE_COMMENTS : VALUES;
+    }
+    if (ch == '[' && normalMode) {
+      char next = nextNonSpace(index + 1);
+      return next < DIRECTIVES.length ? DIRECTIVES[next] : DIRECTIVES_ALL;
+    }
+    return NONE;
+  }
+
+
+  /**
+   * Find the first block at or after the current position.
+   *
+   * @param normalMode if false, only here-values are recognised
+   *
+   * @return the match, or null if there are no more blocks
+   */
+  private BlockMatch find(boolean normalMode) {
+    for (int i = pos; i < length; i++) {
+      char ch = source.charAt(i);
+      if (ch != '[' && ch != '{') {
+        continue;
+      }
+      for (BlockTypes type : candidates(i, normalMode)) {
+        BlockMatch match = getMatch(type);
+        if (match.matchAt(i)) {
+          return match;
+        }
+      }
+    }
+    return null;
+  }
+
+
+  private BlockMatch getMatch(BlockTypes type) {
+    BlockMatch match = matches[type.ordinal()];
+    if (match == null) {
+      match = new BlockMatch(type, source);
+      matches[type.ordinal()] = match;
+    }
+    return match;
+  }
+
+
   /**
    * Get the next matching block.
    *
@@ -74,38 +263,81 @@ public class BlockParser {
       return match;
     }
 
-    if (pos >= length) {
-      return null;
+    if (replay != null) {
+      return replay.hasNext() ? replay.next() : null;
     }
 
-    // update all matches
-    for (BlockMatch match : matches) {
-      match.update(pos);
+    FixMatch match = scan(normalMode);
+    if (recording != null) {
+      recording.add(match);
     }
+    return match;
+  }
 
-    Match m;
-    if (normalMode) {
-      // find the next match
-      m = matches[0];
-      for (int i = 1; i < matches.length; i++) {
-        Match mi = matches[i];
-        if (mi.start < m.start) {
-          m = mi;
-        }
+
+  /**
+   * Create a parser for text embedded within this parser's source. The new parser records or replays along with this one.
+   *
+   * @param text the embedded text
+   *
+   * @return the new parser
+   */
+  BlockParser nested(String text) {
+    return new BlockParser(text, recording, replay);
+  }
+
+
+  /**
+   * Find the next character which is not white space.
+   *
+   * @param index the position to start from
+   *
+   * @return the character, or zero if the end of the source is reached
+   */
+  private char nextNonSpace(int index) {
+    for (int i = index; i < length; i++) {
+      char ch = source.charAt(i);
+      if (!isSpace(ch)) {
+        return ch;
       }
-    } else {
-      // when inverted, we only care about here-values
-      m = here;
+    }
+    return 0;
+  }
+
+
+  void pushback(FixMatch match) {
+    pushedBack = match;
+  }
+
+
+  /**
+   * Scan the source for the next block.
+   *
+   * @param normalMode if false, only here-values are recognised
+   *
+   * @return next block, or null if finished
+   */
+  private FixMatch scan(boolean normalMode) {
+    if (pos >= length) {
+      return null;
+    }
+
+    BlockMatch m = nextMatch;
+    nextMatch = null;
+    if (m == null || nextMatchNormalMode != normalMode) {
+      m = find(normalMode);
     }
 
     // if matched at current position, we have match
-    if (m.start == pos) {
+    if (m != null && m.start == pos) {
       pos = m.end;
       return new FixMatch(m);
     }
 
     // if next match is some distance ahead, we have a static block
-    int end = Math.min(length, m.start);
+    int end = (m != null) ? m.start : length;
+    nextMatch = m;
+    nextMatchNormalMode = normalMode;
     staticContent.start = pos;
     staticContent.end = end;
     staticContent.text = source.substring(pos, end);
@@ -113,9 +345,4 @@ public class BlockParser {
     return new FixMatch(staticContent);
   }
 
-
-  void pushback(FixMatch match) {
-    pushedBack = match;
-  }
-
 }
@@ -1,5 +1,7 @@
 package com.pippsford.stencil.parser;
 
+import com.pippsford.stencil.blocks.BlockTypes;
+
 /**
  * An immutable copy of a parsing match result.
  *
@@ -13,6 +15,24 @@ class FixMatch extends Match {
   final String[] groups;
 
 
+  /**
+   * Recreate a match without its source, as when it is read from a snapshot.
+   *
+   * @param type   the block type, or null for static content
+   * @param start  the start of the match
+   * @param end    the end of the match
+   * @param text   the matched text
+   * @param groups the matched subgroups
+   */
+  FixMatch(BlockTypes type, int start, int end, String text, String[] groups) {
+    super(type, "");
+    this.start = start;
+    this.end = end;
+    this.text = text;
+    this.groups = groups;
+  }
+
+
   FixMatch(Match original) {
     super(original);
     if ((original instanceof BlockMatch) && ((BlockMatch) original).groups != null) {
@@ -1,5 +1,8 @@
 package com.pippsford.stencil.parser;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -28,6 +31,9 @@ public class PreParser {
   /** Regular expression for matching key=value settings. */
   private static final Pattern PATTERN_SETTING = Patterns.get("SETTING_VALUES");
 
+  /** The [global] settings applied to the context, in the order they were applied. */
+  private final List<String> settings = new ArrayList<>();
+
   private Context context;
 
 
@@ -52,6 +58,17 @@ public class PreParser {
   }
 
 
+  /**
+   * Get the [global] settings which were applied to the context during processing. Applying the same settings, in the same order, to a new context
+   * recreates the final context.
+   *
+   * @return the settings
+   */
+  List<String> getSettings() {
+    return Collections.unmodifiableList(settings);
+  }
+
+
   /**
    * Pre-process the text, handling all [global] directives, updating the text in the process.
    *
@@ -62,8 +79,20 @@ public class PreParser {
    * @throws StencilParseFailedException if the stencil contains errors
    */
   public String process() throws StencilNotFoundException, StencilStorageException, StencilParseFailedException {
-    String text = context.getStencilId().getText();
+    return process(context.getStencilId().getText());
+  }
 
+
+  /**
+   * Pre-process the stencil's text, which has already been retrieved, handling all [global] directives and updating the text in the process.
+   *
+   * @param text the stencil's text
+   *
+   * @return the updated text
+   *
+   * @throws StencilParseFailedException if the stencil contains errors
+   */
+  public String process(String text) throws StencilParseFailedException {
     logger.debug("Starting parse of {}", context.getStencilId());
 
     Matcher matcher = PATTERN_GLOBAL.matcher(text);
@@ -88,6 +117,7 @@ public class PreParser {
       Matcher setting = PATTERN_SETTING.matcher(settingsText);
       while (setting.find()) {
         context = TemplateParser.updateContext(context, matcher.group(), true);
+        settings.add(matcher.group());
       }
       matcher.appendReplacement(builder, "");
     } while (matcher.find());
@@ -0,0 +1,328 @@
+package com.pippsford.stencil.parser;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle.Control;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import com.pippsford.stencil.Source;
+import com.pippsford.stencil.SourceProvider;
+import com.pippsford.stencil.StencilException;
+import com.pippsford.stencil.Stencils;
+import com.pippsford.stencil.WarmUpReport;
+import com.pippsford.stencil.source.CompendiumSourceProvider;
+import com.pippsford.stencil.source.CompendiumUtil;
+import com.pippsford.stencil.source.FileSourceProvider;
+import com.pippsford.stencil.source.FramingSourceProvider;
+
+/**
+ * Build-time compiler for stencils. It parses every stencil it can find, reports any that are broken, and writes a {@link TemplateSnapshot} of the parsed
+ * templates, which can be packaged as a resource and loaded at run time so that templates are never parsed in production.
+ *
+ * <h2>Files</h2>
+ *
+ * <pre>java StencilSnapshotCompiler files src/main/stencils build/stencils.snapshot [--locale=en-GB ...] [--escape=html] [--source-root=stencils]</pre>
+ *
+ * <p>Compiles every file under the root directory, as they would be provided by a {@link FileSourceProvider}.</p>
+ *
+ * <h2>Compendium</h2>
+ *
+ * <pre>java StencilSnapshotCompiler compendium src/main/resources build/stencils.snapshot /stencils.comp ... [--locale=en-GB ...] [--escape=html]</pre>
+ *
+ * <p>Compiles every stencil in the named compendia, as they would be provided by a {@link CompendiumSourceProvider} whose class path is the root
+ * directory.</p>
+ *
+ * <p>Stencils are compiled for the root locale, every locale which has a localised source, and every locale specified with "--locale". Each stencil is only
+ * compiled in the locales which would find one of its sources. As the snapshot is indexed by locale, every locale the application renders in should be
+ * specified. The escape style defaults to the same as {@link Stencils}.</p>
+ *
+ * <p>Snapshot entries are keyed by the source root of the provider which supplied them, so they are only used with a provider which has the same root. A
+ * compendium provider's root is the list of compendia, which is the same at run time. A file provider's root is the absolute directory, so if the files will
+ * be loaded from somewhere else at run time, such as by a {@link com.pippsford.stencil.source.ClassPathSourceProvider}, specify that provider's root with
+ * "--source-root".</p>
+ *
+ * <p>If any stencil cannot be parsed, the problems are reported, no snapshot is written, and the process exits with a non-zero status.</p>
+ *
+ * <p>The "Template Snapshots" section of the documentation shows how to run the compiler from a Gradle build and package the snapshot as a resource.</p>
+ *
+ * <p>At run time, load the snapshot with:</p>
+ *
+ * <pre>
+ *   TemplateSnapshot snapshot = TemplateSnapshot.loadResource("stencils.snapshot");
+ *   snapshot.setVerifySources(false);
+ *   stencils.setTemplateSnapshot(snapshot);
+ * </pre>
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public class StencilSnapshotCompiler {
+
+  /** Source of the localised search names. */
+  private static final Control CONTROL = new Control() {
+    // do nothing - this appears to be the only way to get an instance of Control.
+  };
+
+
+
+  /**
+   * A stencil's name and the locale of one of its sources.
+   *
+   * @param name   the stencil's name
+   * @param locale the locale
+   */
+  record Localised(String name, Locale locale) {
+
+  }
+
+
+
+  /**
+   * Parse the specified stencils and write the resulting snapshot. The snapshot is only written if every stencil, and everything it includes, was parsed
+   * successfully.
+   *
+   * @param stencils     the stencil set to parse the stencils with
+   * @param stencilNames the names of the stencils to parse in each locale
+   * @param output       the file to write the snapshot to
+   *
+   * @return the outcome of parsing the stencils
+   *
+   * @throws IOException if the snapshot cannot be written
+   */
+  public static WarmUpReport compile(Stencils stencils, Map<Locale, ? extends Collection<String>> stencilNames, Path output) throws IOException {
+    long start = System.nanoTime();
+    TemplateSnapshot snapshot = TemplateSnapshot.create();
+    stencils.setTemplateSnapshot(snapshot);
+    List<WarmUpReport.Result> results = new ArrayList<>();
+    for (Map.Entry<Locale, ? extends Collection<String>> entry : stencilNames.entrySet()) {
+      results.addAll(stencils.warmUp(entry.getValue(), List.of(entry.getKey())).results());
+    }
+
+    WarmUpReport report = new WarmUpReport(results, System.nanoTime() - start);
+    if (report.isSuccessful()) {
+      Path parent = output.toAbsolutePath().getParent();
+      if (parent != null) {
+        Files.createDirectories(parent);
+      }
+      snapshot.write(output);
+    }
+    return report;
+  }
+
+
+  /**
+   * Find the files within a directory tree, as source paths starting with a '/'.
+   *
+   * @param root the root directory
+   *
+   * @return the source paths
+   *
+   * @throws IOException if the directory cannot be read
+   */
+  private static List<String> listFiles(Path root) throws IOException {
+    List<String> paths = new ArrayList<>();
+    try (Stream<Path> stream = Files.walk(root)) {
+      for (Path file : (Iterable<Path>) stream.filter(Files::isRegularFile)::iterator) {
+        StringBuilder buf = new StringBuilder();
+        for (Path element : root.relativize(file)) {
+          buf.append('/').append(element);
+        }
+        paths.add(buf.toString());
+      }
+    }
+    return paths;
+  }
+
+
+  /**
+   * Split a localised source path into the stencil's name and locale. For example, "/mail/welcome_en_GB.txt" is "/mail/welcome.txt" in the "en-GB" locale.
+   *
+   * @param path the localised path
+   *
+   * @return the name and the locale
+   */
+  static Localised localise(String path) {
+    Source source;
+    try {
+      source = Source.of(path);
+    } catch (StencilException e) {
+      return new Localised(path, Locale.ROOT);
+    }
+
+    String name = source.getPath();
+    String best = "";
+    Locale bestLocale = Locale.ROOT;
+    for (Locale locale : Locale.getAvailableLocales()) {
+      String tail = CONTROL.toBundleName("", locale);
+      if (tail.length() > best.length() && name.length() > tail.length() && name.endsWith(tail)) {
+        best = tail;
+        bestLocale = locale;
+      }
+    }
+    return new Localised(name.substring(0, name.length() - best.length()) + source.getSuffix(), bestLocale);
+  }
+
+
+  /**
+   * Entry point.
+   *
+   * @param args command line
+   *
+   * @throws Exception if it fails
+   */
+  public static void main(String[] args) throws Exception {
+    int status = run(args, System.out, System.err);
+    if (status != 0) {
+      System.exit(status);
+    }
+  }
+
+
+  /**
+   * Run the compiler.
+   *
+   * @param args command line
+   * @param out  stream for progress messages
+   * @param err  stream for error messages
+   *
+   * @return the exit status
+   *
+   * @throws IOException if the sources cannot be read or the snapshot cannot be written
+   */
+  static int run(String[] args, PrintStream out, PrintStream err) throws IOException {
+    List<String> positional = new ArrayList<>();
+    Set<Locale> locales = new LinkedHashSet<>();
+    locales.add(Locale.ROOT);
+    String escape = null;
+    String sourceRoot = null;
+    for (String arg : args) {
+      if (arg.startsWith("--locale=")) {
+        locales.add(Locale.forLanguageTag(arg.substring(9)));
+      } else if (arg.startsWith("--escape=")) {
+        escape = arg.substring(9);
+      } else if (arg.startsWith("--source-root=")) {
+        sourceRoot = arg.substring(14);
+      } else {
+        positional.add(arg);
+      }
+    }
+
+    boolean isFiles = positional.size() == 3 && positional.get(0).equals("files");
+    boolean isCompendium = positional.size() > 3 && positional.get(0).equals("compendium");
+    if (!(isFiles || isCompendium)) {
+      err.println("Usage:\n"
+          + "\tjava " + StencilSnapshotCompiler.class.getName() + " files <root> <output> [--locale=<tag> ...] [--escape=<name>] [--source-root=<root>]\n"
+          + "\tjava " + StencilSnapshotCompiler.class.getName() + " compendium <root> <output> <compendium> ... [--locale=<tag> ...] [--escape=<name>]\n"
+          + "\t\t[--source-root=<root>]");
+      return 1;
+    }
+
+    Path root = Paths.get(positional.get(1)).toAbsolutePath();
+    Path output = Paths.get(positional.get(2));
+    Map<String, Set<Locale>> sourceLocales = new TreeMap<>();
+    List<String> files = listFiles(root);
+    SourceProvider sourceProvider;
+    URLClassLoader classLoader = null;
+
+    if (isFiles) {
+      for (String file : files) {
+        Localised localised = localise(file);
+        sourceLocales.computeIfAbsent(localised.name(), k -> new HashSet<>()).add(localised.locale());
+      }
+      sourceProvider = new FileSourceProvider(root);
+    } else {
+      List<String> compendia = positional.subList(3, positional.size());
+      Set<String> compendiumNames = new TreeSet<>();
+      try {
+        for (String compendium : compendia) {
+          compendiumNames.add(Source.of(compendium).toString());
+        }
+        for (String file : files) {
+          Localised localised = localise(file);
+          if (compendiumNames.contains(localised.name())) {
+            for (String name : CompendiumUtil.readCompendium(root.resolve(file.substring(1))).keySet()) {
+              sourceLocales.computeIfAbsent(name, k -> new HashSet<>()).add(localised.locale());
+            }
+          }
+        }
+      } catch (StencilException e) {
+        err.println("Unable to read compendium: " + e.getMessage());
+        return 1;
+      }
+      classLoader = new URLClassLoader(new URL[]{root.toUri().toURL()}, null);
+      CompendiumSourceProvider compendiumSourceProvider = new CompendiumSourceProvider(compendia);
+      compendiumSourceProvider.setClassLoader(classLoader);
+      sourceProvider = compendiumSourceProvider;
+    }
+    if (sourceRoot != null) {
+      // Key the snapshot for the provider that will be used at run time
+      String runTimeRoot = sourceRoot;
+      sourceProvider = new FramingSourceProvider(sourceProvider) {
+        @Override
+        public String getSourceRoot() {
+          return runTimeRoot;
+        }
+      };
+    }
+
+    // Compile each stencil in every locale that will find one of its sources.
+    sourceLocales.values().forEach(locales::addAll);
+    Map<Locale, List<String>> stencilNames = new LinkedHashMap<>();
+    int count = 0;
+    for (Locale locale : locales) {
+      List<Locale> candidates = CONTROL.getCandidateLocales("", locale);
+      List<String> names = new ArrayList<>();
+      sourceLocales.forEach((name, found) -> {
+        if (candidates.stream().anyMatch(found::contains)) {
+          names.add(name);
+        }
+      });
+      stencilNames.put(locale, names);
+      count += names.size();
+    }
+
+    try {
+      Stencils stencils = new Stencils(sourceProvider);
+      if (escape != null) {
+        try {
+          stencils.setDefaultEscape(stencils.getEscapeResolver().forName(escape, stencils.getDefaultEscape()));
+        } catch (StencilParseFailedException e) {
+          err.println("Unknown escape style: " + escape);
+          return 1;
+        }
+      }
+
+      out.println("Compiling " + sourceLocales.size() + " stencils in " + locales.size() + " locales, " + count + " templates in all");
+      WarmUpReport report = compile(stencils, stencilNames, output);
+      if (!report.isSuccessful()) {
+        for (WarmUpReport.Result result : report.getFailures()) {
+          err.println("FAILED " + result.stencilName() + " [" + result.locale().toLanguageTag() + "]: " + result.failure().getMessage());
+        }
+        err.println(report.getFailures().size() + " stencils could not be compiled. No snapshot was written.");
+        return 2;
+      }
+      out.println("Wrote " + stencils.getTemplateSnapshot().size() + " templates to " + output);
+      return 0;
+    } finally {
+      if (classLoader != null) {
+        classLoader.close();
+      }
+    }
+  }
+
+}
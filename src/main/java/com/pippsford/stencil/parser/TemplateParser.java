@@ -92,10 +92,30 @@ public class TemplateParser {
    */
   public static Template parse(Stencils stencils, StencilId stencilId)
       throws StencilParseFailedException, StencilNotFoundException, StencilStorageException {
+    TemplateSnapshot snapshot = stencils.getTemplateSnapshot();
+    if (snapshot != null) {
+      return snapshot.parse(stencils, stencilId);
+    }
+
     logger.debug("Loading {} for parsing", stencilId);
     PreParser preParser = new PreParser(stencils, stencilId);
     String text = preParser.process();
-    TemplateParser templateParser = new TemplateParser(preParser.getContext(), text);
+    return parse(preParser.getContext(), new BlockParser(text));
+  }
+
+
+  /**
+   * Parse the blocks provided by a block parser into a template.
+   *
+   * @param context the context after pre-parsing
+   * @param parser  the source of blocks
+   *
+   * @return the template
+   *
+   * @throws StencilParseFailedException if the blocks do not form a valid template
+   */
+  static Template parse(Context context, BlockParser parser) throws StencilParseFailedException {
+    TemplateParser templateParser = new TemplateParser(context, parser);
     return templateParser.makeTemplate();
   }
 
@@ -181,9 +201,9 @@ public class TemplateParser {
   private FixMatch fixMatch;
 
 
-  private TemplateParser(Context context, String text) {
+  private TemplateParser(Context context, BlockParser parser) {
     this.context = context;
-    parser = new BlockParser(text);
+    this.parser = parser;
     endsWith = null;
   }
 
@@ -329,19 +349,19 @@ public class TemplateParser {
     }
 
     SourceProvider sourceProvider = context.getStencils().getSourceProvider();
-    TemplateProvider included;
+    final StencilId stencilId;
     try {
-      final StencilId stencilId = new SourceStencilId(sourceProvider, path, context.getLocale(), context.getBundle(), context.getEscapeStyle());
-      included = () -> context.getStencils().getTemplate(stencilId);
+      stencilId = new SourceStencilId(sourceProvider, path, context.getLocale(), context.getBundle(), context.getEscapeStyle());
     } catch (StencilNotFoundException e) {
       throw new StencilParseFailedException("Invalid path specified for include: " + path, e);
     }
-    blocks.add(new Include(included));
+    TemplateProvider included = () -> context.getStencils().getTemplate(stencilId);
+    blocks.add(new Include(stencilId, included));
   }
 
 
   private void parseLoop() throws StencilParseFailedException {
-    parseBlockElseEnd((main, other) -> new LoopDirective(fixMatch.groups[1], main, other));
+    parseBlockElseEnd((main, other) -> new LoopDirective(fixMatch.groups[1], main, other, context.getStencils().getParallelLoops()));
   }
 
 
@@ -427,7 +447,7 @@ public class TemplateParser {
     Context newContext = context
         .withEscapeStyle(context.getEscapeStyle(fixMatch.groups[1]))
         .withMode(ProcessingMode.NORMAL);
-    TemplateParser newParser = new TemplateParser(newContext, fixMatch.groups[3]);
+    TemplateParser newParser = new TemplateParser(newContext, parser.nested(fixMatch.groups[3]));
     newParser.runParser();
     blocks.addAll(newParser.blocks);
 
@@ -0,0 +1,539 @@
+package com.pippsford.stencil.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import jakarta.annotation.Nullable;
+
+import com.pippsford.stencil.Stencils;
+import com.pippsford.stencil.blocks.BlockTypes;
+import com.pippsford.stencil.blocks.Template;
+import com.pippsford.stencil.escape.Escape;
+import com.pippsford.stencil.source.MessageStencilId;
+import com.pippsford.stencil.source.SourceStencilId;
+import com.pippsford.stencil.source.StencilId;
+import com.pippsford.stencil.source.StencilNotFoundException;
+import com.pippsford.stencil.source.StencilStorageException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A snapshot of the results of parsing templates, which allows the templates to be recreated without parsing their sources again.
+ *
+ * <p>For each stencil, the snapshot records the [global] settings found by the pre-parser and the sequence of blocks found by the block parser. Replaying
+ * these through the template parser recreates exactly the same template, including includes, resources and escape styles, which are resolved by name and
+ * stencil ID just as when the source was first parsed. Each entry also records a SHA-256 hash of its source. If a source no longer matches its hash, the
+ * entry is stale and the source is parsed again, replacing the entry.</p>
+ *
+ * <p>A snapshot can be written to a file at build time or on shutdown, and memory-mapped when the file is loaded. Entries are only decoded when they are
+ * used.</p>
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public final class TemplateSnapshot {
+
+  /** Marker for the end of a parser's source. */
+  private static final int END_OF_SOURCE = -2;
+
+  /** Hash algorithm used to detect changes to sources. */
+  private static final String HASH_ALGORITHM = "SHA-256";
+
+  /** Magic number that starts every snapshot: "STNS". */
+  private static final int MAGIC = 0x53544E53;
+
+  /** Marker for static content. */
+  private static final int STATIC_CONTENT = -1;
+
+  /** Version of the snapshot format. */
+  private static final int VERSION = 2;
+
+  private static final Logger logger = LoggerFactory.getLogger(TemplateSnapshot.class);
+
+
+
+  /**
+   * The recorded parse of one stencil.
+   *
+   * @param hash     hash of the stencil's source
+   * @param settings the [global] settings applied by the pre-parser
+   * @param blocks   the blocks found by the block parser, including a null for the end of each source
+   */
+  private record Entry(byte[] hash, List<String> settings, List<FixMatch> blocks) {
+
+  }
+
+
+
+  /**
+   * Create a new empty snapshot. Entries are added as templates are parsed.
+   *
+   * @return the new snapshot
+   */
+  public static TemplateSnapshot create() {
+    return new TemplateSnapshot();
+  }
+
+
+  private static Entry decode(ByteBuffer buffer, BlockTypes[] types) throws IOException {
+    try {
+      byte[] hash = new byte[buffer.getInt()];
+      buffer.get(hash);
+
+      int settingCount = buffer.getInt();
+      List<String> settings = new ArrayList<>(settingCount);
+      for (int i = 0; i < settingCount; i++) {
+        settings.add(readString(buffer));
+      }
+
+      int blockCount = buffer.getInt();
+      List<FixMatch> blocks = new ArrayList<>(blockCount);
+      for (int i = 0; i < blockCount; i++) {
+        int typeIndex = buffer.getInt();
+        if (typeIndex == END_OF_SOURCE) {
+          blocks.add(null);
+          continue;
+        }
+        BlockTypes type = null;
+        if (typeIndex != STATIC_CONTENT) {
+          type = types[typeIndex];
+          if (type == null) {
+            throw new IOException("Snapshot entry uses a block type which no longer exists");
+          }
+        }
+        int start = buffer.getInt();
+        int end = buffer.getInt();
+        String text = readString(buffer);
+        String[] groups = new String[buffer.getInt()];
+        for (int j = 0; j < groups.length; j++) {
+          groups[j] = readString(buffer);
+        }
+        blocks.add(new FixMatch(type, start, end, text, groups));
+      }
+      return new Entry(hash, Collections.unmodifiableList(settings), Collections.unmodifiableList(blocks));
+    } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+      throw new IOException("Invalid template snapshot entry", e);
+    }
+  }
+
+
+  private static byte[] encode(Entry entry) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(entry.hash().length);
+    out.write(entry.hash());
+
+    out.writeInt(entry.settings().size());
+    for (String setting : entry.settings()) {
+      writeString(out, setting);
+    }
+
+    out.writeInt(entry.blocks().size());
+    for (FixMatch block : entry.blocks()) {
+      if (block == null) {
+        out.writeInt(END_OF_SOURCE);
+        continue;
+      }
+      out.writeInt(block.type == null ? STATIC_CONTENT : block.type.ordinal());
+      out.writeInt(block.start);
+      out.writeInt(block.end);
+      writeString(out, block.text);
+      out.writeInt(block.groups.length);
+      for (String group : block.groups) {
+        writeString(out, group);
+      }
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+
+  private static String escapeName(Escape escape) {
+    // Only enumerated styles have names which are stable between processes
+    return (escape instanceof Enum<?> e) ? e.name() : escape.getClass().getName();
+  }
+
+
+  private static byte[] hash(String text) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance(HASH_ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new InternalError("Required hash algorithm is not available: " + HASH_ALGORITHM, e);
+    }
+    return digest.digest(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+
+  /**
+   * Get the key used to store a stencil in a snapshot. A source stencil's key includes the root of its source provider, as different providers may hold
+   * different stencils with the same name.
+   *
+   * @param stencilId the stencil's ID
+   *
+   * @return the key, or null if stencils of this type cannot be stored
+   */
+  @Nullable
+  static String keyFor(StencilId stencilId) {
+    String suffix = "|" + stencilId.getLocale().toLanguageTag() + "|" + stencilId.getBundle() + "|" + escapeName(stencilId.getEscape());
+    if (stencilId instanceof SourceStencilId sourceId) {
+      return "source:" + sourceId.getSourceRoot() + "|" + sourceId.getSource() + suffix;
+    }
+    if (stencilId instanceof MessageStencilId messageId) {
+      return "message:" + messageId.getMessageId() + suffix;
+    }
+    return null;
+  }
+
+
+  /**
+   * Load a snapshot from a file. The file is memory-mapped, and entries are only decoded when they are needed.
+   *
+   * @param path the file
+   *
+   * @return the snapshot
+   *
+   * @throws IOException if the file cannot be read or is not a valid snapshot
+   */
+  public static TemplateSnapshot load(Path path) throws IOException {
+    ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    return new TemplateSnapshot(buffer);
+  }
+
+
+  /**
+   * Load a snapshot from a stream, such as a resource in an archive, which cannot be memory-mapped. The stream is read fully, but not closed.
+   *
+   * @param input the stream
+   *
+   * @return the snapshot
+   *
+   * @throws IOException if the stream cannot be read or does not contain a valid snapshot
+   */
+  public static TemplateSnapshot load(InputStream input) throws IOException {
+    return new TemplateSnapshot(ByteBuffer.wrap(input.readAllBytes()));
+  }
+
+
+  /**
+   * Load a snapshot from a resource on the class path, using the current thread's context class loader.
+   *
+   * @param name the resource's name
+   *
+   * @return the snapshot, or null if there is no such resource
+   *
+   * @throws IOException if the resource cannot be read or is not a valid snapshot
+   */
+  @Nullable
+  public static TemplateSnapshot loadResource(String name) throws IOException {
+    ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+    try (InputStream input = classLoader.getResourceAsStream(name.startsWith("/") ? name.substring(1) : name)) {
+      return (input != null) ? load(input) : null;
+    }
+  }
+
+
+  private static String readString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+
+  /** The loaded snapshot data, or null if this snapshot was not loaded. */
+  private final ByteBuffer data;
+
+  /** Entries recorded since this snapshot was created or loaded. These replace loaded entries with the same key. */
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  /** Count of templates recreated from this snapshot. */
+  private final LongAdder hits = new LongAdder();
+
+  /** Location of each loaded entry within the data, as offset and length. */
+  private final Map<String, int[]> loaded;
+
+  /** Count of templates which had to be parsed. */
+  private final LongAdder misses = new LongAdder();
+
+  /** The block types of the loaded snapshot, indexed as they are in the data. */
+  private final BlockTypes[] types;
+
+  /** If true, the hash of a stencil's source is checked before its entry is used. */
+  private volatile boolean verifySources = true;
+
+
+  private TemplateSnapshot() {
+    data = null;
+    loaded = Map.of();
+    types = new BlockTypes[0];
+  }
+
+
+  private TemplateSnapshot(ByteBuffer buffer) throws IOException {
+    try {
+      if (buffer.getInt() != MAGIC) {
+        throw new IOException("Not a template snapshot");
+      }
+      int version = buffer.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported template snapshot version: " + version);
+      }
+
+      types = new BlockTypes[buffer.getInt()];
+      for (int i = 0; i < types.length; i++) {
+        String name = readString(buffer);
+        try {
+          types[i] = BlockTypes.valueOf(name);
+        } catch (IllegalArgumentException | NullPointerException e) {
+          // This block type no longer exists, so entries which use it cannot be used.
+          types[i] = null;
+        }
+      }
+
+      int entryCount = buffer.getInt();
+      HashMap<String, int[]> index = new HashMap<>();
+      for (int i = 0; i < entryCount; i++) {
+        String key = readString(buffer);
+        int offset = buffer.getInt();
+        int length = buffer.getInt();
+        index.put(key, new int[]{offset, length});
+      }
+      data = buffer.slice();
+      loaded = Collections.unmodifiableMap(index);
+    } catch (BufferUnderflowException | NegativeArraySizeException e) {
+      throw new IOException("Invalid template snapshot", e);
+    }
+  }
+
+
+  @Nullable
+  private Entry getEntry(String key) {
+    Entry entry = entries.get(key);
+    if (entry != null) {
+      return entry;
+    }
+    int[] location = loaded.get(key);
+    if (location == null) {
+      return null;
+    }
+
+    ByteBuffer buffer = data.duplicate();
+    buffer.position(location[0]).limit(location[0] + location[1]);
+    try {
+      entry = decode(buffer, types);
+    } catch (IOException e) {
+      logger.warn("Unable to use snapshot entry for {}", key, e);
+      return null;
+    }
+    return entry;
+  }
+
+
+  /**
+   * Get the number of templates which have been recreated from this snapshot.
+   *
+   * @return the number of templates recreated without parsing
+   */
+  public long getHits() {
+    return hits.sum();
+  }
+
+
+  /**
+   * Get the number of templates which had to be parsed, because they were not in this snapshot or their source had changed.
+   *
+   * @return the number of templates parsed
+   */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+
+  /**
+   * Create a template, from this snapshot if possible, or by parsing its source. A newly parsed template is added to this snapshot.
+   *
+   * @param stencils  the stencil set which will contain the template
+   * @param stencilId the ID of the stencil
+   *
+   * @return the template
+   *
+   * @throws StencilParseFailedException if the stencil is invalid
+   * @throws StencilNotFoundException    if the stencil cannot be located
+   * @throws StencilStorageException     if the stencil cannot be read
+   */
+  Template parse(Stencils stencils, StencilId stencilId) throws StencilParseFailedException, StencilNotFoundException, StencilStorageException {
+    String key = keyFor(stencilId);
+    Entry entry = (key != null) ? getEntry(key) : null;
+    if (entry != null && !verifySources) {
+      return replay(stencils, stencilId, entry);
+    }
+
+    String text = stencilId.getText();
+    byte[] hash = hash(text);
+    if (entry != null && Arrays.equals(hash, entry.hash())) {
+      return replay(stencils, stencilId, entry);
+    }
+
+    logger.debug("Loading {} for parsing", stencilId);
+    misses.increment();
+    PreParser preParser = new PreParser(stencils, stencilId);
+    String processed = preParser.process(text);
+    List<FixMatch> blocks = new ArrayList<>();
+    Template template = TemplateParser.parse(preParser.getContext(), new BlockParser(processed, blocks));
+    if (key != null) {
+      entries.put(key, new Entry(hash, List.copyOf(preParser.getSettings()), Collections.unmodifiableList(blocks)));
+    }
+    return template;
+  }
+
+
+  private Template replay(Stencils stencils, StencilId stencilId, Entry entry) throws StencilParseFailedException {
+    logger.debug("Recreating {} from snapshot", stencilId);
+    hits.increment();
+    Context context = new Context(stencils, stencilId);
+    for (String setting : entry.settings()) {
+      context = TemplateParser.updateContext(context, setting, true);
+    }
+    return TemplateParser.parse(context, new BlockParser(entry.blocks().iterator()));
+  }
+
+
+  /**
+   * Set whether templates in this snapshot are checked against their sources before use. When the snapshot was built from the same sources that are
+   * deployed, such as by the {@link StencilSnapshotCompiler} at build time, the check can be turned off, and then templates in the snapshot are recreated
+   * without reading their sources at all. By default, sources are checked.
+   *
+   * @param verifySources if false, templates in the snapshot are assumed to be up-to-date
+   */
+  public void setVerifySources(boolean verifySources) {
+    this.verifySources = verifySources;
+  }
+
+
+  /**
+   * Get the number of stencils in this snapshot.
+   *
+   * @return the number of stencils
+   */
+  public int size() {
+    int size = entries.size();
+    for (String key : loaded.keySet()) {
+      if (!entries.containsKey(key)) {
+        size++;
+      }
+    }
+    return size;
+  }
+
+
+  /**
+   * Write this snapshot to a file. The file is replaced atomically where the file system allows it, so a snapshot may be written over the file it was loaded
+   * from.
+   *
+   * @param path the file
+   *
+   * @throws IOException if the file cannot be written
+   */
+  public void write(Path path) throws IOException {
+    Path target = path.toAbsolutePath();
+    Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+    try {
+      try (OutputStream out = Files.newOutputStream(temp)) {
+        write(out);
+      }
+      try {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+
+  /**
+   * Write this snapshot to a stream. The stream is not closed.
+   *
+   * @param output the stream
+   *
+   * @throws IOException if the stream cannot be written
+   */
+  public void write(OutputStream output) throws IOException {
+    // Entries are written in key order, so the same templates always produce the same snapshot.
+    TreeMap<String, byte[]> encoded = new TreeMap<>();
+    for (String key : loaded.keySet()) {
+      if (!entries.containsKey(key)) {
+        Entry entry = getEntry(key);
+        if (entry != null) {
+          encoded.put(key, encode(entry));
+        }
+      }
+    }
+    for (Map.Entry<String, Entry> e : entries.entrySet()) {
+      encoded.put(e.getKey(), encode(e.getValue()));
+    }
+
+    DataOutputStream out = new DataOutputStream(output);
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    BlockTypes[] allTypes = BlockTypes.values();
+    out.writeInt(allTypes.length);
+    for (BlockTypes type : allTypes) {
+      writeString(out, type.name());
+    }
+
+    out.writeInt(encoded.size());
+    int offset = 0;
+    for (Map.Entry<String, byte[]> e : encoded.entrySet()) {
+      writeString(out, e.getKey());
+      out.writeInt(offset);
+      out.writeInt(e.getValue().length);
+      offset += e.getValue().length;
+    }
+    for (byte[] bytes : encoded.values()) {
+      out.write(bytes);
+    }
+    out.flush();
+  }
+
+}
@@ -18,6 +18,9 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 /**
  * A source provider that reads resource files from the class path.
  *
+ * <p>Resources that were not found are only remembered if a time-to-live is set with {@link #setNegativeCacheTtl}. If the class path does not change, the
+ * time-to-live may be {@link #FOREVER}.</p>
+ *
  * @author Simon Greatrix on 29/12/2020.
  */
 public class ClassPathSourceProvider extends IndividualSourceProvider {
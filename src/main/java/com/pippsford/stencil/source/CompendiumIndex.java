@@ -0,0 +1,241 @@
+package com.pippsford.stencil.source;
+
+import static com.pippsford.common.StringUtils.logSafe;
+import static com.pippsford.stencil.source.CompendiumSourceProvider.HERE;
+import static com.pippsford.stencil.source.CompendiumSourceProvider.KEY;
+import static com.pippsford.stencil.source.CompendiumSourceProvider.readHereEntry;
+import static com.pippsford.stencil.source.CompendiumSourceProvider.readNormalEntry;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import jakarta.annotation.Nullable;
+
+/**
+ * An index of the stencils in one compendium file. The file is scanned once to find where each stencil's text is, and the text is only decoded when it is
+ * requested. The contents are held in memory, so a compendium which changes after it was loaded cannot affect the index. The size and modification time of a
+ * compendium on the file system are recorded, so that a change can be detected.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class CompendiumIndex {
+
+  /**
+   * The location of a stencil's text within the compendium.
+   *
+   * @param start  the offset of the first line of the text
+   * @param end    the offset after the last line of the text, including a here document's marker
+   * @param marker the marker which ends a here document, or null for a normal entry
+   */
+  private record Entry(int start, int end, String marker) {
+
+  }
+
+
+
+  /**
+   * Load and index a compendium.
+   *
+   * @param url the compendium's location
+   *
+   * @return the index
+   *
+   * @throws StencilStorageException if the compendium cannot be read
+   */
+  static CompendiumIndex load(URL url) throws StencilStorageException {
+    URI uri;
+    try {
+      uri = url.toURI();
+    } catch (URISyntaxException e) {
+      throw new InternalError("JVM generated invalid URL for resource: " + logSafe(url.toString()));
+    }
+
+    ByteBuffer data;
+    BasicFileAttributes attributes = null;
+    try {
+      if ("file".equals(uri.getScheme())) {
+        // Read the attributes first, so that a change during the read is seen as a change afterwards
+        Path file = Path.of(uri);
+        attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        data = ByteBuffer.wrap(Files.readAllBytes(file));
+      } else {
+        try (InputStream inputStream = url.openStream()) {
+          data = ByteBuffer.wrap(inputStream.readAllBytes());
+        }
+      }
+    } catch (IOException ioException) {
+      throw new StencilStorageException("Unable to read from storage for: " + uri.toASCIIString(), ioException);
+    }
+    return new CompendiumIndex(url, uri, data, attributes);
+  }
+
+
+  /** The compendium's contents. */
+  private final ByteBuffer data;
+
+  /** When the compendium file was last modified, or null if it is not a file. */
+  private final FileTime lastModified;
+
+  /** The location of each stencil. Only the first stencil with a given path is recorded, as only the first would be found by scanning the file. */
+  private final Map<String, Entry> entries = new HashMap<>();
+
+  /** The size of the compendium file. */
+  private final long size;
+
+  /** The URI of the compendium. */
+  private final URI uri;
+
+  /** The URL of the compendium. */
+  private final URL url;
+
+  /** The path of the here document whose marker is missing, if any. */
+  private String markedPath = null;
+
+  /** The marker which was never found, if any. */
+  private String missingMarker = null;
+
+
+  private CompendiumIndex(URL url, URI uri, ByteBuffer data, @Nullable BasicFileAttributes attributes) {
+    this.url = url;
+    this.uri = uri;
+    this.data = data;
+    lastModified = (attributes != null) ? attributes.lastModifiedTime() : null;
+    size = (attributes != null) ? attributes.size() : data.limit();
+    scan();
+  }
+
+
+  private String decode(int start, int end) {
+    return StandardCharsets.UTF_8.decode(data.duplicate().position(start).limit(end)).toString();
+  }
+
+
+  /**
+   * Get the text of a stencil from this compendium.
+   *
+   * @param path the stencil's path
+   *
+   * @return the text, or null if the compendium does not contain the stencil
+   *
+   * @throws StencilStorageException if the compendium is invalid
+   */
+  @Nullable
+  String get(String path) throws StencilStorageException {
+    Entry entry = entries.get(path);
+    if (entry == null) {
+      if (missingMarker != null) {
+        throw new CompendiumMarkerMissingException("Marker \"" + missingMarker + "\" was not found for " + markedPath + " in " + url);
+      }
+      return null;
+    }
+
+    PushbackLineReader lineReader = new PushbackLineReader(uri, new BufferedReader(new StringReader(decode(entry.start(), entry.end()))));
+    if (entry.marker() != null) {
+      return readHereEntry(uri, lineReader, entry.marker());
+    }
+    return readNormalEntry(lineReader);
+  }
+
+
+  /**
+   * Has the compendium changed since it was indexed? Only a compendium on the file system can change. One which has been deleted or cannot be read has
+   * changed.
+   *
+   * @return true if the compendium file's size or modification time has changed
+   */
+  boolean isStale() {
+    if (lastModified == null) {
+      return false;
+    }
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(Path.of(uri), BasicFileAttributes.class);
+      return attributes.size() != size || !attributes.lastModifiedTime().equals(lastModified);
+    } catch (IOException e) {
+      return true;
+    }
+  }
+
+
+  /**
+   * Scan the compendium for stencils. Lines are recognised in the same way as by a BufferedReader, and an entry's text runs to the line before the next
+   * stencil's path.
+   */
+  private void scan() {
+    int limit = data.limit();
+    int position = 0;
+
+    String normalPath = null;
+    int normalStart = 0;
+    String herePath = null;
+    int hereStart = 0;
+    String marker = null;
+
+    while (position < limit) {
+      int lineStart = position;
+      int lineEnd = lineStart;
+      while (lineEnd < limit && data.get(lineEnd) != '\n' && data.get(lineEnd) != '\r') {
+        lineEnd++;
+      }
+      position = lineEnd;
+      if (position < limit) {
+        position += (data.get(position) == '\r' && position + 1 < limit && data.get(position + 1) == '\n') ? 2 : 1;
+      }
+      String line = decode(lineStart, lineEnd);
+
+      if (marker != null) {
+        if (marker.equals(line)) {
+          if (herePath != null) {
+            entries.put(herePath, new Entry(hereStart, position, marker));
+          }
+          marker = null;
+        }
+        continue;
+      }
+
+      Matcher matcher = HERE.matcher(line);
+      boolean isHere = matcher.matches();
+      if (isHere || KEY.matcher(line).matches()) {
+        if (normalPath != null) {
+          entries.put(normalPath, new Entry(normalStart, lineStart, null));
+          normalPath = null;
+        }
+        if (isHere) {
+          marker = matcher.group(2);
+          markedPath = matcher.group(1);
+          herePath = entries.containsKey(markedPath) ? null : markedPath;
+          hereStart = position;
+        } else if (!entries.containsKey(line)) {
+          normalPath = line;
+          normalStart = position;
+        }
+      }
+    }
+
+    if (normalPath != null) {
+      entries.put(normalPath, new Entry(normalStart, limit, null));
+    }
+    if (marker != null) {
+      // The here document runs to the end of the file, so reading it will report the missing marker.
+      if (herePath != null) {
+        entries.put(herePath, new Entry(hereStart, limit, marker));
+      }
+      missingMarker = marker;
+    } else {
+      markedPath = null;
+    }
+  }
+
+}
@@ -1,20 +1,15 @@
 package com.pippsford.stencil.source;
 
-import static com.pippsford.common.StringUtils.logSafe;
-
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.URI;
-import java.net.URISyntaxException;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Locale;
-import java.util.regex.Matcher;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import jakarta.annotation.Nullable;
@@ -56,6 +51,10 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
  *   A third stencil in this compendium.
  * </pre>
  *
+ * <p>Each compendium is read and indexed the first time it is needed. Subsequent requests for stencils are served from the index without scanning the
+ * compendium again. A compendium on the file system is read again if its size or modification time has changed. Every compendium is read again after
+ * {@link #refresh()}, which happens when all templates are invalidated.</p>
+ *
  * @author Simon Greatrix on 20/01/2021.
  */
 public class CompendiumSourceProvider implements SourceProvider {
@@ -120,6 +119,9 @@ public class CompendiumSourceProvider implements SourceProvider {
   }
 
 
+  /** Index of every compendium found for each localised search name. */
+  private final Map<String, List<CompendiumIndex>> indexes = new ConcurrentHashMap<>();
+
   private final List<Source> sources;
 
   private ClassLoader classLoader;
@@ -171,19 +173,17 @@ public class CompendiumSourceProvider implements SourceProvider {
 
   private String handleGet(Source source, Locale locale, String path) throws StencilStorageException {
     String sourcePath = PathLocaliser.getSearchName(source.getPath(), source.getSuffix(), locale);
-    try {
-      Enumeration<URL> inputFileUrls = classLoader.getResources(sourcePath.substring(1));
-      while (inputFileUrls.hasMoreElements()) {
-        URL inputUrl = inputFileUrls.nextElement();
-        try (InputStream inputStream = inputUrl.openStream()) {
-          String result = scanStream(inputUrl, inputStream, path);
-          if (result != null) {
-            return result;
-          }
-        }
+    List<CompendiumIndex> compendia = indexes.get(sourcePath);
+    if (compendia == null || compendia.stream().anyMatch(CompendiumIndex::isStale)) {
+      compendia = loadIndexes(sourcePath);
+      indexes.put(sourcePath, compendia);
+    }
+
+    for (CompendiumIndex compendium : compendia) {
+      String result = compendium.get(path);
+      if (result != null) {
+        return result;
       }
-    } catch (IOException ioException) {
-      throw new StencilStorageException("Error reading resources for: " + sourcePath, ioException);
     }
 
     // not found
@@ -191,45 +191,26 @@ public class CompendiumSourceProvider implements SourceProvider {
   }
 
 
-  private String scanStream(URL inputUrl, InputStream inputStream, String path) throws StencilStorageException {
-    URI uri;
+  private List<CompendiumIndex> loadIndexes(String sourcePath) throws StencilStorageException {
+    List<CompendiumIndex> compendia = new ArrayList<>();
     try {
-      uri = inputUrl.toURI();
-    } catch (URISyntaxException e) {
-      throw new InternalError("JVM generated invalid URL for resource: " + logSafe(inputUrl.toString()));
-    }
-    BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
-    PushbackLineReader lineReader = new PushbackLineReader(uri, bufferedReader);
-    String line;
-    String markedPath = null;
-    String marker = null;
-    while ((line = lineReader.readLine()) != null) {
-      if (marker != null) {
-        if (marker.equals(line)) {
-          marker = null;
-        }
-        continue;
-      }
-
-      if (line.equals(path)) {
-        return readNormalEntry(lineReader);
-      }
-
-      Matcher matcher = HERE.matcher(line);
-      if (matcher.matches()) {
-        if (matcher.group(1).equals(path)) {
-          return readHereEntry(uri, lineReader, matcher.group(2));
-        } else {
-          markedPath = matcher.group(1);
-          marker = matcher.group(2);
-        }
+      Enumeration<URL> inputFileUrls = classLoader.getResources(sourcePath.substring(1));
+      while (inputFileUrls.hasMoreElements()) {
+        compendia.add(CompendiumIndex.load(inputFileUrls.nextElement()));
       }
+    } catch (IOException ioException) {
+      throw new StencilStorageException("Error reading resources for: " + sourcePath, ioException);
     }
+    return compendia;
+  }
 
-    if (marker != null) {
-      throw new CompendiumMarkerMissingException("Marker \"" + marker + "\" was not found for " + markedPath + " in " + inputUrl);
-    }
-    return null;
+
+  /**
+   * Forget every compendium index, so that each compendium is read again when it is next needed.
+   */
+  @Override
+  public void refresh() {
+    indexes.clear();
   }
 
 
@@ -241,6 +222,7 @@ public class CompendiumSourceProvider implements SourceProvider {
   @SuppressFBWarnings("EI_EXPOSE_REP")
   public void setClassLoader(ClassLoader classLoader) {
     this.classLoader = classLoader;
+    indexes.clear();
   }
 
 }
@@ -3,19 +3,157 @@ package com.pippsford.stencil.source;
 import static com.pippsford.common.StringUtils.logSafe;
 
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import jakarta.annotation.Nullable;
 
+import com.pippsford.stencil.SourceChangeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
- * Provider which loads resources from a file system.
+ * Provider which loads resources from a file system. The provider can optionally watch the file system for changes, and notify its listeners of any file
+ * that is created, modified or deleted.
+ *
+ * <p>Files that were not found are only remembered if a time-to-live is set with {@link #setNegativeCacheTtl}. Whilst watching, a created file is always
+ * found immediately, so the time-to-live may be {@link #FOREVER}.</p>
  *
  * @author Simon Greatrix on 03/01/2021.
  */
 public class FileSourceProvider extends IndividualSourceProvider {
 
+  private static final Logger logger = LoggerFactory.getLogger(FileSourceProvider.class);
+
+
+
+  /** Watches the root directory tree and notifies the listeners of changes. */
+  private final class Watcher implements Runnable {
+
+    /** The directory associated with each watch key. */
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+
+    /** The watch service. */
+    private final WatchService service;
+
+
+    Watcher(WatchService service) {
+      this.service = service;
+    }
+
+
+    private void handle(Path directory, WatchEvent<?> event) {
+      WatchEvent.Kind<?> kind = event.kind();
+      if (kind == StandardWatchEventKinds.OVERFLOW) {
+        // Events were lost, so anything may have changed.
+        notifyListeners(null);
+        return;
+      }
+
+      Path child = directory.resolve((Path) event.context());
+      if (kind == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child)) {
+        // Files may have been added to the directory before it was registered.
+        try {
+          register(child, true);
+        } catch (IOException ioException) {
+          logger.warn("Unable to watch directory {}", logSafe(child.toString()), ioException);
+        }
+        return;
+      }
+
+      if (kind == StandardWatchEventKinds.ENTRY_DELETE && directories.containsValue(child)) {
+        // A whole directory of sources was removed.
+        notifyListeners(null);
+        return;
+      }
+
+      notifyListeners(toSourcePath(child));
+    }
+
+
+    /**
+     * Watch a directory and all its subdirectories.
+     *
+     * @param start  the directory
+     * @param notify if true, notify the listeners of every file found
+     *
+     * @throws IOException if the directory tree cannot be read
+     */
+    void register(Path start, boolean notify) throws IOException {
+      Files.walkFileTree(start, new SimpleFileVisitor<>() {
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+          WatchKey key = dir.register(
+              service,
+              StandardWatchEventKinds.ENTRY_CREATE,
+              StandardWatchEventKinds.ENTRY_DELETE,
+              StandardWatchEventKinds.ENTRY_MODIFY
+          );
+          directories.put(key, dir);
+          return FileVisitResult.CONTINUE;
+        }
+
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+          if (notify) {
+            notifyListeners(toSourcePath(file));
+          }
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    }
+
+
+    @Override
+    public void run() {
+      while (true) {
+        WatchKey key;
+        try {
+          key = service.take();
+        } catch (ClosedWatchServiceException e) {
+          // watching has stopped
+          return;
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+
+        Path directory = directories.get(key);
+        if (directory != null) {
+          for (WatchEvent<?> event : key.pollEvents()) {
+            handle(directory, event);
+          }
+        }
+        if (!key.reset()) {
+          directories.remove(key);
+        }
+      }
+    }
+
+  }
+
+
+
+  /** Listeners for changes to the files. */
+  private final List<SourceChangeListener> listeners = new CopyOnWriteArrayList<>();
+
   private final Path rootPath;
 
+  /** The service watching the file system, if watching is active. */
+  private WatchService watchService;
+
 
   /**
    * New instance.
@@ -27,6 +165,12 @@ public class FileSourceProvider extends IndividualSourceProvider {
   }
 
 
+  @Override
+  public void addChangeListener(SourceChangeListener listener) {
+    listeners.add(listener);
+  }
+
+
   @Override
   public String getSourceRoot() {
     return rootPath.toUri().toString();
@@ -50,6 +194,94 @@ public class FileSourceProvider extends IndividualSourceProvider {
   }
 
 
+  /**
+   * Is this provider watching the file system for changes?.
+   *
+   * @return true if watching
+   */
+  public synchronized boolean isWatching() {
+    return watchService != null;
+  }
+
+
+  private void notifyListeners(@Nullable String path) {
+    invalidateNegativeCache(path);
+    for (SourceChangeListener listener : listeners) {
+      try {
+        listener.sourceChanged(path);
+      } catch (RuntimeException e) {
+        // A failing listener must not stop the watcher
+        logger.error("Source change listener failed for {}", logSafe(String.valueOf(path)), e);
+      }
+    }
+  }
+
+
+  @Override
+  public void removeChangeListener(SourceChangeListener listener) {
+    listeners.remove(listener);
+  }
+
+
+  /**
+   * Start watching the root directory tree for changes. Listeners are notified on a background daemon thread whenever a file is created, modified, or
+   * deleted. Does nothing if already watching.
+   *
+   * @throws IOException if the file system cannot be watched
+   */
+  public synchronized void startWatching() throws IOException {
+    if (watchService != null) {
+      return;
+    }
+
+    WatchService service = rootPath.getFileSystem().newWatchService();
+    Watcher watcher = new Watcher(service);
+    try {
+      watcher.register(rootPath, false);
+    } catch (IOException | RuntimeException e) {
+      service.close();
+      throw e;
+    }
+
+    Thread thread = new Thread(watcher, "stencil-watcher-" + rootPath.getFileName());
+    thread.setDaemon(true);
+    thread.start();
+    watchService = service;
+  }
+
+
+  /**
+   * Stop watching the root directory tree for changes. Does nothing if not watching.
+   */
+  public synchronized void stopWatching() {
+    if (watchService == null) {
+      return;
+    }
+    try {
+      watchService.close();
+    } catch (IOException ioException) {
+      logger.warn("Failed to close watch service for {}", rootPath.toUri(), ioException);
+    }
+    watchService = null;
+  }
+
+
+  /**
+   * Convert a file to the path used to identify its source.
+   *
+   * @param file the file
+   *
+   * @return the source path, which always starts with a '/'
+   */
+  private String toSourcePath(Path file) {
+    StringBuilder buf = new StringBuilder();
+    for (Path element : rootPath.relativize(file)) {
+      buf.append('/').append(element);
+    }
+    return buf.toString();
+  }
+
+
   @Override
   public String toString() {
     return String.format(
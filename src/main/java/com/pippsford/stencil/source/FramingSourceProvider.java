@@ -5,6 +5,7 @@ import java.util.function.BiFunction;
 import jakarta.annotation.Nullable;
 
 import com.pippsford.stencil.Source;
+import com.pippsford.stencil.SourceChangeListener;
 import com.pippsford.stencil.SourceProvider;
 
 /**
@@ -55,6 +56,12 @@ public class FramingSourceProvider implements SourceProvider {
   }
 
 
+  @Override
+  public void addChangeListener(SourceChangeListener listener) {
+    sourceProvider.addChangeListener(listener);
+  }
+
+
   /**
    * Get the function that provides a footer.
    *
@@ -104,6 +111,18 @@ public class FramingSourceProvider implements SourceProvider {
   }
 
 
+  @Override
+  public void refresh() {
+    sourceProvider.refresh();
+  }
+
+
+  @Override
+  public void removeChangeListener(SourceChangeListener listener) {
+    sourceProvider.removeChangeListener(listener);
+  }
+
+
   /**
    * Set a fixed footer to frame with.
    *
@@ -1,6 +1,10 @@
 package com.pippsford.stencil.source;
 
+import java.time.Duration;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import jakarta.annotation.Nullable;
 
 import com.pippsford.stencil.Source;
@@ -9,19 +13,80 @@ import com.pippsford.stencil.SourceProvider;
 /**
  * A source provider where each source is in an individual container.
  *
+ * <p>Finding a source may require looking for several localised containers, most of which may not exist. The provider can remember which containers were
+ * not found, so that they are not looked for again. This "negative cache" is disabled unless a time-to-live is set for it.</p>
+ *
  * @author Simon Greatrix on 29/12/2020.
  */
 public abstract class IndividualSourceProvider implements SourceProvider {
 
+  /** Time-to-live which indicates that a missing container is remembered until it is invalidated. */
+  public static final Duration FOREVER = Duration.ofSeconds(Long.MAX_VALUE, 999_999_999);
+
+  /** The maximum number of missing containers remembered. If this is exceeded, they are all forgotten. */
+  private static final int MAX_MISSING = 10_000;
+
+  /** Expiry time used for entries which never expire. */
+  private static final long NEVER_EXPIRES = Long.MAX_VALUE;
+
+
+  /** Incremented whenever the negative cache is invalidated, so a look-up which overlaps with an invalidation is not remembered. */
+  private final AtomicLong generation = new AtomicLong();
+
+  /** The containers which were not found, and when they should be looked for again, as given by System.nanoTime(). */
+  private final Map<String, Long> missing = new ConcurrentHashMap<>();
+
+  /** How long a missing container is remembered for, or null if missing containers are not remembered. */
+  private volatile Duration negativeCacheTtl;
+
+
+  /**
+   * New instance without a negative cache.
+   */
+  protected IndividualSourceProvider() {
+    this(null);
+  }
+
+
+  /**
+   * New instance.
+   *
+   * @param negativeCacheTtl how long a container which was not found is remembered for, or null if missing containers are not remembered
+   */
+  protected IndividualSourceProvider(@Nullable Duration negativeCacheTtl) {
+    this.negativeCacheTtl = negativeCacheTtl;
+  }
+
+
+  /**
+   * Get how long a container which was not found is remembered for.
+   *
+   * @return the time-to-live, which may be {@link #FOREVER}, or null if missing containers are not remembered
+   */
+  @Nullable
+  public Duration getNegativeCacheTtl() {
+    return negativeCacheTtl;
+  }
+
 
   @Nullable
   @Override
   public String getSource(Source path, Locale locale) throws StencilStorageException {
+    Duration ttl = negativeCacheTtl;
     for (Locale testLocale : PathLocaliser.getCandidateLocales(locale)) {
-      String source = handleGet(PathLocaliser.getSearchName(path.getPath(), path.getSuffix(), testLocale));
+      String searchName = PathLocaliser.getSearchName(path.getPath(), path.getSuffix(), testLocale);
+      if (ttl != null && isKnownMissing(searchName)) {
+        continue;
+      }
+
+      long version = generation.get();
+      String source = handleGet(searchName);
       if (source != null) {
         return source;
       }
+      if (ttl != null) {
+        recordMissing(searchName, ttl, version);
+      }
     }
 
     // not found
@@ -42,4 +107,82 @@ public abstract class IndividualSourceProvider implements SourceProvider {
   protected abstract String handleGet(String path) throws StencilStorageException;
 
 
+  /**
+   * Forget that a container was not found, so that it will be looked for again. This must be called when a container is created, unless the negative cache is
+   * disabled or has a suitably short time-to-live.
+   *
+   * @param path the localised path of the container, or null to forget every missing container
+   */
+  public void invalidateNegativeCache(@Nullable String path) {
+    generation.incrementAndGet();
+    if (path == null) {
+      missing.clear();
+    } else {
+      missing.remove(path);
+    }
+  }
+
+
+  private boolean isKnownMissing(String searchName) {
+    Long expires = missing.get(searchName);
+    if (expires == null) {
+      return false;
+    }
+    if (expires == NEVER_EXPIRES || expires - System.nanoTime() > 0) {
+      return true;
+    }
+    missing.remove(searchName, expires);
+    return false;
+  }
+
+
+  private void recordMissing(String searchName, Duration ttl, long version) {
+    long expires;
+    if (ttl.equals(FOREVER)) {
+      expires = NEVER_EXPIRES;
+    } else {
+      long nanos;
+      try {
+        nanos = ttl.toNanos();
+      } catch (ArithmeticException e) {
+        nanos = Long.MAX_VALUE / 2;
+      }
+      expires = System.nanoTime() + Math.min(nanos, Long.MAX_VALUE / 2);
+    }
+
+    if (missing.size() >= MAX_MISSING) {
+      // Probably a flood of unusual locales. Start again rather than grow without limit.
+      missing.clear();
+    }
+    missing.put(searchName, expires);
+    if (generation.get() != version) {
+      // The container may have been created since it was looked for.
+      missing.remove(searchName, expires);
+    }
+  }
+
+
+  /**
+   * Forget every container which was not found.
+   */
+  @Override
+  public void refresh() {
+    invalidateNegativeCache(null);
+  }
+
+
+  /**
+   * Set how long a container which was not found is remembered for. Whilst it is remembered, it is not looked for again. A container which is created must
+   * be passed to {@link #invalidateNegativeCache(String)} if it should be found before the time-to-live expires.
+   *
+   * @param negativeCacheTtl the time-to-live, {@link #FOREVER} to remember until invalidated, or null or zero to disable the negative cache
+   */
+  public void setNegativeCacheTtl(@Nullable Duration negativeCacheTtl) {
+    if (negativeCacheTtl != null && (negativeCacheTtl.isNegative() || negativeCacheTtl.isZero())) {
+      negativeCacheTtl = null;
+    }
+    this.negativeCacheTtl = negativeCacheTtl;
+    invalidateNegativeCache(null);
+  }
+
 }
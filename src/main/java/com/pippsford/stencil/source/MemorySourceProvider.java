@@ -65,6 +65,7 @@ public class MemorySourceProvider extends IndividualSourceProvider {
     }
     String key = PathLocaliser.getSearchName(sourceFile.getPath(), sourceFile.getSuffix(), locale);
     sourceFiles.put(key, sourceText);
+    invalidateNegativeCache(key);
   }
 
 
@@ -2,7 +2,9 @@ package com.pippsford.stencil.source;
 
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.ResourceBundle.Control;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A standard mechanism for localising a stencil's path. This uses the same algorithm as Java ResourceBundles do.
@@ -11,11 +13,17 @@ import java.util.ResourceBundle.Control;
  */
 public class PathLocaliser {
 
+  /** Memoised candidate locales for each target locale. */
+  private static final Map<Locale, List<Locale>> CANDIDATES = new ConcurrentHashMap<>();
+
   /** We need an instance of Control to provide the locale search order. */
   static final Control CONTROL = new Control() {
     // do nothing - this appears to be the only way to get an instance of Control.
   };
 
+  /** The maximum number of target locales to memoise candidates for. */
+  private static final int MAX_CANDIDATES = 1_000;
+
 
   /**
    * Get the priority ordered locales that need to be searched to match a target locale. The first locale in the list will be the target. The last locale in
@@ -26,7 +34,16 @@ public class PathLocaliser {
    * @return the ordered search list.
    */
   static List<Locale> getCandidateLocales(Locale target) {
-    return CONTROL.getCandidateLocales("", target);
+    List<Locale> candidates = CANDIDATES.get(target);
+    if (candidates == null) {
+      candidates = List.copyOf(CONTROL.getCandidateLocales("", target));
+      if (CANDIDATES.size() >= MAX_CANDIDATES) {
+        // Probably a flood of unusual locales. Start again rather than grow without limit.
+        CANDIDATES.clear();
+      }
+      CANDIDATES.put(target, candidates);
+    }
+    return candidates;
   }
 
 
@@ -126,6 +126,24 @@ public class SourceStencilId extends StencilId {
   }
 
 
+  /**
+   * Is the specified localised path one of the places where this stencil's source is searched for? A source provider that follows the standard localisation
+   * rules looks for the source at each candidate path in turn, so a change at any of them may change this stencil.
+   *
+   * @param path the localised path, such as "/folder/name_fr.txt"
+   *
+   * @return true if the path is searched for this stencil
+   */
+  public boolean isCandidatePath(String path) {
+    for (Locale candidate : PathLocaliser.getCandidateLocales(getLocale())) {
+      if (PathLocaliser.getSearchName(source.getPath(), source.getSuffix(), candidate).equals(path)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+
   @Override
   public boolean isMessage() {
     return false;
@@ -0,0 +1,321 @@
+package com.pippsford.stencil.value;
+
+import java.lang.reflect.Array;
+import java.util.List;
+import java.util.Map;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+/**
+ * A dot-separated path to a value which has been resolved ahead of time. The first element of the path is looked up through the value provider chain as
+ * normal. Subsequent elements are looked up directly on the value found so far, without creating intermediate value providers. Each element remembers how
+ * to access the classes of value it has seen, so that repeated lookups on the same kind of data do not repeat the class analysis.
+ *
+ * <p>If an element cannot be found locally on its value, or the value is of a kind that requires a value provider, the lookup falls back to the general
+ * {@link ValueAccessor#get(ValueProvider, String[])} so that inherited values are resolved exactly as before.</p>
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public final class CompiledPath {
+
+  /** How a particular class of value is accessed. */
+  private enum Kind {
+    /** Access via a bean or record's property accessors. */
+    ACCESSORS,
+
+    /** Access an array. */
+    ARRAY,
+
+    /** Access an indexable. */
+    INDEXABLE,
+
+    /** Access a list. */
+    LIST,
+
+    /** Access a map. */
+    MAP,
+
+    /** Access requires the general algorithm. */
+    GENERAL,
+
+    /** The value is itself a value provider. */
+    PROVIDER
+  }
+
+
+
+  /** A cached resolution for a class of value. */
+  private static final class Entry {
+
+    /** The accessors, if the kind is ACCESSORS. */
+    final PropertyAccessors accessors;
+
+    /** The kind of access. */
+    final Kind kind;
+
+    /** The next entry in the cache. */
+    final Entry next;
+
+    /** The class of value. */
+    final Class<?> type;
+
+
+    Entry(Class<?> type, Kind kind, PropertyAccessors accessors, Entry next) {
+      this.type = type;
+      this.kind = kind;
+      this.accessors = accessors;
+      this.next = next;
+    }
+
+  }
+
+
+
+  /** A single element of the path after the first. */
+  private static final class Step {
+
+    /** The element as an index, or -1 if it is not a valid index. */
+    final int index;
+
+    /** The element's name. */
+    final String name;
+
+    /**
+     * Cache of resolutions for the classes seen by this step. Entries are immutable, so publishing a new cache head via a data race is safe. A lost update
+     * merely causes a resolution to be repeated.
+     */
+    Entry cache;
+
+    /** Number of entries in the cache. */
+    int cacheSize;
+
+
+    Step(String name) {
+      this.name = name;
+      int i;
+      try {
+        i = Integer.parseInt(name);
+      } catch (NumberFormatException e) {
+        i = -1;
+      }
+      index = i;
+    }
+
+
+    Entry resolve(Class<?> type) {
+      Entry head = cache;
+      for (Entry e = head; e != null; e = e.next) {
+        if (e.type == type) {
+          return e;
+        }
+      }
+
+      if (cacheSize >= MAX_POLYMORPHISM) {
+        // Megamorphic: do not remember any more classes.
+        return analyse(type, null);
+      }
+
+      Entry entry = analyse(type, head);
+      cache = entry;
+      cacheSize++;
+      return entry;
+    }
+
+  }
+
+
+
+  /** Maximum number of classes remembered by each step. Beyond this, the step is megamorphic and classes are analysed on every lookup. */
+  private static final int MAX_POLYMORPHISM = 4;
+
+
+  private static Entry analyse(Class<?> type, Entry next) {
+    // The order of these tests must match ValueAccessor.makeProvider
+    if (ValueProvider.class.isAssignableFrom(type)) {
+      return new Entry(type, Kind.PROVIDER, null, next);
+    }
+    if (Record.class.isAssignableFrom(type)) {
+      return new Entry(type, Kind.ACCESSORS, PropertyAccessors.forRecord(type.asSubclass(Record.class)), next);
+    }
+    if (Map.class.isAssignableFrom(type)) {
+      return new Entry(type, Kind.MAP, null, next);
+    }
+    if (Indexable.class.isAssignableFrom(type)) {
+      return new Entry(type, Kind.INDEXABLE, null, next);
+    }
+    if (List.class.isAssignableFrom(type)) {
+      return new Entry(type, Kind.LIST, null, next);
+    }
+    if (type.isArray()) {
+      return new Entry(type, Kind.ARRAY, null, next);
+    }
+    if (Iterable.class.isAssignableFrom(type)) {
+      // Other iterables have to be copied to be indexed.
+      return new Entry(type, Kind.GENERAL, null, next);
+    }
+    return new Entry(type, Kind.ACCESSORS, PropertyAccessors.forBean(type), next);
+  }
+
+
+  private static OptionalValue indexed(Step step, int size, Object source, Kind kind) {
+    int index = step.index;
+    if (index >= 0) {
+      if (index >= size) {
+        return OptionalValue.absent();
+      }
+      switch (kind) {
+        case ARRAY:
+          return OptionalValue.of(Array.get(source, index));
+        case INDEXABLE:
+          return OptionalValue.of(((Indexable<?>) source).apply(index));
+        default:
+          return OptionalValue.of(((List<?>) source).get(index));
+      }
+    }
+    if (step.name.equals(IndexedValueProvider.P_SIZE)) {
+      return OptionalValue.of(size);
+    }
+    if (step.name.equals(IndexedValueProvider.P_IS_EMPTY)) {
+      return OptionalValue.of(size == 0);
+    }
+    return OptionalValue.absent();
+  }
+
+
+  /**
+   * Compile a dot-separated path.
+   *
+   * @param path the path
+   *
+   * @return the compiled path
+   */
+  public static CompiledPath of(@Nonnull String path) {
+    return new CompiledPath(path);
+  }
+
+
+  /** The first element of the path. */
+  private final String first;
+
+  /** The path's elements. */
+  private final String[] names;
+
+  /** The original path. */
+  private final String path;
+
+  /** The elements after the first. */
+  private final Step[] steps;
+
+
+  private CompiledPath(String path) {
+    this.path = path;
+    names = ValueAccessor.toKey(path);
+    first = names.length > 0 ? names[0] : path;
+    steps = new Step[Math.max(0, names.length - 1)];
+    for (int i = 0; i < steps.length; i++) {
+      steps[i] = new Step(names[i + 1]);
+    }
+  }
+
+
+  /**
+   * Get the value at this path, including inherited values.
+   *
+   * @param provider the value provider to start from
+   *
+   * @return the value
+   */
+  @Nonnull
+  public OptionalValue get(@Nonnull ValueProvider provider) {
+    return get(provider, null);
+  }
+
+
+  /**
+   * Get the value at this path, including inherited values, resolving any lazy values met along the path. The final value is not resolved.
+   *
+   * @param provider   the value provider to start from
+   * @param lazyValues the render's lazy values, or null if lazy values are not resolved
+   *
+   * @return the value
+   */
+  @Nonnull
+  OptionalValue get(@Nonnull ValueProvider provider, @Nullable LazyValues lazyValues) {
+    OptionalValue value = provider.get(first);
+    for (Step step : steps) {
+      if (value.isMissing()) {
+        return value;
+      }
+      Object source = value.value();
+      if (lazyValues != null) {
+        source = lazyValues.resolve(source);
+      }
+      if (source == null) {
+        // A null value defers to its parent, which requires the inheritance chain.
+        return ValueAccessor.get(provider, names, lazyValues);
+      }
+
+      Entry entry = step.resolve(source.getClass());
+      switch (entry.kind) {
+        case ACCESSORS:
+          value = entry.accessors.get(source, step.name);
+          break;
+        case ARRAY:
+          value = indexed(step, Array.getLength(source), source, Kind.ARRAY);
+          break;
+        case INDEXABLE:
+          value = indexed(step, ((Indexable<?>) source).size(), source, Kind.INDEXABLE);
+          break;
+        case LIST:
+          value = indexed(step, ((List<?>) source).size(), source, Kind.LIST);
+          break;
+        case MAP:
+          value = MapValueProvider.getLocal((Map<?, ?>) source, step.name);
+          break;
+        case PROVIDER:
+          // A value provider ignores the inheritance chain, so the result is final whether present or not.
+          value = ((ValueProvider) source).get(step.name);
+          if (value.isMissing()) {
+            return value;
+          }
+          break;
+        default:
+          return ValueAccessor.get(provider, names, lazyValues);
+      }
+
+      if (value.isMissing()) {
+        // Not found locally, so the value may be inherited.
+        return ValueAccessor.get(provider, names, lazyValues);
+      }
+    }
+    return value;
+  }
+
+
+  /**
+   * Get the first element of this path, which names the value the path starts from.
+   *
+   * @return the first element
+   */
+  public String getFirst() {
+    return first;
+  }
+
+
+  /**
+   * Get the elements of this path.
+   *
+   * @return the elements
+   */
+  public String[] getNames() {
+    return names.clone();
+  }
+
+
+  @Override
+  public String toString() {
+    return path;
+  }
+
+}
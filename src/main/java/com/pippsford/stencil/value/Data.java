@@ -1,11 +1,13 @@
 package com.pippsford.stencil.value;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 
+import com.pippsford.stencil.escape.Escape;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import jakarta.annotation.Nonnull;
 import jakarta.json.JsonNumber;
@@ -24,38 +26,6 @@ public class Data {
   private static final Map<ValueType, Function<JsonValue, Object>> JSON_ACCESSORS;
 
 
-  /**
-   * Convert various raw data to more convenient forms.
-   *
-   * @param optRaw the raw datum
-   *
-   * @return the simplified form
-   */
-  private static OptionalValue convertRaw(OptionalValue optRaw) {
-    if (optRaw.isMissing()) {
-      return optRaw;
-    }
-
-    Object raw = optRaw.value();
-
-    // Return simple values quickly.
-    if (raw == null || raw instanceof String || raw instanceof Number) {
-      return optRaw;
-    }
-
-    if (raw instanceof JsonValue value) {
-      return OptionalValue.of(JSON_ACCESSORS.get(value.getValueType()).apply(value));
-    }
-
-    if (raw instanceof AtomicBoolean ab) {
-      return OptionalValue.of(ab.get());
-    }
-
-    // No conversion
-    return optRaw;
-  }
-
-
   /**
    * Create a Data instance wrapping a particular input value.
    *
@@ -84,6 +54,12 @@ public class Data {
     JSON_ACCESSORS = Collections.unmodifiableMap(map);
   }
 
+  /** The escaped values memoised by the render this belongs to. */
+  private final EscapedValues escapedValues;
+
+  /** The lazy values of the render this belongs to. */
+  private final LazyValues lazyValues;
+
   private MutableValueProvider mutable;
 
   private ValueProvider provider;
@@ -96,7 +72,35 @@ public class Data {
    */
   @SuppressFBWarnings("EI_EXPOSE_REP")
   public Data(ValueProvider provider) {
+    this(provider, new LazyValues(), new EscapedValues());
+  }
+
+
+  /**
+   * New instance for a nested scope of the same render as another instance. Lazy values are evaluated at most once for the whole render, and escaped values
+   * are memoised for the whole render.
+   *
+   * @param parent   the data of the enclosing scope
+   * @param provider the value provider which backs this instance
+   */
+  public Data(Data parent, ValueProvider provider) {
+    this(provider, parent.lazyValues, parent.escapedValues);
+  }
+
+
+  /**
+   * New mutable empty instance.
+   */
+  public Data() {
+    this(ValueProvider.NULL_VALUE_PROVIDER);
+  }
+
+
+  @SuppressFBWarnings("EI_EXPOSE_REP")
+  private Data(ValueProvider provider, LazyValues lazyValues, EscapedValues escapedValues) {
     this.provider = provider;
+    this.lazyValues = lazyValues;
+    this.escapedValues = escapedValues;
     if (provider instanceof MutableValueProvider) {
       mutable = (MutableValueProvider) provider;
     } else {
@@ -106,10 +110,70 @@ public class Data {
 
 
   /**
-   * New mutable empty instance.
+   * Convert various raw data to more convenient forms.
+   *
+   * @param optRaw the raw datum
+   *
+   * @return the simplified form
    */
-  public Data() {
-    this(ValueProvider.NULL_VALUE_PROVIDER);
+  private OptionalValue convertRaw(OptionalValue optRaw) {
+    if (optRaw.isMissing()) {
+      return optRaw;
+    }
+
+    Object raw = optRaw.value();
+
+    // Return simple values quickly.
+    if (raw == null || raw instanceof String || raw instanceof Number) {
+      return optRaw;
+    }
+
+    if (LazyValues.isLazy(raw)) {
+      raw = lazyValues.resolve(raw);
+      optRaw = OptionalValue.of(raw);
+      if (raw == null) {
+        return optRaw;
+      }
+    }
+
+    if (raw instanceof JsonValue value) {
+      return OptionalValue.of(JSON_ACCESSORS.get(value.getValueType()).apply(value));
+    }
+
+    if (raw instanceof AtomicBoolean ab) {
+      return OptionalValue.of(ab.get());
+    }
+
+    // No conversion
+    return optRaw;
+  }
+
+
+  /**
+   * Escape a value and append it to an output. If memoising is enabled for the render, a short value which has already been escaped in the render is not
+   * escaped again. A null value appends nothing.
+   *
+   * @param escape the escape to apply
+   * @param value  the value
+   * @param output the output
+   *
+   * @throws IOException if the output fails
+   */
+  public void escape(Escape escape, String value, Appendable output) throws IOException {
+    escapedValues.escape(escape, value, output);
+  }
+
+
+  /**
+   * Get a value in this data collection. The value may be transformed into some kind of standard form.
+   *
+   * @param path the value's compiled path
+   *
+   * @return the value
+   */
+  @Nonnull
+  public OptionalValue get(@Nonnull CompiledPath path) {
+    return convertRaw(getRaw(path));
   }
 
 
@@ -149,6 +213,19 @@ public class Data {
   }
 
 
+  /**
+   * Get a value in this data collection.
+   *
+   * @param path the value's compiled path
+   *
+   * @return the value
+   */
+  @Nonnull
+  public OptionalValue getRaw(@Nonnull CompiledPath path) {
+    return path.get(provider, lazyValues);
+  }
+
+
   /**
    * Get a value in this data collection.
    *
@@ -158,7 +235,7 @@ public class Data {
    */
   @Nonnull
   public OptionalValue getRaw(@Nonnull String[] key) {
-    return ValueAccessor.get(provider, key);
+    return ValueAccessor.get(provider, key, lazyValues);
   }
 
 
@@ -171,7 +248,7 @@ public class Data {
    */
   @Nonnull
   public OptionalValue getRaw(@Nonnull String name) {
-    return get(ValueAccessor.toKey(name));
+    return getRaw(ValueAccessor.toKey(name));
   }
 
 
@@ -227,6 +304,20 @@ public class Data {
   }
 
 
+  /**
+   * Set the maximum number of escaped values memoised by the render this belongs to. Only values of up to 256 characters are memoised. Setting zero disables
+   * memoising, which is the default.
+   *
+   * @param maxEntries the maximum number of memoised values
+   */
+  public void setEscapeMemoSize(int maxEntries) {
+    if (maxEntries < 0) {
+      throw new IllegalArgumentException("Maximum entries must not be negative, not " + maxEntries);
+    }
+    escapedValues.setMaxEntries(maxEntries);
+  }
+
+
   /**
    * Convert this instance to JSON. Requires a JSON provider on the classpath.
    *
@@ -0,0 +1,92 @@
+package com.pippsford.stencil.value;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.pippsford.stencil.escape.Escape;
+
+/**
+ * The escaped values memoised during a single render. When the same value, such as a product name or a user's display name, is output many times in a
+ * render, it only needs to be escaped once. Memoising is disabled unless a maximum number of entries is set.
+ *
+ * <p>Only short values are memoised. Once the maximum number of entries is reached, further values are escaped without being memoised, so the values output
+ * first in a render are kept. Values are keyed by the escape and the content of the input, so the escapes used must always produce the same output for the
+ * same input, as all the standard escapes do.</p>
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+final class EscapedValues {
+
+  /** The longest input which will be memoised. */
+  static final int MAX_LENGTH = 256;
+
+
+
+  /**
+   * Memo key.
+   *
+   * @param escape the escape
+   * @param input  the unescaped input
+   */
+  private record Key(Escape escape, String input) {
+
+  }
+
+
+
+  /** The memoised values. */
+  private final Map<Key, String> escaped = new ConcurrentHashMap<>();
+
+  /** The maximum number of memoised values. Zero disables memoising. */
+  private volatile int maxEntries = 0;
+
+
+  /**
+   * Escape a value and append it to an output, using the memo if it is enabled and the value is short enough. A null input appends nothing.
+   *
+   * @param escape the escape to apply
+   * @param input  the input
+   * @param output the output
+   *
+   * @throws IOException if the output fails
+   */
+  void escape(Escape escape, String input, Appendable output) throws IOException {
+    int limit = maxEntries;
+    if (limit == 0 || input == null || input.length() > MAX_LENGTH) {
+      escape.escape(input, output);
+      return;
+    }
+
+    Key key = new Key(escape, input);
+    String value = escaped.get(key);
+    if (value == null) {
+      value = escape.escape(input);
+      if (escaped.size() < limit) {
+        escaped.put(key, value);
+      }
+    }
+    output.append(value);
+  }
+
+
+  /**
+   * Set the maximum number of memoised values. Setting zero disables memoising.
+   *
+   * @param maxEntries the maximum number of memoised values
+   */
+  void setMaxEntries(int maxEntries) {
+    this.maxEntries = maxEntries;
+  }
+
+
+  /**
+   * Get the number of values currently memoised.
+   *
+   * @return the number of values
+   */
+  int size() {
+    return escaped.size();
+  }
+
+}
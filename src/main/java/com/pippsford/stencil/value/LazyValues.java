@@ -0,0 +1,97 @@
+package com.pippsford.stencil.value;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * The lazy values evaluated during a single render. A {@link Supplier} is evaluated, and a {@link Future} is waited for, when its value is first needed. Each
+ * lazy value is evaluated at most once per render, no matter how often, or from how many threads, it is accessed. A lazy value is evaluated by the first
+ * thread to need it, and other threads which need the same value wait for that thread. Evaluation does not stop other lazy values being resolved.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+final class LazyValues {
+
+  private static Object evaluate(Object lazy) {
+    if (lazy instanceof Supplier<?> supplier) {
+      return supplier.get();
+    }
+
+    try {
+      return ((Future<?>) lazy).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted whilst waiting for a value", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Computation of a value failed", e.getCause());
+    }
+  }
+
+
+  /**
+   * Is a value lazy? Suppliers and futures are lazy.
+   *
+   * @param value the value
+   *
+   * @return true if the value is lazy
+   */
+  static boolean isLazy(Object value) {
+    return value instanceof Supplier<?> || value instanceof Future<?>;
+  }
+
+
+  /** The results of the lazy values which have been, or are being, evaluated. */
+  private final Map<Object, CompletableFuture<Object>> results = new ConcurrentHashMap<>();
+
+
+  /**
+   * Resolve a value. If the value is lazy, it is evaluated if it has not been already. If the result is itself lazy, that is resolved in turn.
+   *
+   * @param value the value
+   *
+   * @return the resolved value, which is never lazy
+   */
+  Object resolve(Object value) {
+    while (isLazy(value)) {
+      value = resolveLazy(value);
+    }
+    return value;
+  }
+
+
+  private Object resolveLazy(Object lazy) {
+    CompletableFuture<Object> result = results.get(lazy);
+    if (result == null) {
+      CompletableFuture<Object> mine = new CompletableFuture<>();
+      result = results.putIfAbsent(lazy, mine);
+      if (result == null) {
+        // Evaluated outside the map, as it may take a long time
+        result = mine;
+        try {
+          mine.complete(evaluate(lazy));
+        } catch (RuntimeException | Error e) {
+          mine.completeExceptionally(e);
+        }
+      }
+    }
+
+    try {
+      return result.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      if (cause instanceof Error error) {
+        throw error;
+      }
+      throw e;
+    }
+  }
+
+}
@@ -12,15 +12,17 @@ import jakarta.annotation.Nonnull;
  */
 public class ListEntryValueProvider implements ValueProvider {
 
-  private final Entry<?, ?> entry;
-
-  private final int index;
-
   private final ValueProvider parent;
 
   private final int size;
 
-  private final Object value;
+  private Entry<?, ?> entry;
+
+  private int index;
+
+  private boolean isLast;
+
+  private Object value;
 
 
   /**
@@ -28,15 +30,13 @@ public class ListEntryValueProvider implements ValueProvider {
    *
    * @param parent parent value for inheritance
    * @param index  the index of this entry in the list
-   * @param size   the number of entries in the list
+   * @param size   the number of entries in the list, or -1 if that is not known in advance
    * @param value  the value at this point in the list
    */
   public ListEntryValueProvider(ValueProvider parent, int index, int size, Object value) {
     this.parent = parent;
-    this.index = index;
     this.size = size;
-    this.value = value;
-    this.entry = value instanceof Entry<?, ?> ? (Entry<?, ?>) value : null;
+    setEntry(index, value, index == size - 1);
   }
 
 
@@ -53,13 +53,42 @@ public class ListEntryValueProvider implements ValueProvider {
     return switch (name) {
       case "value" -> OptionalValue.of(entry != null ? entry.getValue() : value);
       case "index" -> OptionalValue.of(index);
-      case "size" -> OptionalValue.of(size);
+      case "size" -> OptionalValue.of(getSize());
       case "key" -> entry != null ? OptionalValue.of(entry.getKey()) : OptionalValue.absent();
       default -> OptionalValue.absent();
     };
   }
 
 
+  /**
+   * Get the size of the list, if known. When the size was not known in advance, it becomes known at the last entry, so templates can always detect the
+   * last entry by comparing the index with the size.
+   *
+   * @return the size, or null if not known
+   */
+  private Integer getSize() {
+    if (size >= 0) {
+      return size;
+    }
+    return isLast ? index + 1 : null;
+  }
+
+
+  /**
+   * Move this provider to a different entry of the same list. This allows a single provider to be re-used for every row of a loop.
+   *
+   * @param index  the index of the new entry in the list
+   * @param value  the value at that point in the list
+   * @param isLast true if this is the last entry in the list
+   */
+  public final void setEntry(int index, Object value, boolean isLast) {
+    this.index = index;
+    this.value = value;
+    this.isLast = isLast;
+    this.entry = value instanceof Entry<?, ?> ? (Entry<?, ?>) value : null;
+  }
+
+
   @Override
   public void visit(ValueVisitor visitor) {
     if (entry != null) {
@@ -70,7 +99,7 @@ public class ListEntryValueProvider implements ValueProvider {
     }
 
     visitor.visit("index", index, false);
-    visitor.visit("size", size, false);
+    visitor.visit("size", getSize(), false);
   }
 
 }
@@ -15,6 +15,30 @@ import jakarta.annotation.Nonnull;
  */
 public class MapValueProvider implements ValueProvider {
 
+  /**
+   * Get a value from a map, as if the map was wrapped in a provider. If the map does not contain "size" or "isEmpty", those properties are derived.
+   *
+   * @param map  the map
+   * @param name the value's name
+   *
+   * @return the value
+   */
+  @Nonnull
+  static OptionalValue getLocal(@Nonnull Map<?, ?> map, @Nonnull String name) {
+    Object r = map.get(name);
+    if (r == null && !map.containsKey(name)) {
+      if (name.equals(P_IS_EMPTY)) {
+        r = map.isEmpty();
+      } else if (name.equals(P_SIZE)) {
+        r = map.size();
+      } else {
+        return OptionalValue.absent();
+      }
+    }
+    return OptionalValue.of(r);
+  }
+
+
   private final Map<?, ?> map;
 
   private final ValueProvider parent;
@@ -43,17 +67,7 @@ public class MapValueProvider implements ValueProvider {
   @Override
   @Nonnull
   public OptionalValue getLocal(@Nonnull String name) {
-    Object r = map.get(name);
-    if (r == null && !map.containsKey(name)) {
-      if (name.equals(P_IS_EMPTY)) {
-        r = map.isEmpty();
-      } else if (name.equals(P_SIZE)) {
-        r = map.size();
-      } else {
-        return OptionalValue.absent();
-      }
-    }
-    return OptionalValue.of(r);
+    return getLocal(map, name);
   }
 
 
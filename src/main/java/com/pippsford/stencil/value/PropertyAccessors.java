@@ -0,0 +1,201 @@
+package com.pippsford.stencil.value;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.pippsford.common.UncheckedCheckedException;
+import jakarta.annotation.Nonnull;
+
+/**
+ * The readable properties of a Java bean or record class. Properties are resolved once per class into method handles and shared by every value provider
+ * for that class.
+ *
+ * @author Simon Greatrix on 18/10/2026.
+ */
+public final class PropertyAccessors {
+
+  /** Accessors for classes treated as Java beans. */
+  private static final ClassValue<PropertyAccessors> BEANS = new ClassValue<>() {
+    @Override
+    protected PropertyAccessors computeValue(Class<?> type) {
+      return createForBean(type);
+    }
+  };
+
+  /** The generic type of every getter. */
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+  /** Accessors for record classes. */
+  private static final ClassValue<PropertyAccessors> RECORDS = new ClassValue<>() {
+    @Override
+    protected PropertyAccessors computeValue(Class<?> type) {
+      return createForRecord(type);
+    }
+  };
+
+
+  private static void addGetter(Map<String, MethodHandle> getters, String name, Method method) {
+    MethodHandle handle;
+    try {
+      handle = MethodHandles.lookup().unreflect(method);
+    } catch (IllegalAccessException e) {
+      // The property exists, but we cannot read it.
+      return;
+    }
+    getters.put(name, handle.asType(GETTER_TYPE));
+  }
+
+
+  private static PropertyAccessors createForBean(Class<?> type) {
+    BeanInfo beanInfo;
+    try {
+      beanInfo = Introspector.getBeanInfo(type);
+    } catch (IntrospectionException e) {
+      // I do not know of any way in which this code is actually reachable
+      throw new UndeclaredThrowableException(e);
+    }
+    HashMap<String, MethodHandle> getters = new HashMap<>();
+    for (PropertyDescriptor descriptor : beanInfo.getPropertyDescriptors()) {
+      Method method = descriptor.getReadMethod();
+      if (method != null) {
+        addGetter(getters, descriptor.getName(), method);
+      }
+    }
+
+    // skip "class"
+    return new PropertyAccessors(getters, Set.of("class"));
+  }
+
+
+  private static PropertyAccessors createForRecord(Class<?> type) {
+    HashMap<String, MethodHandle> getters = new HashMap<>();
+    for (RecordComponent component : type.getRecordComponents()) {
+      addGetter(getters, component.getName(), component.getAccessor());
+    }
+
+    // Records do not follow the bean convention, but the "class" property is still provided for consistency. It is not visited.
+    try {
+      addGetter(getters, "class", type.getMethod("getClass"));
+    } catch (NoSuchMethodException e) {
+      throw new InternalError("The getClass() method is missing from " + type);
+    }
+    return new PropertyAccessors(getters, Set.of("class"));
+  }
+
+
+  /**
+   * Get the accessors for a class that will be treated as a Java bean.
+   *
+   * @param type the class
+   *
+   * @return the accessors
+   */
+  public static PropertyAccessors forBean(Class<?> type) {
+    return BEANS.get(type);
+  }
+
+
+  /**
+   * Get the accessors for a record class.
+   *
+   * @param type the record class
+   *
+   * @return the accessors
+   */
+  public static PropertyAccessors forRecord(Class<? extends Record> type) {
+    return RECORDS.get(type);
+  }
+
+
+  /** Getters for every accessible property. */
+  private final Map<String, MethodHandle> getters;
+
+  /** Properties which are not included when the value is visited. */
+  private final Set<String> hidden;
+
+
+  private PropertyAccessors(Map<String, MethodHandle> getters, Set<String> hidden) {
+    this.getters = Collections.unmodifiableMap(getters);
+    this.hidden = hidden;
+  }
+
+
+  /**
+   * Get a property's value from a bean.
+   *
+   * @param bean the bean, which must be an instance of the class these accessors were created for
+   * @param name the property's name
+   *
+   * @return the value, or absent if there is no such readable property
+   */
+  @Nonnull
+  public OptionalValue get(Object bean, String name) {
+    MethodHandle getter = getters.get(name);
+    if (getter == null) {
+      return OptionalValue.absent();
+    }
+    return OptionalValue.of(invoke(getter, bean));
+  }
+
+
+  /**
+   * Get the names of all the readable properties.
+   *
+   * @return the names
+   */
+  public Set<String> getNames() {
+    return getters.keySet();
+  }
+
+
+  private Object invoke(MethodHandle getter, Object bean) {
+    try {
+      return getter.invokeExact(bean);
+    } catch (Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new UncheckedCheckedException(new InvocationTargetException(t));
+    }
+  }
+
+
+  /**
+   * Visit all the visible properties of a bean.
+   *
+   * @param bean    the bean, which must be an instance of the class these accessors were created for
+   * @param visitor the visitor
+   */
+  public void visit(Object bean, ValueVisitor visitor) {
+    for (var e : getters.entrySet()) {
+      String key = e.getKey();
+      if (hidden.contains(key)) {
+        continue;
+      }
+
+      Object value;
+      try {
+        value = e.getValue().invokeExact(bean);
+      } catch (Error err) {
+        throw err;
+      } catch (Throwable t) {
+        visitor.visit(key, "<<< UNAVAILABLE : INTERNAL ERROR >>>", false);
+        continue;
+      }
+      visitor.visit(key, value, true);
+    }
+  }
+
+}
@@ -1,7 +1,5 @@
 package com.pippsford.stencil.value;
 
-import java.lang.reflect.RecordComponent;
-
 /**
  * A value provider that allows access to a Java record.
  *
@@ -9,8 +7,6 @@ import java.lang.reflect.RecordComponent;
  */
 public class RecordValueProvider extends ReflectedValueProvider {
 
-  private final boolean doesNotHaveClass;
-
   /**
    * New instance.
    *
@@ -18,26 +14,7 @@ public class RecordValueProvider extends ReflectedValueProvider {
    * @param bean   the bean to provide values from
    */
   public RecordValueProvider(ValueProvider parent, Record bean) {
-    super(parent, bean);
-
-    RecordComponent[] components = bean.getClass().getRecordComponents();
-    for (RecordComponent component : components) {
-      properties.put(component.getName(), component.getAccessor());
-    }
-    doesNotHaveClass = !properties.containsKey("class");
-    if (doesNotHaveClass) {
-      try {
-        properties.put("class", bean.getClass().getMethod("getClass"));
-      } catch (NoSuchMethodException e) {
-        throw new InternalError("The getClass() method is missing from " + bean.getClass());
-      }
-    }
-  }
-
-
-  @Override
-  protected boolean ignore(String name) {
-    return doesNotHaveClass && "class".equals(name);
+    super(parent, bean, PropertyAccessors.forRecord(bean.getClass()));
   }
 
 }
@@ -1,12 +1,5 @@
 package com.pippsford.stencil.value;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.function.BiConsumer;
-
-import com.pippsford.common.UncheckedCheckedException;
 import jakarta.annotation.Nonnull;
 
 /**
@@ -16,25 +9,27 @@ import jakarta.annotation.Nonnull;
  */
 public class ReflectedValueProvider implements ValueProvider {
 
+  /** The accessors for the bean's properties. */
+  protected final PropertyAccessors accessors;
+
   /** The bean values are taken from. */
   protected final Object bean;
 
   /** The parent value provider. */
   protected final ValueProvider parent;
 
-  /** Methods that can be used to retrieve properties. */
-  protected final Map<String, Method> properties = new HashMap<>();
-
 
   /**
    * New instance.
    *
-   * @param parent the parent value provider
-   * @param bean   the bean to provide values from
+   * @param parent    the parent value provider
+   * @param bean      the bean to provide values from
+   * @param accessors the accessors for the bean's class
    */
-  public ReflectedValueProvider(ValueProvider parent, Object bean) {
+  public ReflectedValueProvider(ValueProvider parent, Object bean, PropertyAccessors accessors) {
     this.parent = parent;
     this.bean = bean;
+    this.accessors = accessors;
   }
 
 
@@ -48,47 +43,13 @@ public class ReflectedValueProvider implements ValueProvider {
   @Override
   @Nonnull
   public OptionalValue getLocal(@Nonnull String name) {
-    Method method = properties.get(name);
-    try {
-      if (method != null && method.canAccess(bean)) {
-        return OptionalValue.of(method.invoke(bean));
-      }
-      return OptionalValue.absent();
-    } catch (IllegalAccessException | InvocationTargetException e) {
-      throw new UncheckedCheckedException(e);
-    }
-  }
-
-
-  /**
-   * Ignore properties when visiting this provider.
-   *
-   * @param name the name that could be ignored
-   *
-   * @return true if not to visit
-   */
-  protected boolean ignore(String name) {
-    return false;
+    return accessors.get(bean, name);
   }
 
 
   @Override
   public void visit(ValueVisitor visitor) {
-    for (var e : properties.entrySet()) {
-      String key = e.getKey();
-      if (ignore(key)) {
-        continue;
-      }
-
-      Method method = e.getValue();
-      if (method.canAccess(bean)) {
-        try {
-          visitor.visit(key, method.invoke(bean), true);
-        } catch (IllegalAccessException | InvocationTargetException ex) {
-          visitor.visit(key, "<<< UNAVAILABLE : INTERNAL ERROR >>>", false);
-        }
-      }
-    }
+    accessors.visit(bean, visitor);
   }
 
 }
@@ -24,19 +24,38 @@ public class ValueAccessor {
    */
   @Nonnull
   public static OptionalValue get(@Nonnull ValueProvider provider, @Nonnull String[] names) {
-    return get(provider, names, 0);
+    return get(provider, names, 0, null);
   }
 
 
+  /**
+   * Get a value including inherited ones, resolving any lazy values met along the path. The final value is not resolved.
+   *
+   * @param provider   the value provider
+   * @param names      the key array
+   * @param lazyValues the render's lazy values, or null if lazy values are not resolved
+   *
+   * @return the value
+   */
   @Nonnull
-  private static OptionalValue get(ValueProvider provider, String[] names, int index) {
+  static OptionalValue get(@Nonnull ValueProvider provider, @Nonnull String[] names, @Nullable LazyValues lazyValues) {
+    return get(provider, names, 0, lazyValues);
+  }
+
+
+  @Nonnull
+  private static OptionalValue get(ValueProvider provider, String[] names, int index, LazyValues lazyValues) {
     OptionalValue value = provider.get(names[index]);
     index++;
     if (value.isMissing() || index == names.length) {
       return value;
     }
 
-    return get(makeProvider(provider, value.value()), names, index);
+    Object next = value.value();
+    if (lazyValues != null) {
+      next = lazyValues.resolve(next);
+    }
+    return get(makeProvider(provider, next), names, index, lazyValues);
   }
 
 
@@ -180,6 +199,10 @@ public class ValueAccessor {
    * @return the array of keys
    */
   public static String[] toKey(@Nonnull String param) {
+    if (param.indexOf('.') == -1) {
+      // No need to split
+      return new String[]{param};
+    }
     return param.split("\\.");
   }
 
@@ -0,0 +1,80 @@
+package com.pippsford.stencil;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.pippsford.stencil.source.MemorySourceProvider;
+
+/**
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class RenderedBuffersTest {
+
+  MemorySourceProvider provider = new MemorySourceProvider();
+
+  Stencils stencils = new Stencils(provider);
+
+
+  @Test
+  public void testFailureReleasesBuffers() {
+    // Enough text to fill some buffers before the include fails
+    provider.putFile(Locale.ROOT, "a.txt", "x".repeat(20_000) + "[include missing.txt]");
+    DirectBufferPool pool = new DirectBufferPool(1024, 100);
+    assertThrows(StencilException.class, () -> stencils.write("a.txt", pool, Locale.UK, ZoneId.of("UTC"), Map.of()));
+    assertTrue(pool.getPooled() > 0);
+  }
+
+
+  @Test
+  public void testRender() throws IOException, StencilException {
+    StringBuilder source = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      source.append("Line ").append(i).append(": {name} – ∑\n");
+    }
+    provider.putFile(Locale.ROOT, "a.txt", source.toString());
+    Map<String, Object> params = new HashMap<>();
+    params.put("name", "Zoë");
+    String expected = stencils.write("a.txt", Locale.UK, ZoneId.of("UTC"), params);
+
+    DirectBufferPool pool = new DirectBufferPool(64, 1000);
+    int count;
+    Path path = Files.createTempFile("rendered", ".txt");
+    try (RenderedBuffers buffers = stencils.write("a.txt", pool, Locale.UK, ZoneId.of("UTC"), params)) {
+      ByteBuffer[] array = buffers.getBuffers();
+      count = array.length;
+      assertTrue(count > 1);
+      assertEquals(expected.getBytes(StandardCharsets.UTF_8).length, buffers.getRemaining());
+
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+        assertEquals(expected.getBytes(StandardCharsets.UTF_8).length, buffers.writeTo(channel));
+      }
+      assertEquals(0, buffers.getRemaining());
+      assertEquals(expected, Files.readString(path));
+    } finally {
+      Files.deleteIfExists(path);
+    }
+
+    // All the buffers are returned to the pool, and reused
+    assertEquals(count, pool.getPooled());
+    try (RenderedBuffers buffers = stencils.write("a.txt", pool, Locale.UK, ZoneId.of("UTC"), params)) {
+      assertEquals(0, pool.getPooled());
+      assertEquals(count, buffers.getBuffers().length);
+    }
+  }
+
+}
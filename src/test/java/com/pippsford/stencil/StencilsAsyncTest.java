@@ -0,0 +1,181 @@
+package com.pippsford.stencil;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.pippsford.stencil.source.MemorySourceProvider;
+
+/**
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class StencilsAsyncTest {
+
+  /** Subscriber which collects the output, requesting one chunk at a time. */
+  static class Collector implements Flow.Subscriber<ByteBuffer> {
+
+    final AtomicInteger chunks = new AtomicInteger();
+
+    final CompletableFuture<String> done = new CompletableFuture<>();
+
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    Flow.Subscription subscription;
+
+
+    @Override
+    public void onComplete() {
+      done.complete(output.toString(StandardCharsets.UTF_8));
+    }
+
+
+    @Override
+    public void onError(Throwable throwable) {
+      done.completeExceptionally(throwable);
+    }
+
+
+    @Override
+    public void onNext(ByteBuffer item) {
+      chunks.incrementAndGet();
+      byte[] bytes = new byte[item.remaining()];
+      item.get(bytes);
+      output.writeBytes(bytes);
+      subscription.request(1);
+    }
+
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      subscription.request(1);
+    }
+
+  }
+
+
+
+  MemorySourceProvider provider = new MemorySourceProvider();
+
+  Stencils stencils = new Stencils(provider);
+
+
+  @Test
+  public void testFailure() {
+    CompletableFuture<Void> future = stencils.writeAsync("missing.txt", new StringWriter(), Locale.UK, ZoneId.of("UTC"), Map.of(), ForkJoinPool.commonPool());
+    CompletionException e = assertThrows(CompletionException.class, future::join);
+    assertTrue(e.getCause() instanceof StencilException);
+  }
+
+
+  @Test
+  public void testMissingInclude() throws StencilException {
+    provider.putFile(Locale.ROOT, "a.txt", "A[if x][include missing.txt][end]");
+    Map<String, Object> params = Map.of("x", false);
+    String expected = stencils.write("a.txt", Locale.UK, ZoneId.of("UTC"), params);
+
+    // An include which is not rendered does not fail the render
+    StringWriter writer = new StringWriter();
+    stencils.writeAsync("a.txt", writer, Locale.UK, ZoneId.of("UTC"), params, ForkJoinPool.commonPool()).join();
+    assertEquals(expected, writer.toString());
+
+    // An include which is rendered fails it, as when writing synchronously
+    Map<String, Object> rendered = Map.of("x", true);
+    CompletableFuture<Void> future = stencils.writeAsync("a.txt", new StringWriter(), Locale.UK, ZoneId.of("UTC"), rendered, ForkJoinPool.commonPool());
+    CompletionException e = assertThrows(CompletionException.class, future::join);
+    assertTrue(e.getCause() instanceof StencilException);
+  }
+
+
+  @Test
+  public void testPublish() throws StencilException {
+    StringBuilder source = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      source.append("Line ").append(i).append(": {name} – ∑\n");
+    }
+    provider.putFile(Locale.ROOT, "a.txt", source.toString());
+    Map<String, Object> params = new HashMap<>();
+    params.put("name", "Zoë");
+    String expected = stencils.write("a.txt", Locale.UK, ZoneId.of("UTC"), params);
+
+    Collector collector = new Collector();
+    stencils.publish("a.txt", Locale.UK, ZoneId.of("UTC"), params, ForkJoinPool.commonPool()).subscribe(collector);
+    assertEquals(expected, collector.done.join());
+    assertTrue(collector.chunks.get() > 1);
+  }
+
+
+  @Test
+  public void testPublishFailure() {
+    Collector collector = new Collector();
+    stencils.publish("missing.txt", Locale.UK, ZoneId.of("UTC"), Map.of(), ForkJoinPool.commonPool()).subscribe(collector);
+    CompletionException e = assertThrows(CompletionException.class, () -> collector.done.join());
+    assertTrue(e.getCause() instanceof StencilException);
+  }
+
+
+  @Test
+  public void testPublishOnce() {
+    provider.putFile(Locale.ROOT, "a.txt", "Hello");
+    Flow.Publisher<ByteBuffer> publisher = stencils.publish("a.txt", Locale.UK, ZoneId.of("UTC"), Map.of(), ForkJoinPool.commonPool());
+    Collector first = new Collector();
+    publisher.subscribe(first);
+    assertEquals("Hello", first.done.join());
+
+    Collector second = new Collector();
+    publisher.subscribe(second);
+    CompletionException e = assertThrows(CompletionException.class, () -> second.done.join());
+    assertTrue(e.getCause() instanceof IllegalStateException);
+  }
+
+
+  @Test
+  public void testUnreferencedFutureIsNotAwaited() {
+    provider.putFile(Locale.ROOT, "a.txt", "Hello {name}[if flag] {later}[end].");
+    CompletableFuture<String> later = new CompletableFuture<>();
+    CompletableFuture<String> never = new CompletableFuture<>();
+    Map<String, Object> params = Map.of("name", "Zoë", "flag", false, "later", later, "never", never);
+
+    StringWriter writer = new StringWriter();
+    CompletableFuture<Void> future = stencils.writeAsync("a.txt", writer, Locale.UK, ZoneId.of("UTC"), params, ForkJoinPool.commonPool());
+    assertFalse(future.isDone());
+
+    later.complete("there");
+    future.join();
+    assertEquals("Hello Zoë.", writer.toString());
+  }
+
+
+  @Test
+  public void testWriteAsync() {
+    provider.putFile(Locale.ROOT, "a.txt", "Hello {name}, you have {count} messages.");
+    CompletableFuture<Integer> count = new CompletableFuture<>();
+    Map<String, Object> params = Map.of("name", "Zoë", "count", count);
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    CompletableFuture<Void> future = stencils.writeAsync("a.txt", output, Locale.UK, ZoneId.of("UTC"), params, ForkJoinPool.commonPool());
+    assertFalse(future.isDone());
+
+    count.complete(3);
+    future.join();
+    assertEquals("Hello Zoë, you have 3 messages.", output.toString(StandardCharsets.UTF_8));
+  }
+
+}
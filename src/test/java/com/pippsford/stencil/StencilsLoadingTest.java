@@ -0,0 +1,110 @@
+package com.pippsford.stencil;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.pippsford.stencil.source.MemorySourceProvider;
+import com.pippsford.stencil.source.StencilStorageException;
+
+/**
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class StencilsLoadingTest {
+
+  /**
+   * A source provider that blocks until a given number of loads are in progress at the same time, or a timeout expires. Loads which saw the required number
+   * of loads in progress are counted.
+   */
+  static class SlowSourceProvider extends MemorySourceProvider {
+
+    final AtomicInteger loads = new AtomicInteger();
+
+    final AtomicInteger met = new AtomicInteger();
+
+    final long timeout;
+
+    final CountDownLatch together;
+
+
+    SlowSourceProvider(int together, long timeout) {
+      this.together = new CountDownLatch(together);
+      this.timeout = timeout;
+    }
+
+
+    @Override
+    public String getSource(Source path, Locale locale) throws StencilStorageException {
+      loads.incrementAndGet();
+      together.countDown();
+      try {
+        if (together.await(timeout, TimeUnit.MILLISECONDS)) {
+          met.incrementAndGet();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return super.getSource(path, locale);
+    }
+
+  }
+
+
+
+  @Test
+  public void testDifferentTemplatesLoadInParallel() throws Exception {
+    // The timeout only limits how long a failing test takes
+    SlowSourceProvider provider = new SlowSourceProvider(2, 30_000);
+    provider.putFile(Locale.ROOT, "a.txt", "A");
+    provider.putFile(Locale.ROOT, "b.txt", "B");
+    Stencils stencils = new Stencils(provider);
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<String> a = executor.submit(() -> stencils.write("a.txt", null));
+      Future<String> b = executor.submit(() -> stencils.write("b.txt", null));
+      assertEquals("A", a.get());
+      assertEquals("B", b.get());
+    } finally {
+      executor.shutdown();
+    }
+
+    // Both loads were in the source provider at the same time
+    assertEquals(2, provider.met.get());
+  }
+
+
+  @Test
+  public void testSameTemplateLoadsOnce() throws Exception {
+    // Only one load will ever happen, so it will wait for the full timeout while the other requests queue up.
+    SlowSourceProvider provider = new SlowSourceProvider(2, 200);
+    provider.putFile(Locale.ROOT, "a.txt", "A");
+    Stencils stencils = new Stencils(provider);
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<String>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executor.submit(() -> stencils.write("a.txt", null)));
+      }
+      for (Future<String> future : futures) {
+        assertEquals("A", future.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(1, provider.loads.get());
+    assertEquals(0, provider.met.get());
+  }
+
+}
@@ -3,13 +3,19 @@ package com.pippsford.stencil;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 
+import java.lang.ref.WeakReference;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.junit.jupiter.api.Test;
 
+import com.pippsford.stencil.cache.CacheStatistics;
+import com.pippsford.stencil.cache.LruTemplateCache;
 import com.pippsford.stencil.escape.StandardEscape;
 import com.pippsford.stencil.source.MemorySourceProvider;
+import com.pippsford.stencil.source.StencilStorageException;
 
 /**
  * @author Simon Greatrix on 12/01/2021.
@@ -56,4 +62,137 @@ class StencilsTest {
     assertNull(stencils.getDefaultValue("foo"));
   }
 
-}
\ No newline at end of file
+
+  @Test
+  public void test4() throws StencilException {
+    sourceProvider.putFile(Locale.ROOT, "test.txt", "Version 1");
+    assertEquals("Version 1", stencils.write("test.txt", null));
+    sourceProvider.putFile(Locale.ROOT, "test.txt", "Version 2");
+    assertEquals("Version 1", stencils.write("test.txt", null));
+
+    stencils.invalidate("other.txt");
+    assertEquals("Version 1", stencils.write("test.txt", null));
+
+    stencils.invalidate("./test.txt");
+    assertEquals("Version 2", stencils.write("test.txt", null));
+
+    sourceProvider.putFile(Locale.ROOT, "test.txt", "Version 3");
+    stencils.invalidateAll();
+    assertEquals("Version 3", stencils.write("test.txt", null));
+    assertEquals(1, stencils.getTemplateCache().getStatistics().size());
+  }
+
+
+  @Test
+  public void test5() throws StencilException {
+    sourceProvider.putFile(Locale.ROOT, "test.txt", "Cached");
+    stencils.setTemplateCache(new LruTemplateCache(100));
+    assertEquals("Cached", stencils.write("test.txt", null));
+    assertEquals("Cached", stencils.write("test.txt", null));
+    CacheStatistics statistics = stencils.getTemplateCache().getStatistics();
+    assertEquals(1, statistics.hits());
+    assertEquals(1, statistics.misses());
+    assertEquals(1, statistics.size());
+  }
+
+
+  @Test
+  public void test6() throws StencilException {
+    sourceProvider.putFile(Locale.ROOT, "outer.txt", "Outer [if x][include inner.txt][else][include inner.txt][end]");
+    sourceProvider.putFile(Locale.ROOT, "inner.txt", "Inner 1");
+    sourceProvider.putFile(Locale.ROOT, "alone.txt", "Alone 1");
+    assertEquals("Outer Inner 1", stencils.write("outer.txt", null));
+    assertEquals("Alone 1", stencils.write("alone.txt", null));
+
+    sourceProvider.putFile(Locale.ROOT, "inner.txt", "Inner 2");
+    sourceProvider.putFile(Locale.ROOT, "alone.txt", "Alone 2");
+    stencils.invalidate("inner.txt");
+    assertEquals("Outer Inner 2", stencils.write("outer.txt", null));
+    assertEquals("Alone 1", stencils.write("alone.txt", null));
+  }
+
+
+  @Test
+  public void test7() throws StencilException {
+    // The source changes whilst it is being loaded
+    MemorySourceProvider changing = new MemorySourceProvider() {
+      @Override
+      public String getSource(Source path, Locale locale) throws StencilStorageException {
+        String source = super.getSource(path, locale);
+        putFile(Locale.ROOT, "test.txt", "Version 2");
+        stencils.invalidate("test.txt");
+        return source;
+      }
+    };
+    changing.putFile(Locale.ROOT, "test.txt", "Version 1");
+    stencils = new Stencils(changing);
+
+    assertEquals("Version 1", stencils.write("test.txt", null));
+    assertEquals(0, stencils.getTemplateCache().getStatistics().size());
+    assertEquals("Version 2", stencils.write("test.txt", null));
+  }
+
+
+  @Test
+  public void test8() throws StencilException {
+    sourceProvider.putFile(Locale.ROOT, "outer.txt", "Outer [include inner.txt]");
+    sourceProvider.putFile(Locale.ROOT, "inner.txt", "Inner 1");
+    sourceProvider.putFile(Locale.ROOT, "other.txt", "Other");
+    stencils.setTemplateCache(new LruTemplateCache(3));
+    assertEquals("Outer Inner 1", stencils.write("outer.txt", null));
+
+    // Rendering "outer" used "inner" again, so loading "other" evicts "outer". That forgets "outer" includes "inner", but "inner" is still cached.
+    assertEquals("Other", stencils.write("other.txt", null));
+    assertEquals(1, stencils.getTemplateCache().getStatistics().evictions());
+
+    sourceProvider.putFile(Locale.ROOT, "inner.txt", "Inner 2");
+    stencils.invalidate("inner.txt");
+    assertEquals("Outer Inner 2", stencils.write("outer.txt", null));
+  }
+
+
+  @Test
+  public void test9() throws StencilException, InterruptedException {
+    List<SourceChangeListener> listeners = new CopyOnWriteArrayList<>();
+    MemorySourceProvider watched = new MemorySourceProvider() {
+      @Override
+      public void addChangeListener(SourceChangeListener listener) {
+        listeners.add(listener);
+      }
+
+
+      @Override
+      public void removeChangeListener(SourceChangeListener listener) {
+        listeners.remove(listener);
+      }
+    };
+    watched.putFile(Locale.ROOT, "test.txt", "Text");
+
+    // Creating an instance does not register it
+    Stencils unused = new Stencils(watched);
+    assertEquals(0, listeners.size());
+    assertEquals("Text", unused.write("test.txt", null));
+    assertEquals(1, listeners.size());
+
+    // The provider does not keep an instance which is no longer referenced, and its listener is removed
+    WeakReference<Stencils> reference = new WeakReference<>(unused);
+    unused = null;
+    for (int i = 0; i < 100 && (reference.get() != null || !listeners.isEmpty()); i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertNull(reference.get());
+    assertEquals(0, listeners.size());
+
+    // Closing removes the listener, and a closed instance does not register again
+    Stencils closing = new Stencils(watched);
+    assertEquals("Text", closing.write("test.txt", null));
+    assertEquals(1, listeners.size());
+    closing.close();
+    assertEquals(0, listeners.size());
+    closing.invalidateAll();
+    assertEquals("Text", closing.write("test.txt", null));
+    assertEquals(0, listeners.size());
+  }
+
+}
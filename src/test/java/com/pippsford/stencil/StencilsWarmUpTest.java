@@ -0,0 +1,101 @@
+package com.pippsford.stencil;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+import com.pippsford.stencil.blocks.Template;
+import com.pippsford.stencil.source.MemorySourceProvider;
+import com.pippsford.stencil.source.SourceStencilId;
+import com.pippsford.stencil.source.StencilNotFoundException;
+
+/**
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class StencilsWarmUpTest {
+
+  MemorySourceProvider provider = new MemorySourceProvider();
+
+
+  @Test
+  public void testCompiles() throws StencilException {
+    provider.putFile(Locale.ROOT, "a.txt", "A[include b.txt]");
+    provider.putFile(Locale.ROOT, "b.txt", "B");
+    Stencils stencils = new Stencils(provider);
+    stencils.setCompileThreshold(100);
+
+    WarmUpReport report = stencils.warmUp(List.of("a.txt"), List.of(Locale.UK));
+    assertTrue(report.isSuccessful());
+
+    for (String name : List.of("a.txt", "b.txt")) {
+      Template template = stencils.getTemplateCache().get(new SourceStencilId(provider, name, Locale.UK, null, stencils.getDefaultEscape()));
+      assertTrue(template.isCompiled(), name);
+    }
+  }
+
+
+  @Test
+  public void testFailures() {
+    provider.putFile(Locale.ROOT, "a.txt", "A[include b.txt]");
+    provider.putFile(Locale.ROOT, "b.txt", "B[if x][include missing.txt][end]");
+    provider.putFile(Locale.ROOT, "c.txt", "C");
+    Stencils stencils = new Stencils(provider);
+
+    WarmUpReport report = stencils.warmUp(List.of("a.txt", "c.txt", "nothing.txt"), List.of(Locale.UK));
+    assertFalse(report.isSuccessful());
+    assertEquals(3, report.results().size());
+
+    List<WarmUpReport.Result> failures = report.getFailures();
+    assertEquals(2, failures.size());
+    assertEquals("a.txt", failures.get(0).stencilName());
+    assertTrue(failures.get(0).failure() instanceof StencilNotFoundException);
+    assertEquals(2, failures.get(0).templateCount());
+    assertEquals("nothing.txt", failures.get(1).stencilName());
+    assertEquals(0, failures.get(1).templateCount());
+
+    WarmUpReport.Result c = report.results().get(1);
+    assertTrue(c.isSuccessful());
+    assertNull(c.failure());
+    assertEquals(1, c.templateCount());
+  }
+
+
+  @Test
+  public void testIncludesAreLoaded() throws Exception {
+    provider.putFile(Locale.ROOT, "a.txt", "A[include b.txt][loop list][include c.txt][else][include b.txt][end]");
+    provider.putFile(Locale.ROOT, "b.txt", "B");
+    provider.putFile(Locale.ROOT, "c.txt", "C[include d.txt]");
+    provider.putFile(Locale.ROOT, "d.txt", "D");
+    provider.putFile(Locale.FRENCH, "d.txt", "D-fr");
+    Stencils stencils = new Stencils(provider);
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    WarmUpReport report;
+    try {
+      report = stencils.warmUp(List.of("a.txt", "c.txt"), List.of(Locale.UK, Locale.FRANCE), executor);
+    } finally {
+      executor.shutdown();
+    }
+    assertTrue(report.isSuccessful());
+    assertEquals(4, report.results().size());
+    assertEquals(4, report.results().get(0).templateCount());
+    assertEquals(2, report.results().get(2).templateCount());
+    assertEquals(8, stencils.getTemplateCache().getStatistics().size());
+
+    // Rendering now hits the cache for every template
+    long misses = stencils.getTemplateCache().getStatistics().misses();
+    assertEquals("ABCD", stencils.write("a.txt", Locale.UK, null, Map.of("list", List.of(1))));
+    assertEquals("CD-fr", stencils.write("c.txt", Locale.FRANCE, null, Map.of()));
+    assertEquals(misses, stencils.getTemplateCache().getStatistics().misses());
+  }
+
+}
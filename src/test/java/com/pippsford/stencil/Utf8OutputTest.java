@@ -0,0 +1,96 @@
+package com.pippsford.stencil;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.pippsford.stencil.source.MemorySourceProvider;
+
+/**
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class Utf8OutputTest {
+
+  private static final char[] CHARACTERS = {'a', 'Z', '<', '\n', 'é', '∑', '€', '\uD83D', '\uDE00', '￿'};
+
+
+  @Test
+  public void testMixed() throws IOException {
+    Random random = new Random(1234);
+    for (int i = 0; i < 200; i++) {
+      StringBuilder builder = new StringBuilder();
+      int length = random.nextInt(100);
+      for (int j = 0; j < length; j++) {
+        builder.append(CHARACTERS[random.nextInt(CHARACTERS.length)]);
+      }
+      String text = builder.toString();
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      Utf8Output output = new Utf8Output(bytes, 4 + random.nextInt(16));
+      int pos = 0;
+      while (pos < length) {
+        int end = Math.min(length, pos + random.nextInt(8));
+        switch (random.nextInt(3)) {
+          case 0:
+            output.write(text, pos, end - pos);
+            break;
+          case 1:
+            output.write(text.toCharArray(), pos, end - pos);
+            break;
+          default:
+            for (int k = pos; k < end; k++) {
+              output.write(text.charAt(k));
+            }
+            break;
+        }
+        pos = end;
+      }
+      output.flush();
+      assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), bytes.toByteArray());
+    }
+  }
+
+
+  @Test
+  public void testStencil() throws IOException, StencilException {
+    MemorySourceProvider provider = new MemorySourceProvider();
+    provider.putFile(Locale.ROOT, "a.txt", "<p>Café {name} ∑ [if name]😀[end]</p>");
+    Stencils stencils = new Stencils(provider);
+    Map<String, Object> params = Map.of("name", "Zoë & €");
+    String expected = stencils.write("a.txt", Locale.UK, ZoneId.of("UTC"), params);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    stencils.write("a.txt", bytes, Locale.UK, ZoneId.of("UTC"), params);
+    assertEquals(expected, bytes.toString(StandardCharsets.UTF_8));
+
+    // Compiled templates write the same bytes
+    stencils.setCompileThreshold(1);
+    stencils.write("a.txt", new ByteArrayOutputStream(), Locale.UK, ZoneId.of("UTC"), params);
+    bytes.reset();
+    stencils.write("a.txt", bytes, Locale.UK, ZoneId.of("UTC"), params);
+    assertEquals(expected, bytes.toString(StandardCharsets.UTF_8));
+  }
+
+
+  @Test
+  public void testUtf8() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    Utf8Output output = new Utf8Output(bytes, 8);
+    output.write("ab\uD83D");
+    output.writeUtf8("cé".getBytes(StandardCharsets.UTF_8));
+    output.writeUtf8("0123456789".getBytes(StandardCharsets.UTF_8));
+    output.write("€");
+    output.close();
+    assertEquals("ab?cé0123456789€", bytes.toString(StandardCharsets.UTF_8));
+  }
+
+}
@@ -4,15 +4,23 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.time.ZoneId;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Test;
 
 import com.pippsford.stencil.StencilException;
 import com.pippsford.stencil.Stencils;
+import com.pippsford.stencil.apply.ValueProcessor;
 import com.pippsford.stencil.parser.StencilParseFailedException;
 import com.pippsford.stencil.source.MemorySourceProvider;
 
@@ -125,4 +133,62 @@ class LoopDirectiveTest {
             """, output);
   }
 
+
+  @Test
+  public void test10() throws StencilException {
+    // Values put into one row must not be visible in the next row
+    sourceProvider.putFile(Locale.ROOT, "test.txt", "[loop list]{isFirst}[apply F.index]{isEven}|[end]");
+    Map<String, Object> map = Map.of("list", List.of("a", "b", "c"));
+    String output = stencils.write("test.txt", Locale.FRANCE, ZoneId.of("Europe/London"), map);
+    assertEquals("{isFirst}true|{isFirst}false|{isFirst}true|", output);
+  }
+
+
+  @Test
+  public void test11() throws StencilException {
+    sourceProvider.putFile(Locale.ROOT, "test.txt", "[loop list]{index}/{size}:{value} [else]DETAILS MISSING[end]");
+    assertEquals("0/2:a 1/2:b ", stencils.write("test.txt", Locale.FRANCE, ZoneId.of("Europe/London"), Map.of("list", new LinkedList<>(List.of("a", "b")))));
+    assertEquals("0/2:x 1/2:y ", stencils.write("test.txt", Locale.FRANCE, ZoneId.of("Europe/London"), Map.of("list", new String[]{"x", "y"})));
+    assertEquals("0/1:z ", stencils.write("test.txt", Locale.FRANCE, ZoneId.of("Europe/London"), Map.of("list", "z")));
+    assertEquals("DETAILS MISSING", stencils.write("test.txt", Locale.FRANCE, ZoneId.of("Europe/London"), Map.of("list", new LinkedList<>())));
+  }
+
+
+  @Test
+  public void test12() throws StencilException {
+    sourceProvider.putFile(Locale.ROOT, "test.txt", "[loop list][apply F.index]{index}:{value}[if isLast].[else],[end][else]DETAILS MISSING[end]");
+    ZoneId zone = ZoneId.of("Europe/London");
+    assertEquals("0:a,1:b,2:c.", stencils.write("test.txt", Locale.FRANCE, zone, Map.of("list", Stream.of("a", "b", "c"))));
+    assertEquals("0:a,1:b.", stencils.write("test.txt", Locale.FRANCE, zone, Map.of("list", List.of("a", "b").iterator())));
+    assertEquals("0:a.", stencils.write("test.txt", Locale.FRANCE, zone, Map.of("list", List.of("a").spliterator())));
+    assertEquals("0:a,1:b.", stencils.write("test.txt", Locale.FRANCE, zone, Map.of("list", Collections.enumeration(List.of("a", "b")))));
+    assertEquals("0:x.", stencils.write("test.txt", Locale.FRANCE, zone, Map.of("list", new TreeSet<>(Set.of("x")))));
+    assertEquals("DETAILS MISSING", stencils.write("test.txt", Locale.FRANCE, zone, Map.of("list", Stream.empty())));
+    assertEquals("DETAILS MISSING", stencils.write("test.txt", Locale.FRANCE, zone, Map.of("list", Collections.emptyIterator())));
+  }
+
+
+  @Test
+  public void test13() throws StencilException {
+    // Streaming pulls at most one entry ahead of the entry being rendered
+    AtomicInteger pulled = new AtomicInteger();
+    Iterator<Integer> iterator = new Iterator<>() {
+      @Override
+      public boolean hasNext() {
+        return pulled.get() < 1000;
+      }
+
+
+      @Override
+      public Integer next() {
+        return pulled.getAndIncrement();
+      }
+    };
+    ValueProcessor check = (d, a) -> pulled.get() - (Integer) a[0].getValue();
+    sourceProvider.putFile(Locale.ROOT, "test.txt", "[loop list][if size]{size}[end][apply out = check(value)]{out}[end]");
+    String output = stencils.write("test.txt", Locale.FRANCE, ZoneId.of("Europe/London"), Map.of("list", iterator, "check", check));
+    // The size only becomes known at the last entry
+    assertEquals("1".repeat(999) + "10001", output);
+  }
+
 }
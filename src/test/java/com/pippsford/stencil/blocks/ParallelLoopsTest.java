@@ -0,0 +1,165 @@
+package com.pippsford.stencil.blocks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.pippsford.stencil.StencilException;
+import com.pippsford.stencil.Stencils;
+import com.pippsford.stencil.apply.ValueProcessor;
+import com.pippsford.stencil.source.MemorySourceProvider;
+
+/**
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class ParallelLoopsTest {
+
+  AtomicInteger tasks = new AtomicInteger();
+
+  MemorySourceProvider sourceProvider = new MemorySourceProvider();
+
+  Stencils stencils = new Stencils(sourceProvider);
+
+
+  private String expected(int size) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < size; i++) {
+      builder.append(i).append('/').append(size).append(": v").append(i).append('\n');
+    }
+    return builder.toString();
+  }
+
+
+  private List<String> rows(int size) {
+    List<String> rows = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      rows.add("v" + i);
+    }
+    return rows;
+  }
+
+
+  @BeforeEach
+  public void setUp() {
+    ParallelLoops parallelLoops = stencils.getParallelLoops();
+    parallelLoops.setThreshold(20);
+    parallelLoops.setChunkSize(7);
+    parallelLoops.setExecutor(command -> {
+      tasks.incrementAndGet();
+      ForkJoinPool.commonPool().execute(command);
+    });
+  }
+
+
+  @Test
+  public void testApplyWithOutputIsSequential() throws StencilException {
+    sourceProvider.putFile(Locale.ROOT, "test.txt", "[loop rows][apply x = foo(value)]{x}[end]");
+    Map<String, Object> map = Map.of("rows", rows(100), "foo", (ValueProcessor) (a, z) -> z[0].asString().toUpperCase());
+    String output = stencils.write("test.txt", Locale.UK, ZoneId.of("Europe/London"), map);
+    assertEquals(String.join("", rows(100)).toUpperCase(), output);
+    assertEquals(0, tasks.get());
+  }
+
+
+  @Test
+  public void testArray() throws StencilException {
+    sourceProvider.putFile(Locale.ROOT, "test.txt", "[loop rows]{index}/{size}: {value}\n[end]");
+    String output = stencils.write("test.txt", Locale.UK, ZoneId.of("Europe/London"), Map.of("rows", rows(100).toArray()));
+    assertEquals(expected(100), output);
+    assertEquals(14, tasks.get());
+  }
+
+
+  @Test
+  public void testBelowThreshold() throws StencilException {
+    sourceProvider.putFile(Locale.ROOT, "test.txt", "[loop rows]{index}/{size}: {value}\n[end]");
+    String output = stencils.write("test.txt", Locale.UK, ZoneId.of("Europe/London"), Map.of("rows", rows(19)));
+    assertEquals(expected(19), output);
+    assertEquals(0, tasks.get());
+  }
+
+
+  @Test
+  public void testFailure() {
+    sourceProvider.putFile(Locale.ROOT, "test.txt", "[loop rows][apply foo(value)][end]");
+    Map<String, Object> map = Map.of("rows", rows(100), "foo", (ValueProcessor) (a, z) -> {
+      if (z[0].asString().equals("v50")) {
+        throw new IllegalArgumentException("v50");
+      }
+      return "";
+    });
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> stencils.write("test.txt", Locale.UK, ZoneId.of("Europe/London"), map));
+    assertEquals("v50", e.getMessage());
+  }
+
+
+  @Test
+  public void testList() throws StencilException {
+    sourceProvider.putFile(Locale.ROOT, "test.txt", "[loop rows]{index}/{size}: {value}\n[end]");
+    String output = stencils.write("test.txt", Locale.UK, ZoneId.of("Europe/London"), Map.of("rows", rows(100)));
+    assertEquals(expected(100), output);
+    assertEquals(14, tasks.get());
+  }
+
+
+  @Test
+  public void testNested() throws StencilException {
+    sourceProvider.putFile(Locale.ROOT, "test.txt", "[loop rows][loop rows]{value}[end];[end]");
+    String output = stencils.write("test.txt", Locale.UK, ZoneId.of("Europe/London"), Map.of("rows", rows(30)));
+    String line = String.join("", rows(30)) + ";";
+    assertEquals(line.repeat(30), output);
+
+    // Only the outer loop is split
+    assertEquals(4, tasks.get());
+  }
+
+
+  @Test
+  public void testNotStarted() throws StencilException {
+    // An executor which never runs its tasks, so this thread must render every chunk
+    stencils.getParallelLoops().setExecutor(command -> tasks.incrementAndGet());
+    sourceProvider.putFile(Locale.ROOT, "test.txt", "[loop rows]{index}/{size}: {value}\n[end]");
+    String output = stencils.write("test.txt", Locale.UK, ZoneId.of("Europe/London"), Map.of("rows", rows(100)));
+    assertEquals(expected(100), output);
+    assertEquals(14, tasks.get());
+  }
+
+
+  @Test
+  public void testPerStencils() throws StencilException {
+    Stencils other = new Stencils(sourceProvider);
+    sourceProvider.putFile(Locale.ROOT, "test.txt", "[loop rows]{index}/{size}: {value}\n[end]");
+    assertEquals(expected(100), other.write("test.txt", Locale.UK, ZoneId.of("Europe/London"), Map.of("rows", rows(100))));
+    assertEquals(0, tasks.get());
+  }
+
+
+  @Test
+  public void testSameExecutor() throws Exception {
+    // The render runs on the only thread of the executor which would render the chunks
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      stencils.getParallelLoops().setExecutor(executor);
+      sourceProvider.putFile(Locale.ROOT, "test.txt", "[loop rows]{index}/{size}: {value}\n[end]");
+      Future<String> output = executor.submit(() -> stencils.write("test.txt", Locale.UK, ZoneId.of("Europe/London"), Map.of("rows", rows(100))));
+      assertEquals(expected(100), output.get(30, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+}
@@ -0,0 +1,134 @@
+package com.pippsford.stencil.blocks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.pippsford.stencil.StencilException;
+import com.pippsford.stencil.Stencils;
+import com.pippsford.stencil.source.MemorySourceProvider;
+import com.pippsford.stencil.source.SourceStencilId;
+import com.pippsford.stencil.value.Data;
+
+/**
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class TemplateCompilerTest {
+
+  private static final String[] TEMPLATES = {
+      "Hello, World!",
+      "Hello, {name}![* a comment *] How are you?{* value comment *}",
+      "[if flag]yes[else]no[end] [if missing]yes[else]no[end]",
+      "[loop people]{index}/{size}: {value.title} {value.name} {value.age}\n[else]nobody[end]",
+      "[loop empty]{value}[else]nobody[end]",
+      "[use people.0]{name} is {age,number}[end]",
+      "[include inner.txt] and then [include inner.txt]",
+      "[loop people][apply F.index][if isFirst]First: [end]{value.name}[if isLast].[else], [end][end]",
+      "{when,date,medium} {when,time,short} {amount,number,#,##0.00} {name,format,%-10s}|",
+      "Escape: {html}\n{html,raw}",
+      "[set escape=json]{html}[include inner.txt][set escape=html]{html}"
+  };
+
+  Pojo pojo1 = new Pojo("Dr", "Karl", 46);
+
+  Pojo pojo2 = new Pojo("Mrs", "Jane", 51);
+
+  MemorySourceProvider sourceProvider = new MemorySourceProvider();
+
+
+  private Map<String, Object> data() {
+    return Map.of(
+        "name", "Karl",
+        "flag", true,
+        "people", List.of(pojo1, pojo2),
+        "empty", List.of(),
+        "when", ZonedDateTime.of(2021, 3, 4, 5, 6, 7, 0, ZoneId.of("UTC")),
+        "amount", 12345.678,
+        "html", "<b>\"Bold\" & 'brave'</b>"
+    );
+  }
+
+
+  @Test
+  public void foreignBlock() throws Exception {
+    Block foreign = new Block() {
+      @Override
+      public BlockTypes getType() {
+        return BlockTypes.VALUE_HERE;
+      }
+
+
+      @Override
+      public void process(Writer out, Locale locale, ZoneId zoneId, Data data) throws IOException {
+        out.write("foreign");
+      }
+    };
+    Template template = new Template(new Block[]{new Static("A ", true), foreign, new Static(" B", true)});
+    template.compile();
+    assertTrue(template.isCompiled());
+    StringWriter writer = new StringWriter();
+    template.process(writer, Locale.UK, ZoneId.of("UTC"), Data.create(Map.of()));
+    assertEquals("A foreign B", writer.toString());
+  }
+
+
+  @Test
+  public void manyBlocks() {
+    Block[] blocks = new Block[5000];
+    for (int i = 0; i < blocks.length; i++) {
+      blocks[i] = (i % 2 == 0) ? new Static("x", true) : new Comment(false);
+    }
+    assertNotNull(TemplateCompiler.compile(blocks));
+  }
+
+
+  @Test
+  public void oracle() throws StencilException {
+    sourceProvider.putFile(Locale.ROOT, "inner.txt", "<{name}>");
+
+    Stencils interpreted = new Stencils(sourceProvider);
+    Stencils compiled = new Stencils(sourceProvider);
+    compiled.setCompileThreshold(2);
+
+    for (int i = 0; i < TEMPLATES.length; i++) {
+      String name = "test" + i + ".txt";
+      sourceProvider.putFile(Locale.ROOT, name, TEMPLATES[i]);
+
+      String expected = interpreted.write(name, Locale.UK, ZoneId.of("Europe/London"), data());
+      for (int j = 0; j < 4; j++) {
+        String actual = compiled.write(name, Locale.UK, ZoneId.of("Europe/London"), data());
+        assertEquals(expected, actual, "Template " + i + " on render " + j);
+      }
+    }
+  }
+
+
+  @Test
+  public void threshold() throws StencilException {
+    sourceProvider.putFile(Locale.ROOT, "test.txt", "Hello, {name}!");
+    Stencils stencils = new Stencils(sourceProvider);
+    stencils.setCompileThreshold(3);
+    assertEquals(3, stencils.getCompileThreshold());
+
+    Template template = stencils.getTemplate(new SourceStencilId(sourceProvider, "test.txt", Locale.UK, null, stencils.getDefaultEscape()));
+    stencils.write("test.txt", Locale.UK, null, data());
+    stencils.write("test.txt", Locale.UK, null, data());
+    assertFalse(template.isCompiled());
+    stencils.write("test.txt", Locale.UK, null, data());
+    assertTrue(template.isCompiled());
+    assertEquals("Hello, Karl!", stencils.write("test.txt", Locale.UK, null, data()));
+  }
+
+}
@@ -0,0 +1,36 @@
+package com.pippsford.stencil.blocks.value;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class BoundedMemoTest {
+
+  @Test
+  public void testBounded() {
+    AtomicInteger created = new AtomicInteger();
+    BoundedMemo<Integer, String> memo = new BoundedMemo<>(10, key -> {
+      created.incrementAndGet();
+      return key.toString();
+    });
+
+    for (int i = 0; i < 10; i++) {
+      assertEquals(Integer.toString(i), memo.get(i));
+    }
+    assertEquals("5", memo.get(5));
+    assertEquals(10, created.get());
+
+    // A new entry only displaces one old entry
+    assertEquals("10", memo.get(10));
+    assertEquals(11, created.get());
+    assertEquals(10, memo.size());
+    assertEquals("10", memo.get(10));
+    assertEquals(11, created.get());
+  }
+
+}
@@ -0,0 +1,84 @@
+package com.pippsford.stencil.blocks.value;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.IllegalFormatException;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class CompiledFormatTest {
+
+  private static final String[] FORMATS = {
+      "%s", "[%10s]", "[%-10s]", "%.3s", "%1$s!", "%d", "%6d", "%-6d|", "%06d", "%x", "%08X", "%-5x|", "%f", "%.2f", "%08.2f", "%-9.1f|", "%.0f",
+      "100%% %s%n", "%,d", "%+d", "%s %s", "%2$s", "%tY", "no conversion", "%1$s %1$s"
+  };
+
+  private static final Locale[] LOCALES = {Locale.ROOT, Locale.UK, Locale.GERMANY, Locale.forLanguageTag("ar-EG"), Locale.forLanguageTag("th-TH-u-nu-thai")};
+
+  private static final Object[] VALUES = {
+      "Hello", "", 0, 42, -42, Integer.MIN_VALUE, Long.MAX_VALUE, (short) -2, (byte) -1, BigInteger.valueOf(-123456789), 0.0, -0.0, 6.5, -0.001, 0.125,
+      1234.5678, 1e20, Double.NaN, Float.valueOf(0.1f), new BigDecimal("-12.345"), null, Boolean.TRUE
+  };
+
+
+  private static String actual(Locale locale, CompiledFormat format, Object value) {
+    try {
+      return format.format(locale, value);
+    } catch (IllegalFormatException e) {
+      return e.getClass().getName();
+    }
+  }
+
+
+  private static String expected(Locale locale, String format, Object value) {
+    try {
+      return String.format(locale, format, value);
+    } catch (IllegalFormatException e) {
+      return e.getClass().getName();
+    }
+  }
+
+
+  @Test
+  public void testInvalid() {
+    CompiledFormat format = CompiledFormat.compile("%-0d");
+    assertThrows(IllegalFormatException.class, () -> format.format(Locale.UK, 1));
+  }
+
+
+  @Test
+  public void testMatchesStringFormat() {
+    for (String f : FORMATS) {
+      CompiledFormat format = CompiledFormat.compile(f);
+      for (Locale locale : LOCALES) {
+        for (Object value : VALUES) {
+          assertEquals(expected(locale, f, value), actual(locale, format, value), f + " " + locale + " " + value);
+        }
+      }
+    }
+  }
+
+
+  @Test
+  public void testRandomDecimals() {
+    Random random = new Random(0xf00d);
+    CompiledFormat[] formats = new CompiledFormat[6];
+    for (int i = 0; i < formats.length; i++) {
+      formats[i] = CompiledFormat.compile("%." + i + "f");
+    }
+    for (int i = 0; i < 20_000; i++) {
+      double value = (random.nextLong() % 10_000_000_000L) / Math.pow(10, random.nextInt(9));
+      int precision = random.nextInt(formats.length);
+      assertEquals(String.format(Locale.UK, "%." + precision + "f", value), formats[precision].format(Locale.UK, value));
+    }
+  }
+
+}
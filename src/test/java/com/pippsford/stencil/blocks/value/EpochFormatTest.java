@@ -0,0 +1,90 @@
+package com.pippsford.stencil.blocks.value;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class EpochFormatTest {
+
+  private static final ZoneId[] ZONES = {
+      ZoneOffset.UTC, ZoneOffset.ofHoursMinutes(5, 30), ZoneId.of("Europe/London"), ZoneId.of("America/Los_Angeles"), ZoneId.of("Asia/Kolkata")
+  };
+
+
+  private void check(Instant instant) {
+    for (ZoneId zoneId : ZONES) {
+      ZonedDateTime dateTime = ZonedDateTime.ofInstant(instant, zoneId);
+      assertEquals(DateTimeFormatter.ISO_INSTANT.format(dateTime), EpochFormat.ISO_INSTANT.format(instant, zoneId));
+      assertEquals(DateTimeFormatter.RFC_1123_DATE_TIME.format(dateTime), EpochFormat.RFC_1123.format(instant, zoneId));
+    }
+  }
+
+
+  @Test
+  public void testEdges() {
+    check(Instant.EPOCH);
+    check(Instant.parse("0000-01-01T12:00:00Z"));
+    check(Instant.parse("1900-02-28T23:59:59.5Z"));
+    check(Instant.parse("2000-02-29T00:00:00.000001Z"));
+    check(Instant.parse("2100-03-01T00:00:00.000000001Z"));
+    check(Instant.parse("9999-12-31T00:00:00Z"));
+
+    // Outside the supported years
+    assertNull(EpochFormat.ISO_INSTANT.format(Instant.parse("+10000-01-01T00:00:00Z"), ZoneOffset.UTC));
+    assertNull(EpochFormat.RFC_1123.format(Instant.parse("-0001-01-01T00:00:00Z"), ZoneOffset.UTC));
+  }
+
+
+  @Test
+  public void testForFormatter() {
+    assertSame(EpochFormat.ISO_INSTANT, EpochFormat.forFormatter(DateTimeFormatter.ISO_INSTANT));
+    assertSame(EpochFormat.RFC_1123, EpochFormat.forFormatter(DateTimeFormatter.RFC_1123_DATE_TIME));
+    assertNull(EpochFormat.forFormatter(DateTimeFormatter.ISO_DATE));
+  }
+
+
+  @Test
+  public void testRandom() {
+    Random random = new Random(0xdade);
+    for (int i = 0; i < 2000; i++) {
+      // Years 0000 to 9999
+      long millis = Math.floorMod(random.nextLong(), 315_569_519_999_000L) - 62_167_219_200_000L;
+      check(Instant.ofEpochMilli(millis));
+      check(Instant.ofEpochSecond(millis / 1000, random.nextInt(1_000_000_000)));
+    }
+  }
+
+
+  @Test
+  public void testSharedFormatters() {
+    DateTimeFormats.Localized localized = DateTimeFormats.Localized.date(FormatStyle.LONG);
+    assertSame(DateTimeFormats.get(localized, Locale.UK), DateTimeFormats.get(DateTimeFormats.Localized.date(FormatStyle.LONG), Locale.UK));
+    assertSame(DateTimeFormats.get("yyyy", Locale.UK), DateTimeFormats.get("yyyy", Locale.UK));
+    assertEquals(Locale.FRANCE, DateTimeFormats.get(DateTimeFormatter.ISO_DATE, Locale.FRANCE).getLocale());
+  }
+
+
+  @Test
+  public void testTypes() {
+    ZoneId zoneId = ZoneId.of("Europe/Paris");
+    assertEquals("Sat, 14 Feb 2009 00:31:30 +0100", EpochFormat.RFC_1123.format(1234567890123L, zoneId));
+    assertEquals("2009-02-13T23:31:30.123Z", EpochFormat.ISO_INSTANT.format(new Date(1234567890123L), zoneId));
+    assertNull(EpochFormat.ISO_INSTANT.format("2009", zoneId));
+  }
+
+}
@@ -0,0 +1,53 @@
+package com.pippsford.stencil.blocks.value;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Simon Greatrix on 18/10/2026.
+ */
+@SuppressWarnings("checkstyle:AvoidEscapedUnicodeCharacters")
+class NumberFormatsTest {
+
+  @Test
+  public void testLocales() {
+    assertEquals("£1.50", NumberFormats.format(NumberFormats.CURRENCY, Locale.UK, 1.5));
+    // German currency formats use a non-breaking space
+    assertEquals("1,50 €", NumberFormats.format(NumberFormats.CURRENCY, Locale.GERMANY, 1.5).replace('\u00a0', ' '));
+    assertEquals("1.234,5", NumberFormats.format("#,##0.0", Locale.GERMANY, 1234.5));
+    assertEquals("1,234.5", NumberFormats.format("#,##0.0", Locale.UK, 1234.5));
+  }
+
+
+  @Test
+  public void testPool() {
+    NumberFormats.Pool pool = NumberFormats.getPool("0.0#", Locale.UK);
+    assertSame(pool, NumberFormats.getPool("0.0#", Locale.UK));
+
+    // A returned format is borrowed again, but two borrowers never share one
+    NumberFormat format = pool.borrow();
+    NumberFormat other = pool.borrow();
+    assertNotSame(format, other);
+    pool.release(format);
+    assertSame(format, pool.borrow());
+    pool.release(format);
+    pool.release(other);
+
+    // Only a limited number of idle formats are kept
+    List<NumberFormat> borrowed = new ArrayList<>();
+    for (int i = 0; i < NumberFormats.MAX_IDLE * 2; i++) {
+      borrowed.add(pool.borrow());
+    }
+    borrowed.forEach(pool::release);
+    assertEquals(NumberFormats.MAX_IDLE, pool.getIdleCount());
+  }
+
+}
@@ -0,0 +1,160 @@
+package com.pippsford.stencil.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+
+import com.pippsford.stencil.StencilException;
+import com.pippsford.stencil.blocks.Block;
+import com.pippsford.stencil.blocks.Static;
+import com.pippsford.stencil.blocks.Template;
+import com.pippsford.stencil.escape.StandardEscape;
+import com.pippsford.stencil.source.MemorySourceProvider;
+import com.pippsford.stencil.source.SourceStencilId;
+import com.pippsford.stencil.source.StencilId;
+
+/**
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class LruTemplateCacheTest {
+
+  MemorySourceProvider sourceProvider = new MemorySourceProvider();
+
+
+  private StencilId id(String name) throws StencilException {
+    return new SourceStencilId(sourceProvider, name, Locale.ROOT, null, StandardEscape.HTML_SAFE);
+  }
+
+
+  private Template template(int weight) {
+    Block[] blocks = new Block[weight];
+    for (int i = 0; i < weight; i++) {
+      blocks[i] = new Static("x", true);
+    }
+    return new Template(blocks);
+  }
+
+
+  @Test
+  public void testBadWeight() {
+    assertThrows(IllegalArgumentException.class, () -> new LruTemplateCache(0));
+  }
+
+
+  @Test
+  public void testEviction() throws StencilException {
+    LruTemplateCache cache = new LruTemplateCache(10);
+    cache.put(id("a"), template(4));
+    cache.put(id("b"), template(4));
+
+    // Use "a" so "b" is the least recently used
+    assertNotNull(cache.get(id("a")));
+    cache.put(id("c"), template(4));
+
+    assertNull(cache.get(id("b")));
+    assertNotNull(cache.get(id("a")));
+    assertNotNull(cache.get(id("c")));
+
+    CacheStatistics statistics = cache.getStatistics();
+    assertEquals(3, statistics.hits());
+    assertEquals(1, statistics.misses());
+    assertEquals(1, statistics.evictions());
+    assertEquals(2, statistics.size());
+    assertEquals(8, statistics.weight());
+    assertEquals(0.75, statistics.hitRate());
+  }
+
+
+  @Test
+  public void testInvalidate() throws StencilException {
+    LruTemplateCache cache = new LruTemplateCache(100);
+    Template a = template(1);
+    cache.put(id("a"), a);
+    cache.put(id("b"), template(2));
+    cache.invalidate(id -> ((SourceStencilId) id).getSource().getPath().equals("/b"));
+    assertSame(a, cache.get(id("a")));
+    assertNull(cache.get(id("b")));
+    assertEquals(1, cache.getStatistics().weight());
+
+    cache.invalidateAll();
+    assertNull(cache.get(id("a")));
+    assertEquals(0, cache.getStatistics().weight());
+  }
+
+
+  @Test
+  public void testPeek() throws StencilException {
+    LruTemplateCache cache = new LruTemplateCache(10);
+    Template a = template(4);
+    cache.put(id("a"), a);
+    cache.put(id("b"), template(4));
+    assertSame(a, cache.peek(id("a")));
+    assertNull(cache.peek(id("x")));
+
+    // Peeking does not count as a use, so "a" is still the least recently used
+    cache.put(id("c"), template(4));
+    assertNull(cache.peek(id("a")));
+    assertEquals(0, cache.getStatistics().hits());
+    assertEquals(0, cache.getStatistics().misses());
+  }
+
+
+  @Test
+  public void testTooHeavy() throws StencilException {
+    LruTemplateCache cache = new LruTemplateCache(5);
+    cache.put(id("a"), template(3));
+    cache.put(id("b"), template(6));
+    assertNull(cache.get(id("b")));
+    assertNotNull(cache.get(id("a")));
+    assertEquals(0, cache.getStatistics().evictions());
+  }
+
+
+  @Test
+  public void testTooHeavyReplacement() throws StencilException {
+    LruTemplateCache cache = new LruTemplateCache(5);
+    Template a = template(3);
+    List<Template> evicted = new ArrayList<>();
+    cache.setEvictionListener((id, t) -> evicted.add(t));
+    cache.put(id("a"), a);
+    cache.put(id("a"), template(6));
+
+    // The old version is dropped and reported
+    assertNull(cache.get(id("a")));
+    assertEquals(List.of(a), evicted);
+    assertEquals(1, cache.getStatistics().evictions());
+    assertEquals(0, cache.getStatistics().weight());
+  }
+
+
+  @Test
+  public void testSecondChance() throws StencilException {
+    LruTemplateCache cache = new LruTemplateCache(3);
+    cache.put(id("a"), template(1));
+    cache.put(id("b"), template(1));
+    cache.put(id("c"), template(1));
+    assertNotNull(cache.get(id("a")));
+    assertNotNull(cache.get(id("c")));
+
+    // "a" gets a second chance, so the unused "b" goes first
+    cache.put(id("d"), template(1));
+    assertNull(cache.peek(id("b")));
+
+    // "c" gets a second chance, so the unused "d" goes next, ahead of "a" whose mark has been cleared
+    cache.put(id("e"), template(1));
+    assertNull(cache.peek(id("d")));
+    assertNotNull(cache.peek(id("a")));
+    assertNotNull(cache.peek(id("c")));
+    assertNotNull(cache.peek(id("e")));
+    assertEquals(2, cache.getStatistics().evictions());
+  }
+
+}
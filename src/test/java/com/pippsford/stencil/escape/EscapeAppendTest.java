@@ -0,0 +1,69 @@
+package com.pippsford.stencil.escape;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Simon Greatrix on 18/10/2026.
+ */
+@SuppressWarnings("checkstyle:AvoidEscapedUnicodeCharacters")
+class EscapeAppendTest {
+
+  private static final String[] INPUTS = {
+      "",
+      "This.is.safe.text",
+      "Fish & Chips < £5 > \"cheap\" 'eh'",
+      "Already &amp; escaped &lt;b&gt;",
+      "Line 1\r\nLine 2\rLine 3\n",
+      "Tab\tBack\\slash/solidus `tick` {{braces}} a+b=c @home",
+      "C0 \u0001 C1 \u0085 DEL \u007f non ﷐￿",
+      "Emoji 😀 and BMP ™€é",
+      "Lone \ud83d surrogate \ude00 here",
+      "😀"
+  };
+
+
+  @Test
+  public void testAppendMatchesString() throws IOException {
+    for (StandardEscape es : StandardEscape.values()) {
+      for (String input : INPUTS) {
+        StringBuilder builder = new StringBuilder("prefix:");
+        es.escape(input, builder);
+        assertEquals("prefix:" + es.escape(input), builder.toString(), es + " on " + input);
+      }
+    }
+  }
+
+
+  @Test
+  public void testCleanInputIsNotCopied() {
+    String input = "Nothing to see here";
+    assertSame(input, HTML.escape(input));
+    assertSame(input, HTML.escapeOnce(input));
+    assertSame(input, JsonScriptLiteral.JSON.escape(input));
+    assertSame(input, EcmaScriptLiteral.ECMA_ASCII.escape(input));
+  }
+
+
+  @Test
+  public void testNonBmp() {
+    assertEquals("\\u{1f600}", EcmaScriptLiteral.ECMA_ASCII.escape("😀"));
+    assertEquals("\\u{10ffff}", EcmaScriptLiteral.ECMA_ASCII.escape("􏿿"));
+    assertEquals("\\ud83d\\ude00", JavaScriptLiteral.JAVA_ASCII.escape("😀"));
+  }
+
+
+  @Test
+  public void testNull() throws IOException {
+    for (StandardEscape es : StandardEscape.values()) {
+      StringBuilder builder = new StringBuilder();
+      es.escape(null, builder);
+      assertEquals("", builder.toString());
+    }
+  }
+
+}
@@ -0,0 +1,83 @@
+package com.pippsford.stencil.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.pippsford.stencil.blocks.BlockTypes;
+
+/**
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class BlockParserTest {
+
+  private static List<String> parse(String source, boolean normalMode) {
+    BlockParser parser = new BlockParser(source);
+    List<String> result = new ArrayList<>();
+    FixMatch match;
+    while ((match = parser.next(normalMode)) != null) {
+      result.add((match.type == null ? "STATIC" : match.type.name()) + ":" + match.text);
+    }
+    return result;
+  }
+
+
+  @Test
+  public void testCaseAndSpace() {
+    assertEquals(
+        List.of("IF:[ IF x ]", "STATIC:a", "END:[\tEnd]", "INCLUDE:[ include b.txt]", "SET:[ſet escape=html]"),
+        parse("[ IF x ]a[\tEnd][ include b.txt][ſet escape=html]", true)
+    );
+  }
+
+
+  @Test
+  public void testInverted() {
+    assertEquals(
+        List.of("STATIC:[if x]{a} ", "VALUE_HERE:{>>M}doc{M}", "STATIC: {b}"),
+        parse("[if x]{a} {>>M}doc{M} {b}", false)
+    );
+  }
+
+
+  @Test
+  public void testNotBlocks() {
+    assertEquals(List.of("STATIC:{ a: [1, 2], b: 'c' }[x] [ {"), parse("{ a: [1, 2], b: 'c' }[x] [ {", true));
+  }
+
+
+  @Test
+  public void testOverlapping() {
+    // The resource starts before the value inside it
+    assertEquals(List.of("STATIC:x", "RESOURCE_1:[{msg}]", "VALUE:{msg}"), parse("x[{msg}]{msg}", true));
+  }
+
+
+  @Test
+  public void testPushback() {
+    BlockParser parser = new BlockParser("[else]text");
+    FixMatch match = parser.next(true);
+    assertEquals(BlockTypes.ELSE, match.type);
+    parser.pushback(match);
+    assertEquals(BlockTypes.ELSE, parser.next(true).type);
+    assertEquals("text", parser.next(true).text);
+    assertNull(parser.next(true));
+  }
+
+
+  @Test
+  public void testValues() {
+    assertEquals(
+        List.of(
+            "VALUE:{a}", "VALUE_COMMENT:{* c *}", "VALUE_NUMBER:{n,number,#0}", "STATIC: ", "VALUE_DATE_TIME_2:{d,datetime,short,long}",
+            "VALUE_FORMAT_HERE:{f,format,>>M}%s{M}", "COMMENT:[* x *]"
+        ),
+        parse("{a}{* c *}{n,number,#0} {d,datetime,short,long}{f,format,>>M}%s{M}[* x *]", true)
+    );
+  }
+
+}
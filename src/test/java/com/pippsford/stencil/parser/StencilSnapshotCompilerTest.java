@@ -0,0 +1,143 @@
+package com.pippsford.stencil.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.pippsford.stencil.StencilException;
+import com.pippsford.stencil.Stencils;
+import com.pippsford.stencil.source.FileSourceProvider;
+import com.pippsford.stencil.source.MemorySourceProvider;
+
+/**
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class StencilSnapshotCompilerTest {
+
+  ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+  ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+  Path rootPath;
+
+
+  private int run(String... args) throws IOException {
+    return StencilSnapshotCompiler.run(
+        args,
+        new PrintStream(out, true, StandardCharsets.UTF_8),
+        new PrintStream(err, true, StandardCharsets.UTF_8)
+    );
+  }
+
+
+  @BeforeEach
+  public void setup() throws IOException {
+    rootPath = Files.createTempDirectory("stencil-compile");
+    Files.createDirectories(rootPath.resolve("src/sub"));
+    Files.writeString(rootPath.resolve("src/a.txt"), "A[include sub/b.txt]");
+    Files.writeString(rootPath.resolve("src/sub/b.txt"), "B");
+    Files.writeString(rootPath.resolve("src/sub/b_fr.txt"), "Bonjour");
+    Files.writeString(rootPath.resolve("src/c_en_GB.txt"), "Cheerio");
+  }
+
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    try (Stream<Path> paths = Files.walk(rootPath)) {
+      for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.deleteIfExists(p);
+      }
+    }
+  }
+
+
+  @Test
+  public void testBroken() throws IOException {
+    Files.writeString(rootPath.resolve("src/sub/b_fr.txt"), "[if x]Bonjour");
+    Path output = rootPath.resolve("out/stencils.snapshot");
+    assertEquals(2, run("files", rootPath.resolve("src").toString(), output.toString()));
+    assertFalse(Files.exists(output));
+    String errors = err.toString(StandardCharsets.UTF_8);
+    assertTrue(errors.contains("FAILED /a.txt [fr]"), errors);
+    assertTrue(errors.contains("FAILED /sub/b.txt [fr]"), errors);
+  }
+
+
+  @Test
+  public void testCompendium() throws IOException {
+    Files.writeString(rootPath.resolve("src/stencils.comp"), "/x.txt\nX[include y.txt]\n\n/y.txt\nY\n");
+    Files.writeString(rootPath.resolve("src/stencils_fr.comp"), "/y.txt\nOui\n");
+    Path output = rootPath.resolve("out/stencils.snapshot");
+    assertEquals(0, run("compendium", rootPath.resolve("src").toString(), output.toString(), "/stencils.comp"), err.toString(StandardCharsets.UTF_8));
+
+    // x and y in the root and "fr" locales
+    assertEquals(4, TemplateSnapshot.load(output).size());
+  }
+
+
+  @Test
+  public void testFiles() throws IOException, StencilException {
+    Path output = rootPath.resolve("out/stencils.snapshot");
+    assertEquals(0, run("files", rootPath.resolve("src").toString(), output.toString(), "--locale=en-GB"));
+
+    TemplateSnapshot snapshot = TemplateSnapshot.load(output);
+    // a and b in the root and "fr" locales, plus a, b and c in the "en-GB" locale.
+    assertEquals(7, snapshot.size());
+
+    snapshot.setVerifySources(false);
+    Stencils stencils = new Stencils(new FileSourceProvider(rootPath.resolve("src")));
+    stencils.setTemplateSnapshot(snapshot);
+    assertEquals("ABonjour", stencils.write("a.txt", Locale.FRENCH, ZoneId.of("Europe/Paris"), Map.of()));
+    assertEquals("Cheerio", stencils.write("c.txt", Locale.UK, ZoneId.of("Europe/London"), Map.of()));
+    assertEquals(3, snapshot.getHits());
+    assertEquals(0, snapshot.getMisses());
+  }
+
+
+  @Test
+  public void testLocalise() {
+    assertEquals(new StencilSnapshotCompiler.Localised("/a/b.txt", Locale.ROOT), StencilSnapshotCompiler.localise("/a/b.txt"));
+    assertEquals(new StencilSnapshotCompiler.Localised("/a/b.txt", Locale.UK), StencilSnapshotCompiler.localise("/a/b_en_GB.txt"));
+    assertEquals(new StencilSnapshotCompiler.Localised("/a/b.txt", Locale.FRENCH), StencilSnapshotCompiler.localise("/a/b_fr.txt"));
+    assertEquals(new StencilSnapshotCompiler.Localised("/a/my_file.txt", Locale.ROOT), StencilSnapshotCompiler.localise("/a/my_file.txt"));
+  }
+
+
+  @Test
+  public void testSourceRoot() throws IOException, StencilException {
+    Path output = rootPath.resolve("out/stencils.snapshot");
+    assertEquals(0, run("files", rootPath.resolve("src").toString(), output.toString(), "--source-root=elsewhere"));
+
+    // The snapshot is used by a provider with the specified root, even though it does not have the files
+    TemplateSnapshot snapshot = TemplateSnapshot.load(output);
+    snapshot.setVerifySources(false);
+    Stencils stencils = new Stencils(new MemorySourceProvider("elsewhere"));
+    stencils.setTemplateSnapshot(snapshot);
+    assertEquals("AB", stencils.write("a.txt", Locale.ROOT, ZoneId.of("UTC"), Map.of()));
+    assertEquals(2, snapshot.getHits());
+  }
+
+
+  @Test
+  public void testUsage() throws IOException {
+    assertEquals(1, run("files", rootPath.toString()));
+    assertTrue(err.toString(StandardCharsets.UTF_8).contains("Usage"));
+  }
+
+}
@@ -0,0 +1,153 @@
+package com.pippsford.stencil.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.pippsford.stencil.StencilException;
+import com.pippsford.stencil.Stencils;
+import com.pippsford.stencil.source.MemorySourceProvider;
+
+/**
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class TemplateSnapshotTest {
+
+  static final Map<String, Object> PARAMS = Map.of(
+      "a", "&",
+      "p", "%",
+      "x", "\"x\"",
+      "list", List.of(1, 2, 3)
+  );
+
+  static final String[] NAMES = {"globals.txt", "here.txt", "include.txt", "loop.txt", "escape.txt"};
+
+  MemorySourceProvider provider = new MemorySourceProvider();
+
+  Path path;
+
+
+  private void putFiles() {
+    provider.putFile(Locale.ROOT, "globals.txt", "{x}[global escape=ecma]{a}[* comment *]");
+    provider.putFile(Locale.ROOT, "here.txt", "[global mode=inverted]{a}{none: >>EOT}{a}{p} [set escape=url]{p}{EOT} {>>EOT}{a}{p}{EOT}");
+    provider.putFile(Locale.ROOT, "include.txt", "<[include loop.txt]>[if x]yes[else]no[end]");
+    provider.putFile(Locale.ROOT, "loop.txt", "[loop list]{list}[end]");
+    provider.putFile(Locale.UK, "loop.txt", "[loop list]({list})[end]");
+    provider.putFile(Locale.ROOT, "escape.txt", "[set escape=none]{x} {{a}}");
+  }
+
+
+  @BeforeEach
+  public void setup() throws IOException {
+    path = Files.createTempFile("stencil-snapshot", ".bin");
+  }
+
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(path);
+  }
+
+
+  private String render(Stencils stencils, String name) throws StencilException {
+    return stencils.write(name, Locale.UK, ZoneId.of("Europe/London"), PARAMS);
+  }
+
+
+  @Test
+  public void testBadFile() throws IOException {
+    Files.write(path, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+    assertThrows(IOException.class, () -> TemplateSnapshot.load(path));
+  }
+
+
+  @Test
+  public void testChangedSource() throws IOException, StencilException {
+    putFiles();
+    Stencils stencils = new Stencils(provider);
+    TemplateSnapshot snapshot = TemplateSnapshot.create();
+    stencils.setTemplateSnapshot(snapshot);
+    render(stencils, "include.txt");
+    snapshot.write(path);
+
+    provider.putFile(Locale.UK, "loop.txt", "[loop list]+[end]");
+    TemplateSnapshot loaded = TemplateSnapshot.load(path);
+    stencils = new Stencils(provider);
+    stencils.setTemplateSnapshot(loaded);
+    assertEquals("<+++>yes", render(stencils, "include.txt"));
+    assertEquals(1, loaded.getHits());
+    assertEquals(1, loaded.getMisses());
+
+    // Writing over the loaded file replaces the stale entry
+    loaded.write(path);
+    TemplateSnapshot reloaded = TemplateSnapshot.load(path);
+    assertEquals(2, reloaded.size());
+    stencils = new Stencils(provider);
+    stencils.setTemplateSnapshot(reloaded);
+    assertEquals("<+++>yes", render(stencils, "include.txt"));
+    assertEquals(2, reloaded.getHits());
+    assertEquals(0, reloaded.getMisses());
+  }
+
+
+  @Test
+  public void testOtherRoot() throws StencilException {
+    putFiles();
+    TemplateSnapshot snapshot = TemplateSnapshot.create();
+    Stencils stencils = new Stencils(provider);
+    stencils.setTemplateSnapshot(snapshot);
+    render(stencils, "loop.txt");
+
+    // A stencil with the same name from another provider is not taken from the snapshot
+    MemorySourceProvider other = new MemorySourceProvider("other");
+    other.putFile(Locale.ROOT, "loop.txt", "[loop list]-[end]");
+    snapshot.setVerifySources(false);
+    stencils = new Stencils(other);
+    stencils.setTemplateSnapshot(snapshot);
+    assertEquals("---", render(stencils, "loop.txt"));
+    assertEquals(0, snapshot.getHits());
+  }
+
+
+  @Test
+  public void testRoundTrip() throws IOException, StencilException {
+    putFiles();
+    Stencils plain = new Stencils(provider);
+
+    Stencils recording = new Stencils(provider);
+    TemplateSnapshot snapshot = TemplateSnapshot.create();
+    recording.setTemplateSnapshot(snapshot);
+    for (String name : NAMES) {
+      assertEquals(render(plain, name), render(recording, name), name);
+    }
+    assertEquals(0, snapshot.getHits());
+    assertEquals(NAMES.length, snapshot.size());
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    snapshot.write(bytes);
+    TemplateSnapshot loaded = TemplateSnapshot.load(new ByteArrayInputStream(bytes.toByteArray()));
+    assertEquals(NAMES.length, loaded.size());
+
+    Stencils replaying = new Stencils(provider);
+    replaying.setTemplateSnapshot(loaded);
+    for (String name : NAMES) {
+      assertEquals(render(plain, name), render(replaying, name), name);
+    }
+    assertEquals(NAMES.length, loaded.getHits());
+    assertEquals(0, loaded.getMisses());
+  }
+
+}
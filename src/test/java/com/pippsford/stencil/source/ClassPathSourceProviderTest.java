@@ -2,6 +2,7 @@ package com.pippsford.stencil.source;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.time.ZoneId;
@@ -74,4 +75,14 @@ class ClassPathSourceProviderTest {
     assertEquals("Hello Mr Hamster!\n(C) Copyright SETL", output);
   }
 
-}
\ No newline at end of file
+
+  @Test
+  public void test5() {
+    // Remembering missing resources is opt-in
+    ClassPathSourceProvider provider = new ClassPathSourceProvider("/com/pippsford/stencil/test/");
+    assertNull(provider.getNegativeCacheTtl());
+    provider.setNegativeCacheTtl(IndividualSourceProvider.FOREVER);
+    assertEquals(IndividualSourceProvider.FOREVER, provider.getNegativeCacheTtl());
+  }
+
+}
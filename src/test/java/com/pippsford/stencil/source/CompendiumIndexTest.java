@@ -0,0 +1,85 @@
+package com.pippsford.stencil.source;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class CompendiumIndexTest {
+
+  Path path;
+
+
+  private CompendiumIndex index(String text) throws IOException, StencilStorageException {
+    Files.write(path, text.getBytes(StandardCharsets.UTF_8));
+    return CompendiumIndex.load(path.toUri().toURL());
+  }
+
+
+  @BeforeEach
+  public void setup() throws IOException {
+    path = Files.createTempFile("compendium", ".txt");
+  }
+
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(path);
+  }
+
+
+  @Test
+  public void testFirstWins() throws IOException, StencilStorageException {
+    CompendiumIndex index = index("/a\nFirst\n/b >> EOT\nHere\n/a\nEOT\n/a\nSecond\n");
+    assertEquals("First\n", index.get("/a"));
+    assertEquals("Here\n/a\n", index.get("/b"));
+  }
+
+
+  @Test
+  public void testLineEndings() throws IOException, StencilStorageException {
+    CompendiumIndex index = index("ignored\r\n/a\r\nLine 1\rLine 2\r\n\r\n/b\nB ∑ é\n\n\n/c\nno final newline");
+    assertEquals("Line 1\nLine 2\n", index.get("/a"));
+    assertEquals("B ∑ é\n", index.get("/b"));
+    assertEquals("no final newline\n", index.get("/c"));
+    assertNull(index.get("/d"));
+  }
+
+
+  @Test
+  public void testMissingMarker() throws IOException, StencilStorageException {
+    CompendiumIndex index = index("/a\nA\n/b >> EOT\nB\n/c\nC\n");
+    assertEquals("A\n", index.get("/a"));
+    assertThrows(CompendiumMarkerMissingException.class, () -> index.get("/b"));
+    assertThrows(CompendiumMarkerMissingException.class, () -> index.get("/c"));
+  }
+
+
+  @Test
+  public void testStale() throws IOException, StencilStorageException {
+    CompendiumIndex index = index("/a\nA\n");
+    assertFalse(index.isStale());
+
+    // The index keeps its own copy, so shortening the file does not affect it
+    Files.write(path, new byte[0]);
+    assertTrue(index.isStale());
+    assertEquals("A\n", index.get("/a"));
+
+    Files.delete(path);
+    assertTrue(index.isStale());
+  }
+
+}
@@ -4,12 +4,18 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Locale;
 
 import org.junit.jupiter.api.Test;
 
 import com.pippsford.stencil.Source;
+import com.pippsford.stencil.StencilException;
 
 /**
  * @author Simon Greatrix on 20/01/2021.
@@ -92,4 +98,28 @@ class CompendiumSourceProviderTest {
     assertThrows(CompendiumMarkerMissingException.class, () -> provider.getSource(Source.of("/bye"), Locale.FRANCE));
   }
 
+
+  @Test
+  public void test10() throws IOException, StencilException {
+    Path root = Files.createTempDirectory("compendium");
+    Path file = root.resolve("changing.txt");
+    try (URLClassLoader classLoader = new URLClassLoader(new URL[]{root.toUri().toURL()}, null)) {
+      Files.writeString(file, "/a\nVersion 1\n");
+      provider = new CompendiumSourceProvider("changing.txt");
+      provider.setClassLoader(classLoader);
+      assertEquals("Version 1\n", provider.getSource(Source.of("/a"), Locale.ROOT));
+
+      // A changed file is read again
+      Files.writeString(file, "/a\nVersion 22\n");
+      assertEquals("Version 22\n", provider.getSource(Source.of("/a"), Locale.ROOT));
+
+      // A deleted file is forgotten
+      Files.delete(file);
+      assertNull(provider.getSource(Source.of("/a"), Locale.ROOT));
+    } finally {
+      Files.deleteIfExists(file);
+      Files.delete(root);
+    }
+  }
+
 }
@@ -0,0 +1,133 @@
+package com.pippsford.stencil.source;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.pippsford.stencil.StencilException;
+import com.pippsford.stencil.Stencils;
+import com.pippsford.stencil.blocks.Template;
+
+/**
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class FileSourceProviderWatchTest {
+
+  private static final long TIMEOUT = 10_000;
+
+  FileSourceProvider provider;
+
+  Path rootPath;
+
+
+  private String awaitChange(BlockingQueue<String> changes, String expected) throws InterruptedException {
+    long end = System.currentTimeMillis() + TIMEOUT;
+    while (System.currentTimeMillis() < end) {
+      String path = changes.poll(100, TimeUnit.MILLISECONDS);
+      if (expected.equals(path)) {
+        return path;
+      }
+    }
+    return null;
+  }
+
+
+  private String awaitOutput(Stencils stencils, String name, String expected) throws StencilException, InterruptedException {
+    long end = System.currentTimeMillis() + TIMEOUT;
+    String output = stencils.write(name, Locale.UK, null, Map.of());
+    while (!expected.equals(output) && System.currentTimeMillis() < end) {
+      Thread.sleep(50);
+      output = stencils.write(name, Locale.UK, null, Map.of());
+    }
+    return output;
+  }
+
+
+  private Template cached(Stencils stencils, String name) throws StencilNotFoundException {
+    return stencils.getTemplateCache().get(new SourceStencilId(provider, name, Locale.UK, null, stencils.getDefaultEscape()));
+  }
+
+
+  @BeforeEach
+  public void setup() throws IOException {
+    rootPath = Files.createTempDirectory("stencil-watch");
+    Files.createDirectories(rootPath.resolve("sub"));
+    Files.writeString(rootPath.resolve("a.txt"), "A[include sub/b.txt]");
+    Files.writeString(rootPath.resolve("sub/b.txt"), "B[include c.txt]");
+    Files.writeString(rootPath.resolve("sub/c.txt"), "C");
+    Files.writeString(rootPath.resolve("other.txt"), "Other");
+    provider = new FileSourceProvider(rootPath);
+  }
+
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    provider.stopWatching();
+    try (Stream<Path> paths = Files.walk(rootPath)) {
+      for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.deleteIfExists(p);
+      }
+    }
+  }
+
+
+  @Test
+  public void testListener() throws Exception {
+    BlockingQueue<String> changes = new LinkedBlockingQueue<>();
+    provider.addChangeListener(p -> changes.add(String.valueOf(p)));
+    assertFalse(provider.isWatching());
+    provider.startWatching();
+    provider.startWatching();
+    assertTrue(provider.isWatching());
+
+    Files.writeString(rootPath.resolve("sub/c_fr.txt"), "C-fr");
+    assertEquals("/sub/c_fr.txt", awaitChange(changes, "/sub/c_fr.txt"));
+
+    // Files in a new directory are reported, even if they were created before the directory was watched.
+    Path dir = Files.createDirectories(rootPath.resolve("new/deeper"));
+    Files.writeString(dir.resolve("d.txt"), "D");
+    assertEquals("/new/deeper/d.txt", awaitChange(changes, "/new/deeper/d.txt"));
+
+    provider.stopWatching();
+    assertFalse(provider.isWatching());
+  }
+
+
+  @Test
+  public void testTransitiveInvalidation() throws Exception {
+    Stencils stencils = new Stencils(provider);
+    provider.startWatching();
+
+    assertEquals("ABC", stencils.write("a.txt", Locale.UK, null, Map.of()));
+    assertEquals("Other", stencils.write("other.txt", Locale.UK, null, Map.of()));
+    Template other = cached(stencils, "other.txt");
+
+    Files.writeString(rootPath.resolve("sub/c.txt"), "C2");
+    assertEquals("ABC2", awaitOutput(stencils, "a.txt", "ABC2"));
+
+    // Unrelated templates are not re-parsed
+    assertSame(other, cached(stencils, "other.txt"));
+
+    // A new localised file takes precedence for its locale
+    Files.writeString(rootPath.resolve("sub/c_en_GB.txt"), "C-uk");
+    assertEquals("ABC-uk", awaitOutput(stencils, "a.txt", "ABC-uk"));
+    assertSame(other, cached(stencils, "other.txt"));
+  }
+
+}
@@ -3,19 +3,46 @@ package com.pippsford.stencil.source;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.function.BiFunction;
 
 import org.junit.jupiter.api.Test;
 
 import com.pippsford.stencil.Source;
+import com.pippsford.stencil.SourceChangeListener;
+import com.pippsford.stencil.StencilException;
+import com.pippsford.stencil.Stencils;
 
 /**
  * @author Simon Greatrix on 13/02/2021.
  */
 class FramingSourceProviderTest {
 
+  /** A provider which records its listeners. */
+  static class ListenedProvider extends MemorySourceProvider {
+
+    final List<SourceChangeListener> listeners = new ArrayList<>();
+
+
+    @Override
+    public void addChangeListener(SourceChangeListener listener) {
+      listeners.add(listener);
+    }
+
+
+    @Override
+    public void removeChangeListener(SourceChangeListener listener) {
+      listeners.remove(listener);
+    }
+
+  }
+
+
+
   BiFunction<Source, Locale, String> footer = (s, l) -> "FOOT:" + l;
 
   BiFunction<Source, Locale, String> header = (s, l) -> "HEAD:" + l + "\n";
@@ -25,6 +52,24 @@ class FramingSourceProviderTest {
   FramingSourceProvider sourceProvider = new FramingSourceProvider(memory);
 
 
+  @Test
+  void changeListeners() throws StencilException {
+    ListenedProvider listened = new ListenedProvider();
+    listened.putFile(Locale.ROOT, "test", "Version 1");
+    Stencils stencils = new Stencils(new FramingSourceProvider(listened));
+    assertEquals("Version 1", stencils.write("test", null));
+    assertEquals(1, listened.listeners.size());
+
+    // A change to the framed provider reaches the stencils
+    listened.putFile(Locale.ROOT, "test", "Version 2");
+    listened.listeners.get(0).sourceChanged(null);
+    assertEquals("Version 2", stencils.write("test", null));
+
+    stencils.close();
+    assertTrue(listened.listeners.isEmpty());
+  }
+
+
   @Test
   void getFooterProvider() {
     assertNotSame(header, sourceProvider.getFooterProvider());
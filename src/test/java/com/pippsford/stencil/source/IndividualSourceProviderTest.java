@@ -0,0 +1,94 @@
+package com.pippsford.stencil.source;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.pippsford.stencil.Source;
+
+/**
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class IndividualSourceProviderTest {
+
+  static class CountingProvider extends IndividualSourceProvider {
+
+    final Map<String, String> files = new HashMap<>();
+
+    final List<String> probes = new ArrayList<>();
+
+
+    @Override
+    public String getSourceRoot() {
+      return "counting";
+    }
+
+
+    @Override
+    protected String handleGet(String path) {
+      probes.add(path);
+      return files.get(path);
+    }
+
+  }
+
+
+
+  CountingProvider provider = new CountingProvider();
+
+
+  @Test
+  public void testDisabled() throws StencilStorageException, StencilNotFoundException {
+    provider.files.put("/a.txt", "A");
+    assertEquals("A", provider.getSource(Source.of("/a.txt"), Locale.UK));
+    assertEquals("A", provider.getSource(Source.of("/a.txt"), Locale.UK));
+    assertEquals(List.of("/a_en_GB.txt", "/a_en.txt", "/a.txt", "/a_en_GB.txt", "/a_en.txt", "/a.txt"), provider.probes);
+  }
+
+
+  @Test
+  public void testExpiry() throws StencilStorageException, StencilNotFoundException, InterruptedException {
+    provider.setNegativeCacheTtl(Duration.ofMillis(1));
+    assertNull(provider.getSource(Source.of("/a.txt"), Locale.ROOT));
+    Thread.sleep(10);
+    assertNull(provider.getSource(Source.of("/a.txt"), Locale.ROOT));
+    assertEquals(List.of("/a.txt", "/a.txt"), provider.probes);
+  }
+
+
+  @Test
+  public void testForever() throws StencilStorageException, StencilNotFoundException {
+    provider.setNegativeCacheTtl(IndividualSourceProvider.FOREVER);
+    provider.files.put("/a.txt", "A");
+    assertEquals("A", provider.getSource(Source.of("/a.txt"), Locale.UK));
+    assertEquals("A", provider.getSource(Source.of("/a.txt"), Locale.UK));
+    assertNull(provider.getSource(Source.of("/b.txt"), Locale.ROOT));
+    assertNull(provider.getSource(Source.of("/b.txt"), Locale.ROOT));
+    assertEquals(List.of("/a_en_GB.txt", "/a_en.txt", "/a.txt", "/a.txt", "/b.txt"), provider.probes);
+
+    // A new file is not found until the cache is invalidated
+    provider.files.put("/a_en.txt", "English");
+    assertEquals("A", provider.getSource(Source.of("/a.txt"), Locale.UK));
+    provider.invalidateNegativeCache("/a_en.txt");
+    assertEquals("English", provider.getSource(Source.of("/a.txt"), Locale.UK));
+  }
+
+
+  @Test
+  public void testMemoryProvider() throws StencilStorageException, StencilNotFoundException {
+    MemorySourceProvider memory = new MemorySourceProvider();
+    memory.setNegativeCacheTtl(IndividualSourceProvider.FOREVER);
+    assertNull(memory.getSource(Source.of("/a.txt"), Locale.UK));
+    memory.putFile(Locale.ENGLISH, "/a.txt", "English");
+    assertEquals("English", memory.getSource(Source.of("/a.txt"), Locale.UK));
+  }
+
+}
@@ -0,0 +1,117 @@
+package com.pippsford.stencil.value;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.pippsford.stencil.blocks.Pojo;
+import com.pippsford.stencil.value.RecordValueProviderTest.PoRec;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class CompiledPathTest {
+
+  private static final String[] PATHS = {
+      "a", "a.b", "a.b.c", "a.name", "a.size", "a.isEmpty", "a.0", "a.1", "a.5", "a.0.name", "a.-1", "a.title", "a.other.name", "a.qualifications.1",
+      "a.age", "a.class", "a.name.size", "a.x", "a.top", "a.b.top", "a.value.b"
+  };
+
+
+  private void assertSameAsAccessor(Object a) {
+    Map<String, Object> root = new HashMap<>();
+    root.put("top", "TOP");
+    root.put("name", "root name");
+    root.put("x", 12);
+    if (a != null) {
+      root.put("a", a);
+    }
+    ValueProvider provider = ValueAccessor.makeProvider(ValueProvider.NULL_VALUE_PROVIDER, root);
+    for (String path : PATHS) {
+      CompiledPath compiledPath = CompiledPath.of(path);
+      // Run twice to exercise both the first resolution and the cached resolution.
+      for (int i = 0; i < 2; i++) {
+        assertEquals(ValueAccessor.get(provider, ValueAccessor.toKey(path)), compiledPath.get(provider), path + " on " + a);
+      }
+    }
+  }
+
+
+  @Test
+  public void testBean() {
+    Pojo pojo = new Pojo("Dr", "Karl", 45);
+    pojo.setQualifications(List.of("a", "b"));
+    pojo.setOther(new Pojo("Mrs", "Jane", 50));
+    assertSameAsAccessor(pojo);
+  }
+
+
+  @Test
+  public void testLists() {
+    assertSameAsAccessor(List.of("p", "q"));
+    assertSameAsAccessor(new String[]{"p", "q", "r"});
+    assertSameAsAccessor(new int[0]);
+    assertSameAsAccessor(List.of(Map.of("name", "first")));
+    assertSameAsAccessor(Set.of("p"));
+    assertSameAsAccessor(new ArrayList<>());
+  }
+
+
+  @Test
+  public void testMaps() {
+    assertSameAsAccessor(Map.of("b", Map.of("c", "C")));
+    assertSameAsAccessor(Map.of("b", "B", "size", 100));
+    assertSameAsAccessor(Map.of());
+    assertSameAsAccessor(Map.of("b", new PoRec("Dr", "Karl", 45)));
+  }
+
+
+  @Test
+  public void testMissing() {
+    assertSameAsAccessor(null);
+  }
+
+
+  @Test
+  public void testNames() {
+    assertArrayEquals(new String[]{"a", "b", "c"}, CompiledPath.of("a.b.c").getNames());
+    assertEquals("a.b.c", CompiledPath.of("a.b.c").toString());
+  }
+
+
+  @Test
+  public void testPolymorphic() {
+    CompiledPath path = CompiledPath.of("a.name");
+    Object[] values = {
+        new Pojo("Dr", "Karl", 45), new PoRec("Dr", "Karl", 45), Map.of("name", "map"), List.of(), "string", 5, new MutableMapValueProvider(
+        ValueProvider.NULL_VALUE_PROVIDER)
+    };
+    for (int i = 0; i < 3; i++) {
+      for (Object value : values) {
+        ValueProvider provider = new MapValueProvider(ValueProvider.NULL_VALUE_PROVIDER, Map.of("a", value, "name", "root"));
+        assertEquals(ValueAccessor.get(provider, new String[]{"a", "name"}), path.get(provider));
+      }
+    }
+  }
+
+
+  @Test
+  public void testProvider() {
+    MutableMapValueProvider map = new MutableMapValueProvider(ValueProvider.NULL_VALUE_PROVIDER);
+    map.put("b", Map.of("c", "C"));
+    assertSameAsAccessor(map);
+  }
+
+
+  @Test
+  public void testRecord() {
+    assertSameAsAccessor(new PoRec("Dr", "Karl", 45));
+  }
+
+}
@@ -0,0 +1,116 @@
+package com.pippsford.stencil.value;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.pippsford.stencil.escape.Escape;
+import com.pippsford.stencil.escape.StandardEscape;
+
+/**
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class EscapedValuesTest {
+
+  /** Counts how often it is used. */
+  static class CountingEscape implements Escape {
+
+    final AtomicInteger count = new AtomicInteger();
+
+
+    @Override
+    public String escape(String input) {
+      count.incrementAndGet();
+      return StandardEscape.HTML_SAFE.escape(input);
+    }
+
+
+    @Override
+    public boolean isHandlerFor(String name) {
+      return false;
+    }
+
+  }
+
+
+
+  CountingEscape counting = new CountingEscape();
+
+  EscapedValues escapedValues = new EscapedValues();
+
+
+  private String escape(Escape escape, String input) throws IOException {
+    StringBuilder builder = new StringBuilder();
+    escapedValues.escape(escape, input, builder);
+    return builder.toString();
+  }
+
+
+  @Test
+  public void testDisabled() throws IOException {
+    assertEquals("a &lt; b", escape(counting, "a < b"));
+    assertEquals("a &lt; b", escape(counting, "a < b"));
+    assertEquals("", escape(counting, null));
+    assertEquals(0, escapedValues.size());
+    assertEquals(3, counting.count.get());
+  }
+
+
+  @Test
+  public void testFull() throws IOException {
+    escapedValues.setMaxEntries(1);
+    assertEquals("&lt;", escape(counting, "<"));
+    assertEquals("&gt;", escape(counting, ">"));
+    assertEquals("&gt;", escape(counting, ">"));
+
+    // The first value is kept, and later values are not memoised
+    assertEquals("&lt;", escape(counting, "<"));
+    assertEquals(1, escapedValues.size());
+    assertEquals(3, counting.count.get());
+  }
+
+
+  @Test
+  public void testLongValues() throws IOException {
+    escapedValues.setMaxEntries(10);
+    String longValue = "<".repeat(EscapedValues.MAX_LENGTH + 1);
+    assertEquals("&lt;".repeat(EscapedValues.MAX_LENGTH + 1), escape(counting, longValue));
+    assertEquals(0, escapedValues.size());
+  }
+
+
+  @Test
+  public void testMemo() throws IOException {
+    escapedValues.setMaxEntries(10);
+    assertEquals("Fish &amp; Chips", escape(counting, "Fish & Chips"));
+    assertEquals("Fish &amp; Chips", escape(counting, "Fish & Chips"));
+    assertEquals(1, counting.count.get());
+
+    // Keyed by escape as well as input
+    assertEquals("Fish & Chips", escape(StandardEscape.NO_ESCAPE, "Fish & Chips"));
+    assertEquals(2, escapedValues.size());
+  }
+
+
+  @Test
+  public void testSharedByRender() throws IOException {
+    Data data = new Data();
+    Data nested = new Data(data, ValueProvider.NULL_VALUE_PROVIDER);
+    data.setEscapeMemoSize(10);
+    StringBuilder builder = new StringBuilder();
+    data.escape(counting, "<b>", builder);
+    nested.escape(counting, "<b>", builder);
+    assertEquals("&lt;b&gt;&lt;b&gt;", builder.toString());
+    assertEquals(1, counting.count.get());
+
+    // A separate render has its own memo
+    new Data().escape(counting, "<b>", builder);
+    assertEquals(2, counting.count.get());
+    assertThrows(IllegalArgumentException.class, () -> data.setEscapeMemoSize(-1));
+  }
+
+}
@@ -0,0 +1,155 @@
+package com.pippsford.stencil.value;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+import com.pippsford.stencil.StencilException;
+import com.pippsford.stencil.Stencils;
+import com.pippsford.stencil.source.MemorySourceProvider;
+
+/**
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class LazyValuesTest {
+
+  AtomicInteger calls = new AtomicInteger();
+
+  MemorySourceProvider sourceProvider = new MemorySourceProvider();
+
+  Stencils stencils = new Stencils(sourceProvider);
+
+
+  private <T> Supplier<T> counted(T value) {
+    return () -> {
+      calls.incrementAndGet();
+      return value;
+    };
+  }
+
+
+  private String write(String source, Map<String, Object> params) throws StencilException {
+    sourceProvider.putFile(Locale.ROOT, "test.txt", source);
+    return stencils.write("test.txt", Locale.UK, ZoneId.of("UTC"), params);
+  }
+
+
+  @Test
+  public void testData() {
+    Data data = Data.create(Map.of("a", counted(Map.of("b", "x"))));
+    Data nested = new Data(data, ValueAccessor.makeProvider(data.getProvider(), Map.of("c", 1)));
+    assertEquals("x", data.get("a.b").value());
+    assertEquals("x", nested.get(CompiledPath.of("a.b")).value());
+    assertEquals(1, calls.get());
+
+    // A separate render evaluates the supplier again
+    Data other = Data.create(Map.of("a", data.getRaw("a").value()));
+    assertEquals("x", other.get("a.b").value());
+    assertEquals(2, calls.get());
+  }
+
+
+  @Test
+  public void testFailedFuture() {
+    CompletableFuture<String> future = CompletableFuture.failedFuture(new IllegalArgumentException("broken"));
+    Map<String, Object> params = Map.of("a", future);
+    IllegalStateException e = assertThrows(IllegalStateException.class, () -> write("{a}", params));
+    assertEquals("broken", e.getCause().getMessage());
+  }
+
+
+  @Test
+  public void testFuture() throws StencilException {
+    Map<String, Object> params = Map.of("price", CompletableFuture.completedFuture(Map.of("amount", 12, "currency", "EUR")));
+    assertEquals("12 EUR", write("{price.amount} {price.currency}", params));
+  }
+
+
+  @Test
+  public void testLoop() throws StencilException {
+    Map<String, Object> params = new HashMap<>();
+    params.put("rows", counted(List.of("a", "b", "c")));
+    params.put("label", counted("L"));
+    assertEquals("0a:L 1b:L 2c:L ", write("[loop rows]{index}{value}:{label} [end]", params));
+    assertEquals(2, calls.get());
+  }
+
+
+  @Test
+  public void testNested() throws StencilException {
+    Supplier<Supplier<String>> supplier = () -> counted("inner");
+    assertEquals("inner inner", write("{a} {a}", Map.of("a", supplier)));
+    assertEquals(1, calls.get());
+  }
+
+
+  @Test
+  public void testNull() throws StencilException {
+    Map<String, Object> params = Map.of("a", counted(null), "b", "B");
+    assertEquals("[ B]", write("[[if a]A[end] {b}]", params));
+    assertEquals(1, calls.get());
+  }
+
+
+  @Test
+  public void testOncePerRender() throws StencilException {
+    Map<String, Object> params = Map.of("a", counted("x"), "b", counted("unused"));
+    assertEquals("x x x", write("{a} {a} [use a]{a}[end]", params));
+    assertEquals(1, calls.get());
+
+    assertEquals("x x x", write("{a} {a} [use a]{a}[end]", params));
+    assertEquals(2, calls.get());
+  }
+
+
+  @Test
+  public void testSlowValue() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Supplier<String> slow = () -> {
+      calls.incrementAndGet();
+      started.countDown();
+      try {
+        release.await(30, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return "slow";
+    };
+
+    LazyValues lazyValues = new LazyValues();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<Object> first = executor.submit(() -> lazyValues.resolve(slow));
+      assertTrue(started.await(30, TimeUnit.SECONDS));
+      Future<Object> second = executor.submit(() -> lazyValues.resolve(slow));
+
+      // Other values can be resolved whilst the slow one is evaluated
+      assertEquals("quick", lazyValues.resolve(counted("quick")));
+
+      release.countDown();
+      assertEquals("slow", first.get());
+      assertEquals("slow", second.get());
+      assertEquals(2, calls.get());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+}
@@ -0,0 +1,46 @@
+package com.pippsford.stencil.value;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.pippsford.stencil.blocks.Pojo;
+import com.pippsford.stencil.value.RecordValueProviderTest.PoRec;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Simon Greatrix on 18/10/2026.
+ */
+class PropertyAccessorsTest {
+
+  @Test
+  public void testShared() {
+    assertSame(PropertyAccessors.forBean(Pojo.class), PropertyAccessors.forBean(Pojo.class));
+    assertSame(PropertyAccessors.forRecord(PoRec.class), PropertyAccessors.forRecord(PoRec.class));
+  }
+
+
+  @Test
+  public void testVisitBean() {
+    Map<String, Object> visited = new HashMap<>();
+    new BeanValueProvider(ValueProvider.NULL_VALUE_PROVIDER, new Pojo("Dr", "Karl", 45)).visit((k, v, r) -> visited.put(k, r ? v : "!" + v));
+    assertEquals("Karl", visited.get("name"));
+    assertEquals(45, visited.get("age"));
+    assertEquals("!<<< UNAVAILABLE : INTERNAL ERROR >>>", visited.get("error"));
+    assertFalse(visited.containsKey("class"));
+  }
+
+
+  @Test
+  public void testVisitRecord() {
+    Map<String, Object> visited = new HashMap<>();
+    new RecordValueProvider(ValueProvider.NULL_VALUE_PROVIDER, new PoRec("Dr", "Karl", 45)).visit((k, v, r) -> visited.put(k, v));
+    assertEquals(Map.of("title", "Dr", "name", "Karl", "age", 45), visited);
+    assertTrue(PropertyAccessors.forRecord(PoRec.class).getNames().contains("class"));
+  }
+
+}